@@ -1,10 +1,18 @@
 package application;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import geography.GeographicPoint;
+import geography.RoadSegment;
+import geography.RoadSegmentIndex;
+import application.services.RouteCache;
+import roadgraph.ContractionHierarchy;
+import roadgraph.TrafficProfiles;
+import roadgraph.TurnCosts;
 import util.GraphLoader;
 
 /**
@@ -15,8 +23,16 @@ import util.GraphLoader;
  *
  */
 public class DataSet {
+	private static final int LANDMARKS = 8;
+	private static final int CACHED_ROUTES = 256;
+	private static final long CACHED_ROUTE_BYTES = 16 << 20;
+
 	String filePath;
 	roadgraph.MapGraph graph;
+	ContractionHierarchy hierarchy;
+	RoadSegmentIndex roadIndex;
+	RouteCache routeCache;
+	int graphVersion;
 	Set<GeographicPoint> intersections;
     private HashMap<geography.GeographicPoint,HashSet<geography.RoadSegment>>  roads;
 	boolean currentlyDisplayed;
@@ -24,16 +40,33 @@ public class DataSet {
 	public DataSet (String path) {
         this.filePath = path;
         graph = null;
+        hierarchy = null;
+        roadIndex = null;
         roads = null;
+        routeCache = new RouteCache(CACHED_ROUTES, CACHED_ROUTE_BYTES);
+        graphVersion = 0;
         currentlyDisplayed = false;
 	}
 
     public void setGraph(roadgraph.MapGraph graph) {
     	this.graph = graph;
+    	// The hierarchy and road index were built for the previous graph
+    	hierarchy = null;
+    	roadIndex = null;
+    	graphVersion++;
+    	routeCache.clear();
     }
 
     public void setRoads(HashMap<geography.GeographicPoint,HashSet<geography.RoadSegment>>  roads) { this.roads = roads; }
     public roadgraph.MapGraph getGraph(){ return graph; }
+    public ContractionHierarchy getContractionHierarchy() { return hierarchy; }
+    public RouteCache getRouteCache() { return routeCache; }
+
+    /** Return a number that changes whenever the graph is replaced, for
+     * telling routes found on the current graph from older ones.
+     * @return The version of the graph
+     */
+    public int getGraphVersion() { return graphVersion; }
     
     /** Return the intersections in this graph.
      * In order to keep it consistent, if getVertices in the graph returns something 
@@ -54,12 +87,42 @@ public class DataSet {
     
     public HashMap<geography.GeographicPoint,HashSet<geography.RoadSegment>>  getRoads() { return this.roads; }
 
+    /** Return an index for snapping locations to the roads of this data set,
+     * building it the first time it is asked for.
+     * @return The road index
+     */
+    public RoadSegmentIndex getRoadIndex() {
+    	if (roadIndex == null) {
+    		List<RoadSegment> segments = new ArrayList<RoadSegment>();
+    		for (HashSet<RoadSegment> segs : roads.values()) {
+    			segments.addAll(segs);
+    		}
+    		roadIndex = new RoadSegmentIndex(segments);
+    	}
+    	return roadIndex;
+    }
+
     public void initializeGraph() {
         graph = new roadgraph.MapGraph();
         roads = new HashMap<geography.GeographicPoint, HashSet<geography.RoadSegment>>();
         intersections = new HashSet<GeographicPoint>();
+        roadIndex = null;
+        // Routes found on the previous graph no longer apply
+        graphVersion++;
+        routeCache.clear();
         //TODO: change to use intersections for points in graph.
-    	GraphLoader.loadRoadMap(filePath, graph, roads, intersections);
+    	// Load through the compiled form of the .map file, which skips
+    	// parsing and finding intersections after the first time
+    	GraphLoader.loadRoadMapCompiled(filePath, graph, roads, intersections);
+    	// Read the preprocessed hierarchy saved next to the .map file,
+    	// building and saving it the first time this file is loaded
+    	hierarchy = ContractionHierarchy.loadOrBuild(filePath, graph);
+    	// Landmark tables make A* settle far fewer nodes
+    	graph.prepareLandmarks(LANDMARKS);
+    	// Turn restrictions MapMaker saved next to the .map file, if any
+    	graph.setTurnCosts(TurnCosts.load(filePath + ".restrictions", graph));
+    	// Time of day congestion saved next to the .map file, if any
+    	graph.setTraffic(TrafficProfiles.load(filePath + ".traffic", graph));
     }
 
 	public String getFilePath() {
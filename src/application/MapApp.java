@@ -103,6 +103,8 @@ implements MapComponentInitializedListener {
 		Button hideRouteButton = new Button("Hide Route");
 		Button resetButton = new Button("Reset");
 		Button visualizationButton = new Button("Start Visualization");
+		Button isochroneButton = new Button("Show Reachable Area");
+		TextField minutesField = new TextField("5, 10, 15");
 		Image sImage = new Image(MarkerManager.startURL);
 		Image dImage = new Image(MarkerManager.destinationURL);
 		CLabel<geography.GeographicPoint> startLabel = new CLabel<geography.GeographicPoint>("Empty.", new ImageView(sImage), null);
@@ -135,7 +137,8 @@ implements MapComponentInitializedListener {
 		manager.setStartLabel(startLabel);
 		manager.setDestinationLabel(endLabel);
 		setupRouteTab(routeTab, fetchBox, startLabel, endLabel, pointLabel, routeButton, hideRouteButton,
-				resetButton, visualizationButton, startButton, destinationButton, searchOptions);
+				resetButton, visualizationButton, startButton, destinationButton, searchOptions,
+				isochroneButton, minutesField);
 
 		// add tabs to pane, give no option to close
 		TabPane tp = new TabPane(routeTab);
@@ -148,7 +151,7 @@ implements MapComponentInitializedListener {
 			//System.out.println("in map ready : " + this.getClass());
 			// initialize controllers
 			new RouteController(rs, routeButton, hideRouteButton, resetButton, startButton, destinationButton, group, searchOptions, visualizationButton,
-					startLabel, endLabel, pointLabel, manager, markerManager);
+					isochroneButton, minutesField, startLabel, endLabel, pointLabel, manager, markerManager);
 			new FetchController(gs, rs, tf, fetchButton, cb, displayButton);
 		});
 
@@ -242,7 +245,8 @@ implements MapComponentInitializedListener {
 	 */
 	private void setupRouteTab(Tab routeTab, VBox fetchBox, Label startLabel, Label endLabel, Label pointLabel,
 			Button showButton, Button hideButton, Button resetButton, Button vButton, Button startButton,
-			Button destButton, List<RadioButton> searchOptions) {
+			Button destButton, List<RadioButton> searchOptions, Button isochroneButton,
+			TextField minutesField) {
 
 		//set up tab layout
 		HBox h = new HBox();
@@ -284,6 +288,15 @@ implements MapComponentInitializedListener {
 		showHideBox.getChildren().add(hideButton);
 		showHideBox.setSpacing(2*MARGIN_VAL);
 
+		// travel times, in minutes, to draw the reachable area from the start for
+		HBox isochroneBox = new HBox();
+		minutesField.setPrefColumnCount(8);
+		isochroneBox.getChildren().add(new Label("Minutes : "));
+		isochroneBox.getChildren().add(minutesField);
+		isochroneBox.getChildren().add(isochroneButton);
+		isochroneBox.setAlignment(Pos.CENTER_LEFT);
+		isochroneBox.setSpacing(MARGIN_VAL);
+
 		v.getChildren().add(fetchBox);
 		v.getChildren().add(new Label("Start Position : "));
 		v.getChildren().add(startBox);
@@ -294,8 +307,10 @@ implements MapComponentInitializedListener {
 			v.getChildren().add(rb);
 		}
 		v.getChildren().add(vButton);
+		v.getChildren().add(isochroneBox);
 		VBox.setMargin(showHideBox, new Insets(MARGIN_VAL,MARGIN_VAL,MARGIN_VAL,MARGIN_VAL));
 		VBox.setMargin(vButton, new Insets(MARGIN_VAL,MARGIN_VAL,MARGIN_VAL,MARGIN_VAL));
+		VBox.setMargin(isochroneBox, new Insets(MARGIN_VAL,MARGIN_VAL,MARGIN_VAL,MARGIN_VAL));
 		vButton.setDisable(true);
 		v.getChildren().add(markerBox);
 		//v.getChildren().add(resetButton);
@@ -337,10 +352,22 @@ implements MapComponentInitializedListener {
 		RadioButton rbB = new RadioButton("BFS");
 		rbB.setUserData("BFS");
 
+		RadioButton rbC = new RadioButton("Contraction Hierarchy");
+		rbC.setUserData("CH");
+
+		RadioButton rbBi = new RadioButton("Bidirectional A*");
+		rbBi.setUserData("Bidirectional");
+
+		RadioButton rbAlt = new RadioButton("Alternative Routes");
+		rbAlt.setUserData("Alternatives");
+
 		rbB.setToggleGroup(group);
 		rbD.setToggleGroup(group);
 		rbA.setToggleGroup(group);
-		return new LinkedList<RadioButton>(Arrays.asList(rbB, rbD, rbA));
+		rbC.setToggleGroup(group);
+		rbBi.setToggleGroup(group);
+		rbAlt.setToggleGroup(group);
+		return new LinkedList<RadioButton>(Arrays.asList(rbB, rbD, rbA, rbBi, rbC, rbAlt));
 	}
 
 
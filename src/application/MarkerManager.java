@@ -11,6 +11,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 
+import geography.RoadSegmentIndex;
 import gmapsfx.javascript.event.UIEventType;
 import gmapsfx.javascript.object.Animation;
 import gmapsfx.javascript.object.GoogleMap;
@@ -44,6 +45,7 @@ public class MarkerManager {
     private RouteVisualization rv;
     private Button vButton;
     private boolean selectMode = true;
+    private boolean mapClickRegistered = false;
 
     public MarkerManager() {
     	markerMap = new HashMap<geography.GeographicPoint, Marker>();
@@ -76,7 +78,7 @@ public class MarkerManager {
 
 
     public GoogleMap getMap() { return this.map; }
-    public void setMap(GoogleMap map) { this.map = map; }
+    public void setMap(GoogleMap map) { this.map = map; mapClickRegistered = false; }
     public void setSelectManager(SelectManager selectManager) { this.selectManager = selectManager; }
 
     public void putMarker(geography.GeographicPoint key, Marker value) {
@@ -226,6 +228,7 @@ public class MarkerManager {
 //            marker.setZIndex(DEFAULT_Z);
         }
         map.fitBounds(bounds);
+        registerMapClick();
         // System.out.println("End of display Intersections");
 
     }
@@ -243,21 +246,55 @@ public class MarkerManager {
 
         map.addUIEventHandler(marker, UIEventType.click, (JSObject o) -> {
             //System.out.println("Clicked Marker : " + point.toString());
-            if(selectMode) {
-                	if(selectedMarker != null && selectedMarker != startMarker
-                	   && selectedMarker != destinationMarker) {
-                		selectedMarker.setIcon(markerURL);
-//                		selectedMarker.setZIndex(DEFAULT_Z);
-                	}
-            	selectManager.setPoint(point, marker);
-                selectedMarker = marker;
-                selectedMarker.setIcon(SELECTED_URL);
-//                selectedMarker.setZIndex(SELECT_Z);
-
-                // re add markers to map
-                // slightly glitchy
-//                refreshMarkers();
-            }
+            selectMarker(point, marker);
+        });
+    }
+
+    private void selectMarker(geography.GeographicPoint point, Marker marker) {
+        if(selectMode) {
+            	if(selectedMarker != null && selectedMarker != startMarker
+            	   && selectedMarker != destinationMarker) {
+            		selectedMarker.setIcon(markerURL);
+//            		selectedMarker.setZIndex(DEFAULT_Z);
+            	}
+        	selectManager.setPoint(point, marker);
+            selectedMarker = marker;
+            selectedMarker.setIcon(SELECTED_URL);
+//            selectedMarker.setZIndex(SELECT_Z);
+
+            // re add markers to map
+            // slightly glitchy
+//            refreshMarkers();
+        }
+    }
+
+    // Clicking anywhere on the map snaps the click to the nearest road and
+    // selects the intersection at the nearer end of that stretch of road
+    private void registerMapClick() {
+    	if(mapClickRegistered) {
+    		return;
+    	}
+    	mapClickRegistered = true;
+        map.addUIEventHandler(UIEventType.click, (JSObject o) -> {
+        	if(dataSet == null || dataSet.getRoads() == null) {
+        		return;
+        	}
+        	LatLong ll = new LatLong((JSObject) o.getMember("latLng"));
+        	RoadSegmentIndex.Snap snap = dataSet.getRoadIndex().snap(ll.getLatitude(), ll.getLongitude());
+        	geography.GeographicPoint point;
+        	if(snap != null) {
+        		List<geography.GeographicPoint> ends = snap.getSegment().getPoints();
+        		geography.GeographicPoint first = ends.get(0);
+        		geography.GeographicPoint last = ends.get(ends.size() - 1);
+        		point = snap.getPoint().distance(first) <= snap.getPoint().distance(last) ? first : last;
+        	}
+        	else {
+        		point = dataSet.getGraph().nearest(ll.getLatitude(), ll.getLongitude());
+        	}
+        	Marker marker = markerMap.get(point);
+        	if(marker != null) {
+        		selectMarker(point, marker);
+        	}
         });
     }
 
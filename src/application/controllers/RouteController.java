@@ -24,17 +24,23 @@ import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.RadioButton;
 import javafx.scene.control.Slider;
+import javafx.scene.control.TextField;
 import javafx.scene.control.ToggleGroup;
 import javafx.util.StringConverter;
 
 public class RouteController {
 	// Strings for slider labels
+	public static final int ALTERNATIVES = 6;
+	public static final int BIDIRECTIONAL = 5;
+	public static final int CH = 4;
 	public static final int BFS = 3;
     public static final int A_STAR = 2;
     public static final int DIJ = 1;
 	public static final int DISABLE = 0;
 	public static final int START = 1;
 	public static final int DESTINATION = 2;
+	// Most routes drawn when ALTERNATIVES is selected
+	private static final int ALTERNATIVE_ROUTES = 3;
 
     private int selectedToggle = DIJ;
 
@@ -45,6 +51,8 @@ public class RouteController {
     private Button resetButton;
     private Button destinationButton;
     private Button visualizationButton;
+    private Button isochroneButton;
+    private TextField minutesField;
 
     private ToggleGroup group;
     private CLabel<geography.GeographicPoint> startLabel;
@@ -58,6 +66,7 @@ public class RouteController {
 	public RouteController(RouteService routeService, Button displayButton, Button hideButton,
 						   Button resetButton, Button startButton, Button destinationButton,
 						   ToggleGroup group, List<RadioButton> searchOptions, Button visualizationButton,
+						   Button isochroneButton, TextField minutesField,
 						   CLabel<geography.GeographicPoint> startLabel, CLabel<geography.GeographicPoint> endLabel,
 						   CLabel<geography.GeographicPoint> pointLabel, SelectManager manager, MarkerManager markerManager) {
         // save parameters
@@ -69,6 +78,8 @@ public class RouteController {
 		this.destinationButton = destinationButton;
         this.group = group;
         this.visualizationButton = visualizationButton;
+        this.isochroneButton = isochroneButton;
+        this.minutesField = minutesField;
 
         // maybe don't need references to labels;
 		this.startLabel = startLabel;
@@ -80,6 +91,7 @@ public class RouteController {
         setupDisplayButtons();
         setupRouteButtons();
         setupVisualizationButton();
+        setupIsochroneButton();
         setupLabels();
         setupToggle();
         //routeService.displayRoute("data/sampleroute.map");
@@ -89,7 +101,12 @@ public class RouteController {
 	private void setupDisplayButtons() {
 		displayButton.setOnAction(e -> {
             if(startLabel.getItem() != null && endLabel.getItem() != null) {
+            	if (selectedToggle == ALTERNATIVES) {
+            		routeService.displayAlternatives(startLabel.getItem(), endLabel.getItem(), ALTERNATIVE_ROUTES);
+            	}
+            	else {
         			routeService.displayRoute(startLabel.getItem(), endLabel.getItem(), selectedToggle);
+            	}
             }
             else {
             	MapApp.showErrorAlert("Route Display Error", "Make sure to choose points for both start and destination.");
@@ -98,6 +115,8 @@ public class RouteController {
 
         hideButton.setOnAction(e -> {
         	routeService.hideRoute();
+        	routeService.hideAlternatives();
+        	routeService.hideIsochrones();
         });
 
         //TODO -- implement
@@ -113,6 +132,40 @@ public class RouteController {
     	});
     }
 
+    private void setupIsochroneButton() {
+    	isochroneButton.setOnAction( e -> {
+    		double[] minutes = parseMinutes(minutesField.getText());
+    		if(startLabel.getItem() == null) {
+    			MapApp.showErrorAlert("Reachable Area Error", "Make sure to choose a start point.");
+    		}
+    		else if(minutes == null) {
+    			MapApp.showErrorAlert("Reachable Area Error", "Enter one or more travel times in minutes, such as 5, 10, 15.");
+    		}
+    		else {
+    			routeService.displayIsochrones(startLabel.getItem(), minutes);
+    		}
+    	});
+    }
+
+    // The travel times in a list of minutes separated by commas or spaces,
+    // or null if they are not all positive numbers
+    private static double[] parseMinutes(String text) {
+    	String[] parts = text.trim().split("[,\\s]+");
+    	double[] minutes = new double[parts.length];
+    	try {
+    		for (int i = 0; i < parts.length; i++) {
+    			minutes[i] = Double.parseDouble(parts[i]);
+    			if (!(minutes[i] > 0) || Double.isInfinite(minutes[i])) {
+    				return null;
+    			}
+    		}
+    	}
+    	catch (NumberFormatException ex) {
+    		return null;
+    	}
+    	return minutes;
+    }
+
     private void setupRouteButtons() {
     	startButton.setOnAction(e -> {
             //System.out.println();
@@ -141,6 +194,15 @@ public class RouteController {
             else if(group.getSelectedToggle().getUserData().equals("BFS")) {
             	selectedToggle = BFS;
             }
+            else if(group.getSelectedToggle().getUserData().equals("CH")) {
+            	selectedToggle = CH;
+            }
+            else if(group.getSelectedToggle().getUserData().equals("Bidirectional")) {
+            	selectedToggle = BIDIRECTIONAL;
+            }
+            else if(group.getSelectedToggle().getUserData().equals("Alternatives")) {
+            	selectedToggle = ALTERNATIVES;
+            }
             else {
             	System.err.println("Invalid radio button selection");
             }
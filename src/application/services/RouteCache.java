@@ -0,0 +1,218 @@
+package application.services;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import geography.GeographicPoint;
+import gmapsfx.javascript.object.LatLong;
+import roadgraph.WeightProfile;
+
+/**
+ * A bounded cache of routes, so that routing again between the same two
+ * intersections skips both the search and the geometry expansion.
+ *
+ * Entries are evicted least recently used first, whenever there are more
+ * than a maximum number of them or their estimated size exceeds a maximum
+ * number of bytes.  Keys include the version of the graph the route was
+ * found on, and DataSet clears its cache whenever it reloads its graph, so
+ * a route is never served from an older graph.
+ */
+public class RouteCache {
+	// Rough heap cost of one cached point of each kind and of an entry
+	private static final long POINT_BYTES = 40;
+	private static final long LAT_LONG_BYTES = 64;
+	private static final long ENTRY_BYTES = 128;
+
+	/** What a route was asked for */
+	public static class Key {
+		private final int version;
+		private final GeographicPoint start;
+		private final GeographicPoint goal;
+		private final int algorithm;
+		private final WeightProfile weight;
+
+		/**
+		 * Create a key
+		 * @param version The version of the graph searched
+		 * @param start The start of the route
+		 * @param goal The goal of the route
+		 * @param algorithm The search used, one of the RouteController constants
+		 * @param weight The weight profile the route minimizes
+		 */
+		public Key(int version, GeographicPoint start, GeographicPoint goal, int algorithm,
+				WeightProfile weight)
+		{
+			this.version = version;
+			this.start = start;
+			this.goal = goal;
+			this.algorithm = algorithm;
+			this.weight = weight;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return version == other.version && algorithm == other.algorithm
+					&& weight == other.weight && start.equals(other.start)
+					&& goal.equals(other.goal);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash(version, start, goal, algorithm, weight);
+		}
+	}
+
+	/** A cached route */
+	public static class Route {
+		private final List<GeographicPoint> path;
+		private final List<LatLong> mapPath;
+
+		Route(List<GeographicPoint> path, List<LatLong> mapPath)
+		{
+			this.path = Collections.unmodifiableList(path);
+			this.mapPath = Collections.unmodifiableList(mapPath);
+		}
+
+		/**
+		 * Get the intersections on the route
+		 * @return the path through intersections
+		 */
+		public List<GeographicPoint> getPath()
+		{
+			return path;
+		}
+
+		/**
+		 * Get the full geometry of the route
+		 * @return the expanded polyline
+		 */
+		public List<LatLong> getMapPath()
+		{
+			return mapPath;
+		}
+
+		long getBytes()
+		{
+			return ENTRY_BYTES + POINT_BYTES * path.size() + LAT_LONG_BYTES * mapPath.size();
+		}
+	}
+
+	private final int maxEntries;
+	private final long maxBytes;
+	// In access order, so the first entry is the least recently used
+	private final LinkedHashMap<Key,Route> routes = new LinkedHashMap<Key,Route>(16, 0.75f, true);
+	private long bytes;
+	private long hits;
+	private long misses;
+
+	/**
+	 * Create an empty cache
+	 * @param maxEntries The most routes to keep
+	 * @param maxBytes The most estimated bytes of routes to keep
+	 */
+	public RouteCache(int maxEntries, long maxBytes)
+	{
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Look up a route, counting a hit or a miss
+	 * @param key What the route was asked for
+	 * @return the cached route, or null if there is none
+	 */
+	public synchronized Route get(Key key)
+	{
+		Route route = routes.get(key);
+		if (route == null) {
+			misses++;
+		}
+		else {
+			hits++;
+		}
+		return route;
+	}
+
+	/**
+	 * Add a route, evicting the least recently used routes to stay
+	 * within the bounds.  A route too large for the cache on its own is
+	 * returned without being kept.
+	 * @param key What the route was asked for
+	 * @param path The intersections on the route
+	 * @param mapPath The full geometry of the route
+	 * @return the cached route
+	 */
+	public synchronized Route put(Key key, List<GeographicPoint> path, List<LatLong> mapPath)
+	{
+		Route route = new Route(path, mapPath);
+		if (route.getBytes() > maxBytes) {
+			return route;
+		}
+		Route old = routes.put(key, route);
+		if (old != null) {
+			bytes -= old.getBytes();
+		}
+		bytes += route.getBytes();
+		Iterator<Map.Entry<Key,Route>> it = routes.entrySet().iterator();
+		while (it.hasNext() && (routes.size() > maxEntries || bytes > maxBytes)) {
+			bytes -= it.next().getValue().getBytes();
+			it.remove();
+		}
+		return route;
+	}
+
+	/**
+	 * Remove every route.  The hit and miss counts are kept.
+	 */
+	public synchronized void clear()
+	{
+		routes.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * Get the number of routes in the cache
+	 * @return the number of routes
+	 */
+	public synchronized int size()
+	{
+		return routes.size();
+	}
+
+	/**
+	 * Get the estimated size of the routes in the cache
+	 * @return the estimated size in bytes
+	 */
+	public synchronized long getBytes()
+	{
+		return bytes;
+	}
+
+	/**
+	 * Get the number of lookups that found a route
+	 * @return the number of hits
+	 */
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+
+	/**
+	 * Get the number of lookups that found nothing
+	 * @return the number of misses
+	 */
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+}
@@ -5,7 +5,6 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.function.Consumer;
 
@@ -16,16 +15,20 @@ import application.MarkerManager;
 import application.RouteVisualization;
 import application.controllers.RouteController;
 
-import java.util.Iterator;
 
 import geography.GeographicPoint;
-import geography.RoadSegment;
+import roadgraph.AlternativeRoute;
+import roadgraph.ContractionHierarchy;
+import roadgraph.Isochrone;
 import gmapsfx.GoogleMapView;
 import gmapsfx.javascript.object.GoogleMap;
 import gmapsfx.javascript.object.LatLong;
 import gmapsfx.javascript.object.LatLongBounds;
 import gmapsfx.javascript.object.MVCArray;
+import gmapsfx.shapes.Polygon;
+import gmapsfx.shapes.PolygonOptions;
 import gmapsfx.shapes.Polyline;
+import gmapsfx.shapes.PolylineOptions;
 import javafx.scene.control.Button;
 
 public class RouteService {
@@ -34,6 +37,8 @@ public class RouteService {
     // static variable
     private MarkerManager markerManager;
     private Polyline routeLine;
+    private List<Polygon> isochronePolygons = new ArrayList<Polygon>();
+    private List<Polyline> alternativeLines = new ArrayList<Polyline>();
     private RouteVisualization rv;
 
 	public RouteService(GoogleMapView mapComponent, MarkerManager manager) {
@@ -92,6 +97,101 @@ public class RouteService {
 
     public void reset() {
         removeRouteLine();
+        hideIsochrones();
+        hideAlternatives();
+    }
+
+    /**
+     * Draws up to k different fast routes between two points, the fastest
+     * in full and the others fainter beneath it, in place of any route
+     * already displayed
+     * @param start The intersection to start from
+     * @param end The intersection to finish at
+     * @param k The most routes to draw
+     * @return returns false if there is no route
+     */
+    public boolean displayAlternatives(geography.GeographicPoint start,
+    		geography.GeographicPoint end, int k) {
+    	hideRoute();
+    	hideAlternatives();
+    	List<AlternativeRoute> routes =
+    			markerManager.getDataSet().getGraph().alternatives(start, end, k);
+    	if (routes.isEmpty()) {
+    		MapApp.showInfoAlert("Routing Error : ", "No path found");
+    		return false;
+    	}
+
+    	LatLongBounds bounds = new LatLongBounds();
+    	for (int i = routes.size() - 1; i >= 0; i--) {
+    		MVCArray path = new MVCArray();
+    		for (LatLong point : constructMapPath(routes.get(i).getPath())) {
+    			path.push(point);
+    			bounds = bounds.extend(point);
+    		}
+    		Polyline line = new Polyline(new PolylineOptions()
+    				.path(path)
+    				.strokeColor(i == 0 ? "#3366cc" : "#888888")
+    				.strokeOpacity(i == 0 ? 1.0 : 0.7)
+    				.strokeWeight(i == 0 ? 5 : 4));
+    		map.addMapShape(line);
+    		alternativeLines.add(line);
+    	}
+    	map.fitBounds(bounds);
+    	return true;
+    }
+
+    public void hideAlternatives() {
+    	for (Polyline line : alternativeLines) {
+    		map.removeMapShape(line);
+    	}
+    	alternativeLines.clear();
+    }
+
+    /**
+     * Draws the areas reachable from a point within each of several times
+     * @param start The intersection to start from
+     * @param minutes The travel times, in minutes
+     * @return returns false if start is not on the map
+     */
+    public boolean displayIsochrones(geography.GeographicPoint start, double... minutes) {
+    	hideIsochrones();
+    	double[] budgets = new double[minutes.length];
+    	for (int i = 0; i < minutes.length; i++) {
+    		budgets[i] = minutes[i] / 60;
+    	}
+    	List<Isochrone> isochrones = markerManager.getDataSet().getGraph().isochrones(start, budgets);
+    	if (isochrones == null) {
+    		MapApp.showInfoAlert("Isochrone Error : ", "Start is not on the map");
+    		return false;
+    	}
+
+    	LatLongBounds bounds = new LatLongBounds();
+    	for (Isochrone isochrone : isochrones) {
+    		MVCArray path = new MVCArray();
+    		for (geography.GeographicPoint point :
+    				isochrone.getBoundary(markerManager.getDataSet().getRoads())) {
+    			LatLong latLong = new LatLong(point.getX(), point.getY());
+    			path.push(latLong);
+    			bounds = bounds.extend(latLong);
+    		}
+    		Polygon polygon = new Polygon(new PolygonOptions()
+    				.paths(path)
+    				.strokeColor("#3366cc")
+    				.strokeWeight(1)
+    				.fillColor("#3366cc")
+    				.fillOpacity(0.15));
+    		map.addMapShape(polygon);
+    		isochronePolygons.add(polygon);
+    	}
+    	map.fitBounds(bounds);
+    	return true;
+    }
+
+    public void hideIsochrones() {
+    	for (Polygon polygon : isochronePolygons) {
+    		map.removeMapShape(polygon);
+    	}
+    	isochronePolygons.clear();
     }
 
     public boolean isRouteDisplayed() {
@@ -102,9 +202,23 @@ public class RouteService {
         	if(markerManager.getVisualization() != null) {
         		markerManager.clearVisualization();
         	}
+        	hideAlternatives();
 
         	if(toggle == RouteController.DIJ || toggle == RouteController.A_STAR ||
-        			toggle == RouteController.BFS) {
+        			toggle == RouteController.BFS || toggle == RouteController.CH ||
+        			toggle == RouteController.BIDIRECTIONAL) {
+        		DataSet dataSet = markerManager.getDataSet();
+        		RouteCache.Key key = new RouteCache.Key(dataSet.getGraphVersion(), start, end,
+        				toggle, roadgraph.WeightProfile.CAR);
+        		RouteCache.Route cached = dataSet.getRouteCache().get(key);
+        		if (cached != null) {
+        			// Nothing was searched, so there is nothing to visualize
+        			markerManager.setSelectMode(false);
+        			boolean displayed = displayRoute(cached.getMapPath());
+        			markerManager.disableVisButton(true);
+        			return displayed;
+        		}
+
         		markerManager.initVisualization();
             	Consumer<geography.GeographicPoint> nodeAccepter = markerManager.getVisualization()::acceptPoint;
             	List<geography.GeographicPoint> path = null;
@@ -117,6 +231,19 @@ public class RouteService {
             	else if (toggle == RouteController.A_STAR) {
             		path = markerManager.getDataSet().getGraph().aStarSearch(start, end, nodeAccepter);
             	}
+            	else if (toggle == RouteController.BIDIRECTIONAL) {
+            		path = markerManager.getDataSet().getGraph().bidirectionalAStar(start, end, nodeAccepter);
+            	}
+            	else if (toggle == RouteController.CH) {
+            		ContractionHierarchy hierarchy = markerManager.getDataSet().getContractionHierarchy();
+            		if (hierarchy != null) {
+            			path = hierarchy.route(start, end, nodeAccepter);
+            		}
+            		else {
+            			// No hierarchy has been built for a graph set by hand
+            			path = markerManager.getDataSet().getGraph().dijkstra(start, end, nodeAccepter);
+            		}
+            	}
 
             	if(path == null) {
                     // System.out.println("In displayRoute : PATH NOT FOUND");
@@ -125,6 +252,7 @@ public class RouteService {
                 }
                 // TODO -- debug road segments
             	List<LatLong> mapPath = constructMapPath(path);
+            	dataSet.getRouteCache().put(key, path, mapPath);
                 //List<LatLong> mapPath = new ArrayList<LatLong>();
                 //for(geography.GeographicPoint point : path) {
                 //    mapPath.add(new LatLong(point.getX(), point.getY()));
@@ -149,48 +277,10 @@ public class RouteService {
      * @return list of LatLongs corresponding the path of route
      */
     private List<LatLong> constructMapPath(List<geography.GeographicPoint> path) {
-    	List<LatLong> retVal = new ArrayList<LatLong>();
-        List<geography.GeographicPoint> segmentList = null;
-    	geography.GeographicPoint curr;
-    	geography.GeographicPoint next;
-
-    	geography.RoadSegment chosenSegment = null;;
-
-        for(int i = 0; i < path.size() - 1; i++) {
-            double minLength = Double.MAX_VALUE;
-        	curr = path.get(i);
-        	next = path.get(i+1);
-
-        	if(markerManager.getDataSet().getRoads().containsKey(curr)) {
-        		HashSet<geography.RoadSegment> segments = markerManager.getDataSet().getRoads().get(curr);
-        		Iterator<geography.RoadSegment> it = segments.iterator();
-
-        		// get segments which are
-            	geography.RoadSegment currSegment;
-                while(it.hasNext()) {
-                    //System.out.println("new segment");
-                	currSegment = it.next();
-                	if(currSegment.getOtherPoint(curr).equals(next)) {
-                        //System.out.println("1st check passed : other point correct");
-                		if(currSegment.getLength() < minLength) {
-                            //System.out.println("2nd check passed : length less");
-                			chosenSegment = currSegment;
-                		}
-                	}
-                }
-
-                if(chosenSegment != null) {
-                    segmentList = chosenSegment.getPoints(curr, next);
-                    for(geography.GeographicPoint point : segmentList) {
-                        retVal.add(new LatLong(point.getX(), point.getY()));
-                    }
-                }
-                else {
-                	System.err.println("ERROR in constructMapPath : chosenSegment was null");
-                }
-        		// find
-
-        	}
+    	double[] points = markerManager.getDataSet().getGraph().expandPath(path);
+    	List<LatLong> retVal = new ArrayList<LatLong>(points.length / 2);
+        for(int i = 0; i < points.length; i += 2) {
+            retVal.add(new LatLong(points[i], points[i + 1]));
         }
 
         // System.out.println("NOW there are " + retVal.size() + " points");
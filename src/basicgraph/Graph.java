@@ -28,6 +28,8 @@ public abstract class Graph {
 	private int numEdges;
 	//optional association of String labels to vertices 
 	private Map<Integer,String> vertexLabels;
+	//and of the labels back to their vertices, so lookups by label are O(1)
+	private Map<String,Integer> labelIndices;
 	
 	/**
 	 * Create a new empty Graph
@@ -36,6 +38,7 @@ public abstract class Graph {
 		numVertices = 0;
 		numEdges = 0;
 		vertexLabels = null;
+		labelIndices = null;
 	}
 
 	
@@ -168,6 +171,7 @@ public abstract class Graph {
 	 */
 	public void initializeLabels() {
 		vertexLabels = new HashMap<Integer,String>();
+		labelIndices = new HashMap<String,Integer>();
 	}	
 	/**
 	 * Test whether some vertex in the graph is labeled 
@@ -188,7 +192,7 @@ public abstract class Graph {
 	 */
 	public boolean hasVertex(String s)
 	{
-		return vertexLabels.containsValue(s);
+		return labelIndices.containsKey(s);
 	}
 	
 	/**
@@ -200,6 +204,7 @@ public abstract class Graph {
 		if (v < getNumVertices() && !vertexLabels.containsKey(v)) 
 		{
 			vertexLabels.put(v, s);
+			labelIndices.putIfAbsent(s, v);
 		}
 		else {
 			System.out.println("ERROR: tried to label a vertex that is out of range or already labeled");
@@ -225,9 +230,9 @@ public abstract class Graph {
 	 * @return The integer index of this vertex 
 	 */
 	public int getIndex(String s) {
-		for (Map.Entry<Integer,String> entry : vertexLabels.entrySet()) {
-			if (entry.getValue().equals(s))
-				return entry.getKey();
+		Integer v = labelIndices.get(s);
+		if (v != null) {
+			return v;
 		}
 		System.out.println("ERROR: No vertex with this label");
 		return -1;
@@ -276,5 +281,12 @@ public abstract class Graph {
 		System.out.println("Goal: implement method using two approaches.");
 		System.out.println(graphFromFile.adjacencyString());
 		System.out.println(matrix.adjacencyString());
+
+		System.out.println("****");
+		System.out.println("Memory of an adjacency matrix of the flight data:");
+		GraphAdjMatrix airportMatrix = new GraphAdjMatrix();
+		GraphLoader.loadRoutes("data/airports/routesUA.dat", airportMatrix);
+		System.out.println(airportMatrix.getNumVertices() + " vertices: " + airportMatrix.getMatrixBytes()
+				+ " bytes as bits, " + airportMatrix.getIntMatrixBytes() + " bytes as int counts");
 	}
 }
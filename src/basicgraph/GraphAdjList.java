@@ -1,10 +1,10 @@
 package basicgraph;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.RandomAccess;
 
 /** A class that implements a directed graph. 
  * The graph may have self-loops, parallel edges. 
@@ -13,19 +13,34 @@ import java.util.Set;
  * The edges of the graph are not labeled.
  * Representation of edges via adjacency lists.
  * 
+ * The lists are growable int arrays, one per vertex, kept for the edges
+ * into each vertex as well as out of it, so both kinds of neighbor are
+ * found in time proportional to the degree.  The neighbor lists returned
+ * are read-only views of these arrays rather than copies.
+ *
  * @author UCSD MOOC development team and YOU
  *
  */
 public class GraphAdjList extends Graph {
 
+	//Room for this many neighbors in a new vertex's lists
+	private static final int INITIAL_DEGREE = 4;
 
-	private Map<Integer,ArrayList<Integer>> adjListsMap;
+	//outAdj[v][0..outDegree[v]-1] are the ends of the edges out of v
+	private int[][] outAdj;
+	private int[] outDegree;
+	//inAdj[v][0..inDegree[v]-1] are the starts of the edges into v
+	private int[][] inAdj;
+	private int[] inDegree;
 	
 	/** 
 	 * Create a new empty Graph
 	 */
 	public GraphAdjList () {
-		adjListsMap = new HashMap<Integer,ArrayList<Integer>>();
+		outAdj = new int[INITIAL_DEGREE][];
+		outDegree = new int[INITIAL_DEGREE];
+		inAdj = new int[INITIAL_DEGREE][];
+		inDegree = new int[INITIAL_DEGREE];
 	}
 
 	/** 
@@ -33,8 +48,14 @@ public class GraphAdjList extends Graph {
 	 */
 	public void implementAddVertex() {
 		int v = getNumVertices();
-		ArrayList<Integer> neighbors = new ArrayList<Integer>();
-		adjListsMap.put(v,  neighbors);
+		if (v == outAdj.length) {
+			outAdj = Arrays.copyOf(outAdj, v * 2);
+			outDegree = Arrays.copyOf(outDegree, v * 2);
+			inAdj = Arrays.copyOf(inAdj, v * 2);
+			inDegree = Arrays.copyOf(inDegree, v * 2);
+		}
+		outAdj[v] = new int[INITIAL_DEGREE];
+		inAdj[v] = new int[INITIAL_DEGREE];
 	}
 	
 	/** 
@@ -43,8 +64,14 @@ public class GraphAdjList extends Graph {
 	 * @param w the index of the end point for the edge.  
 	 */
 	public void implementAddEdge(int v, int w) {
-		(adjListsMap.get(v)).add(w);
-
+		if (outDegree[v] == outAdj[v].length) {
+			outAdj[v] = Arrays.copyOf(outAdj[v], outDegree[v] * 2);
+		}
+		outAdj[v][outDegree[v]++] = w;
+		if (inDegree[w] == inAdj[w].length) {
+			inAdj[w] = Arrays.copyOf(inAdj[w], inDegree[w] * 2);
+		}
+		inAdj[w][inDegree[w]++] = v;
 	}
 	
 	/** 
@@ -55,10 +82,11 @@ public class GraphAdjList extends Graph {
 	 * appears once in the list for each of these edges.
 	 * 
 	 * @param v the index of vertex.
-	 * @return List<Integer> a list of indices of vertices.  
+	 * @return List<Integer> a read-only view of the indices of vertices,
+	 *   which grows as edges are added.
 	 */	
 	public List<Integer> getNeighbors(int v) {
-		return new ArrayList<Integer>(adjListsMap.get(v));
+		return new Neighbors(v, true);
 	}
 
 	/** 
@@ -69,21 +97,11 @@ public class GraphAdjList extends Graph {
 	 * appears once in the list for each of these edges.
 	 * 
 	 * @param v the index of vertex.
-	 * @return List<Integer> a list of indices of vertices.  
+	 * @return List<Integer> a read-only view of the indices of vertices,
+	 *   which grows as edges are added.
 	 */	
 	public List<Integer> getInNeighbors(int v) {
-		List<Integer> inNeighbors = new ArrayList<Integer>();
-		for (int u : adjListsMap.keySet()) {
-			//iterate through all edges in u's adjacency list and 
-			//add u to the inNeighbor list of v whenever an edge
-			//with startpoint u has endpoint v.
-			for (int w : adjListsMap.get(u)) {
-				if (v == w) {
-					inNeighbors.add(u);
-				}
-			}
-		}
-		return inNeighbors;
+		return new Neighbors(v, false);
 	}
 	 
 
@@ -96,13 +114,10 @@ public class GraphAdjList extends Graph {
 	 */		
 	 public List<Integer> getDistance2(int v) {
 		 List<Integer> twoHop = new ArrayList<Integer>();
-		 List<Integer> oneHop = adjListsMap.get(v);
-		 for (int i=0;i<oneHop.size();i++) {
-			 List<Integer> hops = adjListsMap.get(oneHop.get(i)); 
-			 for(int j=0;j<hops.size();j++){
-				 //if(!twoHop.contains(hops.get(j))){
-					 twoHop.add(hops.get(j));
-				 //}
+		 for (int i=0;i<outDegree[v];i++) {
+			 int u = outAdj[v][i];
+			 for(int j=0;j<outDegree[u];j++){
+				 twoHop.add(outAdj[u][j]);
 			 }
 		 }
 		 return twoHop;
@@ -116,15 +131,15 @@ public class GraphAdjList extends Graph {
 		String s = "Adjacency list";
 		s += " (size " + getNumVertices() + "+" + getNumEdges() + " integers):";
 
-		for (int v : adjListsMap.keySet()) {
+		for (int v = 0; v < getNumVertices(); v++) {
 			s += "\n\t"+v+": ";
-			for (int w : adjListsMap.get(v)) {
-				s += w+", ";
+			for (int i = 0; i < outDegree[v]; i++) {
+				s += outAdj[v][i]+", ";
 			}
 		}
 		s += "\n\tTwo hops List";
 
-		for (int v : adjListsMap.keySet()) {
+		for (int v = 0; v < getNumVertices(); v++) {
 			s += "\n\t"+v+": ";
 			List<Integer> hops = getDistance2(v);
 			for (int i=0;i<hops.size();i++) {
@@ -135,7 +150,31 @@ public class GraphAdjList extends Graph {
 		return s;
 	}
 
+	/**
+	 * The out- or in-neighbors of a vertex, read straight from the
+	 * adjacency arrays whenever they are asked for.
+	 */
+	private class Neighbors extends AbstractList<Integer> implements RandomAccess {
+		private final int v;
+		private final boolean out;
+
+		Neighbors(int v, boolean out) {
+			this.v = v;
+			this.out = out;
+		}
 
+		@Override
+		public Integer get(int i) {
+			if (i < 0 || i >= size()) {
+				throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size());
+			}
+			return out ? outAdj[v][i] : inAdj[v][i];
+		}
 
+		@Override
+		public int size() {
+			return out ? outDegree[v] : inDegree[v];
+		}
+	}
 
 }
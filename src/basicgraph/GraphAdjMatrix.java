@@ -1,10 +1,10 @@
 package basicgraph;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 /** A class that implements a directed graph. 
  * The graph may have self-loops, parallel edges. 
@@ -13,17 +13,34 @@ import java.util.Set;
  * The edges of the graph are not labeled.
  * Representation of edges via an adjacency matrix.
  * 
+ * The matrix is stored as bits, 64 entries to a long: each row is the set
+ * of out-neighbors of a vertex, and each column, stored again as a row of
+ * the transpose, the set of in-neighbors.  The few entries counting more
+ * than one parallel edge keep their counts in a map on the side.  A graph
+ * of n vertices so takes about n*n/4 bytes rather than the 4*n*n of a
+ * matrix of int counts, and whole rows and columns are scanned and
+ * multiplied a word at a time.
+ *
  * @author UCSD MOOC development team and YOU
  *
  */
 public class GraphAdjMatrix extends Graph {
 
 	private final int defaultNumVertices = 5;
-	private int[][] adjMatrix;
+	//Bit w of out[v] is set if there is an edge from v to w, and bit v of in[w] then too
+	private long[][] out;
+	private long[][] in;
+	//Longs in each row, enough for every vertex there is room for
+	private int words;
+	//Number of edges from v to w, keyed by pair(v, w), where more than one
+	private Map<Long,Integer> parallelEdges;
 	
 	/** Create a new empty Graph */
 	public GraphAdjMatrix () {
-		adjMatrix = new int[defaultNumVertices][defaultNumVertices];
+		out = new long[defaultNumVertices][];
+		in = new long[defaultNumVertices][];
+		words = wordsFor(defaultNumVertices);
+		parallelEdges = new HashMap<Long,Integer>();
 	}
 	
 	/** 
@@ -33,15 +50,20 @@ public class GraphAdjMatrix extends Graph {
 	 */
 	public void implementAddVertex() {
 		int v = getNumVertices();
-		if (v >= adjMatrix.length) {
-			int[][] newAdjMatrix = new int[v*2][v*2];
-			for (int i = 0; i < adjMatrix.length; i ++) {
-				for (int j = 0; j < adjMatrix.length; j ++) {
-					newAdjMatrix[i][j] = adjMatrix[i][j];
+		if (v >= out.length) {
+			out = Arrays.copyOf(out, v*2);
+			in = Arrays.copyOf(in, v*2);
+			int newWords = wordsFor(v*2);
+			if (newWords > words) {
+				for (int i = 0; i < v; i ++) {
+					out[i] = Arrays.copyOf(out[i], newWords);
+					in[i] = Arrays.copyOf(in[i], newWords);
 				}
+				words = newWords;
 			}
-			adjMatrix = newAdjMatrix;
 		}
+		out[v] = new long[words];
+		in[v] = new long[words];
 	}
 	
 	/** 
@@ -52,7 +74,13 @@ public class GraphAdjMatrix extends Graph {
 	 * @param w the index of the end point for the edge.  
 	 */	
 	public void implementAddEdge(int v, int w) {
-		adjMatrix[v][w] += 1;
+		if (hasBit(out[v], w)) {
+			parallelEdges.merge(pair(v, w), 2, (count, two) -> count + 1);
+		}
+		else {
+			out[v][w >>> 6] |= 1L << w;
+			in[w][v >>> 6] |= 1L << v;
+		}
 	}
 	
 	/** 
@@ -67,8 +95,8 @@ public class GraphAdjMatrix extends Graph {
 	 */	
 	public List<Integer> getNeighbors(int v) {
 		List<Integer> neighbors = new ArrayList<Integer>();
-		for (int i = 0; i < getNumVertices(); i ++) {
-			for (int j=0; j< adjMatrix[v][i]; j ++) {
+		for (int i = nextBit(out[v], 0); i >= 0; i = nextBit(out[v], i + 1)) {
+			for (int j=0; j< count(v, i); j ++) {
 				neighbors.add(i);
 			}
 		}
@@ -87,8 +115,8 @@ public class GraphAdjMatrix extends Graph {
 	 */
 	public List<Integer> getInNeighbors(int v) {
 		List<Integer> inNeighbors = new ArrayList<Integer>();
-		for (int i = 0; i < getNumVertices(); i ++) {
-			for (int j=0; j< adjMatrix[i][v]; j++) {
+		for (int i = nextBit(in[v], 0); i >= 0; i = nextBit(in[v], i + 1)) {
+			for (int j=0; j< count(i, v); j++) {
 				inNeighbors.add(i);
 			}
 		}
@@ -98,49 +126,124 @@ public class GraphAdjMatrix extends Graph {
 	/** 
 	 * Implement the abstract method for finding all 
 	 * vertices reachable by two hops from v.
-	 * Use matrix multiplication to record length 2 paths.
+	 * Use matrix multiplication to record length 2 paths,
+	 * computing only row v of the square of the matrix.
 	 * 
 	 * @param v the index of vertex.
 	 * @return List<Integer> a list of indices of vertices.  
 	 */	
 	public List<Integer> getDistance2(int v) {
-		int vertices = getNumVertices();
 		List<Integer> twoHops = new ArrayList<Integer>();
+		long[] row = out[v];
 		
-		int [][] newMatrix = new int[vertices][vertices];
-		
-		for (int i=0; i<vertices; i++){
-		    for (int j=0; j<vertices; j++){
-		      for (int k=0; k<vertices; k++){
-		    	  newMatrix[i][j] += adjMatrix[i][k] * adjMatrix[k][j];
-		      }
-		    }
+		//The boolean product: OR together the rows of v's out-neighbors
+		long[] reached = new long[words];
+		for (int k = nextBit(row, 0); k >= 0; k = nextBit(row, k + 1)) {
+			long[] hops = out[k];
+			for (int w = 0; w < words; w ++) {
+				reached[w] |= hops[w];
+			}
 		}
 		
-		for (int i = 0; i < newMatrix.length; i ++) {
-			if(newMatrix[v][i] > 0){
-				int j = newMatrix[v][i];
-				while(j>0){
-					twoHops.add(i);
-					j--;
+		//Entry (v, i) of the square counts the paths v -> k -> i
+		for (int i = nextBit(reached, 0); i >= 0; i = nextBit(reached, i + 1)) {
+			long[] column = in[i];
+			int paths = 0;
+			if (parallelEdges.isEmpty()) {
+				for (int w = 0; w < words; w ++) {
+					paths += Long.bitCount(row[w] & column[w]);
+				}
+			}
+			else {
+				for (int w = 0; w < words; w ++) {
+					long both = row[w] & column[w];
+					while (both != 0) {
+						int k = (w << 6) + Long.numberOfTrailingZeros(both);
+						paths += count(v, k) * count(k, i);
+						both &= both - 1;
+					}
 				}
 			}
+			for (int j = 0; j < paths; j ++) {
+				twoHops.add(i);
+			}
 		} 
 		return twoHops;
 	}
+
+	/**
+	 * Report the memory taken by the matrix
+	 * @return the size in bytes of the rows and columns of bits and of the
+	 *   parallel edge counts, leaving out object headers
+	 */
+	public long getMatrixBytes() {
+		long bytes = 0;
+		for (int i = 0; i < getNumVertices(); i ++) {
+			bytes += 8L * (out[i].length + in[i].length);
+		}
+		return bytes + 8L * (out.length + in.length) + 12L * parallelEdges.size();
+	}
+
+	/**
+	 * Report the memory a matrix of int counts, doubled in both dimensions
+	 * as it fills, would take for this graph
+	 * @return the size in bytes of the int matrix, leaving out object headers
+	 */
+	public long getIntMatrixBytes() {
+		long dim = out.length;
+		return 4L * dim * dim + 8L * dim;
+	}
+
+	// The number of edges from v to w
+	private int count(int v, int w) {
+		if (!hasBit(out[v], w)) {
+			return 0;
+		}
+		Integer count = parallelEdges.get(pair(v, w));
+		return count == null ? 1 : count;
+	}
+
+	// Key of the edges from v to w in parallelEdges
+	private static long pair(int v, int w) {
+		return ((long) v << 32) | w;
+	}
+
+	private static int wordsFor(int vertices) {
+		return (vertices + 63) >>> 6;
+	}
+
+	private static boolean hasBit(long[] bits, int i) {
+		return (bits[i >>> 6] & (1L << i)) != 0;
+	}
+
+	// The first set bit at or after from, or -1 if there is none
+	private static int nextBit(long[] bits, int from) {
+		int w = from >>> 6;
+		if (w >= bits.length) {
+			return -1;
+		}
+		long word = bits[w] & (-1L << from);
+		while (word == 0) {
+			if (++w == bits.length) {
+				return -1;
+			}
+			word = bits[w];
+		}
+		return (w << 6) + Long.numberOfTrailingZeros(word);
+	}
 	
 	/**
 	 * Generate string representation of adjacency matrix
 	 * @return the String
 	 */
 	public String adjacencyString() {
-		int dim = adjMatrix.length;
+		int dim = out.length;
 		String s = "Adjacency matrix";
-		s += " (size " + dim + "x" + dim + " = " + dim* dim + " integers):";
+		s += " (size " + dim + "x" + dim + " = " + dim* dim + " bits):";
 		for (int i = 0; i < dim; i ++) {
 			s += "\n\t"+i+": ";
-			for (int j = 0; j < adjMatrix[i].length; j++) {
-			s += adjMatrix[i][j] + ", ";
+			for (int j = 0; j < dim; j++) {
+			s += (i < getNumVertices() && j < getNumVertices() ? count(i, j) : 0) + ", ";
 			}
 		}
 		
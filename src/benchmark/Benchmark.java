@@ -0,0 +1,176 @@
+package benchmark;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonWriter;
+import javax.json.JsonWriterFactory;
+import javax.json.stream.JsonGenerator;
+
+/**
+ * A small benchmark runner in the style of JMH's average-time mode.
+ *
+ * Each benchmark is an operation returning a value.  The runner calls it
+ * for a number of warm-up iterations and then measurement iterations of a
+ * fixed length, and records the mean time per call in each measurement
+ * iteration.  Returned values are folded into a sink so the JIT cannot
+ * discard the work.  Standard output is silenced while benchmarks run,
+ * since the searches in MapGraph print their visit counts.
+ *
+ * The results are written as JSON in the layout JMH uses for -rf json,
+ * so tools that read JMH results can read these too.
+ */
+public class Benchmark {
+	private final int warmupIterations;
+	private final int measurementIterations;
+	private final long iterationNanos;
+
+	private final List<JsonObject> results = new ArrayList<JsonObject>();
+
+	// Folded over every value a benchmark returns
+	private volatile int sink;
+
+	/**
+	 * Create a runner
+	 * @param warmupIterations The number of iterations to discard
+	 * @param measurementIterations The number of iterations to record
+	 * @param iterationMillis The length of each iteration in ms
+	 */
+	public Benchmark(int warmupIterations, int measurementIterations, long iterationMillis)
+	{
+		this.warmupIterations = warmupIterations;
+		this.measurementIterations = measurementIterations;
+		this.iterationNanos = iterationMillis * 1000000;
+	}
+
+	/**
+	 * Run one benchmark and record its result
+	 * @param name The name of the benchmark, e.g. roadgraph.MapGraph.dijkstra
+	 * @param params Parameters to report with it, e.g. the map file
+	 * @param operation The operation to time
+	 * @return the mean time per operation in microseconds
+	 */
+	public double run(String name, Map<String, String> params, Supplier<?> operation)
+	{
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+		double[] samples = new double[measurementIterations];
+		try {
+			for (int i = 0; i < warmupIterations; i++) {
+				iteration(operation);
+			}
+			for (int i = 0; i < measurementIterations; i++) {
+				samples[i] = iteration(operation);
+			}
+		}
+		finally {
+			System.setOut(out);
+		}
+
+		double mean = 0;
+		for (double sample : samples) {
+			mean += sample / samples.length;
+		}
+		double variance = 0;
+		for (double sample : samples) {
+			variance += (sample - mean) * (sample - mean) / Math.max(1, samples.length - 1);
+		}
+		// Half-width of a 99.9% interval, as JMH reports, using the normal
+		// approximation rather than Student's t
+		double error = 3.29 * Math.sqrt(variance / samples.length);
+
+		JsonObjectBuilder paramsJson = Json.createObjectBuilder();
+		for (Map.Entry<String, String> param : params.entrySet()) {
+			paramsJson.add(param.getKey(), param.getValue());
+		}
+		JsonArrayBuilder raw = Json.createArrayBuilder();
+		for (double sample : samples) {
+			raw.add(sample);
+		}
+		results.add(Json.createObjectBuilder()
+				.add("benchmark", name)
+				.add("mode", "avgt")
+				.add("threads", 1)
+				.add("warmupIterations", warmupIterations)
+				.add("measurementIterations", measurementIterations)
+				.add("params", paramsJson)
+				.add("primaryMetric", Json.createObjectBuilder()
+						.add("score", mean)
+						.add("scoreError", error)
+						.add("scoreUnit", "us/op")
+						.add("rawData", Json.createArrayBuilder().add(raw)))
+				.build());
+		out.printf("%-40s %-24s %12.3f +- %.3f us/op%n", name, params.values(), mean, error);
+		return mean;
+	}
+
+	/**
+	 * Run one benchmark with no parameters
+	 * @param name The name of the benchmark
+	 * @param operation The operation to time
+	 * @return the mean time per operation in microseconds
+	 */
+	public double run(String name, Supplier<?> operation)
+	{
+		return run(name, Collections.<String, String>emptyMap(), operation);
+	}
+
+	// Call the operation repeatedly for one iteration and return the mean
+	// time per call in microseconds
+	private double iteration(Supplier<?> operation)
+	{
+		long calls = 0;
+		int hash = 0;
+		long start = System.nanoTime();
+		long elapsed;
+		do {
+			Object value = operation.get();
+			hash += value == null ? 0 : System.identityHashCode(value);
+			calls++;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < iterationNanos);
+		sink += hash;
+		return elapsed / 1000.0 / calls;
+	}
+
+	/**
+	 * Write the results of every benchmark run so far
+	 * @param writer Where to write the JSON
+	 */
+	public void writeJson(Writer writer)
+	{
+		JsonArrayBuilder array = Json.createArrayBuilder();
+		for (JsonObject result : results) {
+			array.add(result);
+		}
+		Map<String, Object> config = new HashMap<String, Object>();
+		config.put(JsonGenerator.PRETTY_PRINTING, true);
+		JsonWriterFactory factory = Json.createWriterFactory(config);
+		JsonWriter json = factory.createWriter(writer);
+		json.writeArray(array.build());
+		json.close();
+	}
+
+	/**
+	 * Write the results of every benchmark run so far to a file
+	 * @param filename The file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public void writeJson(String filename) throws IOException
+	{
+		writeJson(new FileWriter(filename));
+	}
+}
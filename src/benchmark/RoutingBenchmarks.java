@@ -0,0 +1,186 @@
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import geography.GeographicPoint;
+import geography.RoadSegment;
+import roadgraph.MapGraph;
+import roadgraph.TrafficProfiles;
+import util.GraphLoader;
+
+/**
+ * Benchmarks of the hot paths of loading and routing, over every map in
+ * data/maps/mapfiles.list:
+ *   GraphLoader.loadRoadMap
+ *   MapGraph.bfs, dijkstra and aStarSearch between seeded random pairs
+ *   MapGraph.timeDependentDijkstra between the same pairs, leaving at 8am
+ *     under any traffic profiles saved with the map
+ *   MapGraph.alternatives, up to 3 routes between the same pairs
+ *   MapGraph.travelMatrix between 16 of those starts and goals
+ *   GeographicPoint.distance
+ *   MapGraph.expandPath, the geometry lookup behind
+ *     RouteService.constructMapPath, and RoadSegment.expandPath, the
+ *     lookup through the road segment sets it replaced
+ *   MapGraph.dijkstra and aStarSearch again, between the same pairs, after
+ *     MapGraph.renumberAlongCurve lays the graph out along a Hilbert curve,
+ *     with and without breadth-first refinement
+ *
+ * Run from the project directory as
+ *   java benchmark.RoutingBenchmarks [results.json]
+ * The results are printed as a table and written as JSON to the file
+ * given, or to standard output.
+ */
+public class RoutingBenchmarks {
+	private static final long SEED = 42;
+	private static final int PAIRS = 64;
+	private static final int MATRIX_SIZE = 16;
+	private static final double RUSH_HOUR = 8;
+	private static final int ALTERNATIVES = 3;
+
+	public static void main(String[] args) throws IOException
+	{
+		Benchmark bench = new Benchmark(3, 5, 500);
+
+		List<String> files = new ArrayList<String>();
+		BufferedReader list = new BufferedReader(new FileReader("data/maps/mapfiles.list"));
+		String file;
+		while ((file = list.readLine()) != null) {
+			if (!file.trim().isEmpty()) {
+				files.add(file.trim());
+			}
+		}
+		list.close();
+
+		for (String name : files) {
+			String path = "data/maps/" + name;
+			Map<String, String> params = new LinkedHashMap<String, String>();
+			params.put("map", name);
+
+			bench.run("util.GraphLoader.loadRoadMap", params, () -> {
+				MapGraph map = new MapGraph();
+				GraphLoader.loadRoadMap(path, map, new HashMap<GeographicPoint,HashSet<RoadSegment>>(),
+						new HashSet<GeographicPoint>());
+				return map;
+			});
+
+			MapGraph map = new MapGraph();
+			HashMap<GeographicPoint,HashSet<RoadSegment>> roads =
+					new HashMap<GeographicPoint,HashSet<RoadSegment>>();
+			GraphLoader.loadRoadMap(path, map, roads, null);
+			map.setTraffic(TrafficProfiles.load(path + ".traffic", map));
+
+			// The same origin-destination pairs for every search, cycled through
+			List<GeographicPoint> vertices = new ArrayList<GeographicPoint>(map.getVertices());
+			vertices.sort((a, b) -> a.getX() != b.getX() ? Double.compare(a.getX(), b.getX())
+					: Double.compare(a.getY(), b.getY()));
+			Random random = new Random(SEED);
+			GeographicPoint[][] pairs = new GeographicPoint[PAIRS][];
+			for (int i = 0; i < PAIRS; i++) {
+				pairs[i] = new GeographicPoint[] {
+						vertices.get(random.nextInt(vertices.size())),
+						vertices.get(random.nextInt(vertices.size()))};
+			}
+			int[] next = new int[1];
+
+			bench.run("roadgraph.MapGraph.bfs", params, () -> {
+				GeographicPoint[] pair = pairs[next[0]++ % PAIRS];
+				return map.bfs(pair[0], pair[1]);
+			});
+			bench.run("roadgraph.MapGraph.dijkstra", params, () -> {
+				GeographicPoint[] pair = pairs[next[0]++ % PAIRS];
+				return map.dijkstra(pair[0], pair[1]);
+			});
+			bench.run("roadgraph.MapGraph.aStarSearch", params, () -> {
+				GeographicPoint[] pair = pairs[next[0]++ % PAIRS];
+				return map.aStarSearch(pair[0], pair[1]);
+			});
+			bench.run("roadgraph.MapGraph.timeDependentDijkstra", params, () -> {
+				GeographicPoint[] pair = pairs[next[0]++ % PAIRS];
+				return map.timeDependentDijkstra(pair[0], pair[1], RUSH_HOUR);
+			});
+			bench.run("roadgraph.MapGraph.alternatives", params, () -> {
+				GeographicPoint[] pair = pairs[next[0]++ % PAIRS];
+				return map.alternatives(pair[0], pair[1], ALTERNATIVES);
+			});
+
+			// A matrix between the starts and the goals of the first 16 pairs
+			List<GeographicPoint> sources = new ArrayList<GeographicPoint>();
+			List<GeographicPoint> targets = new ArrayList<GeographicPoint>();
+			for (int i = 0; i < MATRIX_SIZE; i++) {
+				sources.add(pairs[i][0]);
+				targets.add(pairs[i][1]);
+			}
+			bench.run("roadgraph.MapGraph.travelMatrix", params, () ->
+					map.travelMatrix(sources, targets));
+
+			// Expand the Dijkstra route of each pair that has one
+			List<List<GeographicPoint>> routes = new ArrayList<List<GeographicPoint>>();
+			PrintStream out = System.out;
+			System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+			try {
+				for (GeographicPoint[] pair : pairs) {
+					List<GeographicPoint> route = map.dijkstra(pair[0], pair[1]);
+					if (route != null) {
+						routes.add(route);
+					}
+				}
+			}
+			finally {
+				System.setOut(out);
+			}
+			if (!routes.isEmpty()) {
+				bench.run("geography.RoadSegment.expandPath", params, () ->
+						RoadSegment.expandPath(routes.get(next[0]++ % routes.size()), roads));
+				bench.run("roadgraph.MapGraph.expandPath", params, () ->
+						map.expandPath(routes.get(next[0]++ % routes.size())));
+			}
+
+			// The same searches over the graph laid out in space-filling curve order
+			for (boolean breadthFirst : new boolean[] {false, true}) {
+				MapGraph renumbered = new MapGraph();
+				GraphLoader.loadRoadMap(path, renumbered);
+				renumbered.renumberAlongCurve(breadthFirst);
+				Map<String, String> ordered = new LinkedHashMap<String, String>(params);
+				ordered.put("order", breadthFirst ? "hilbert+bfs" : "hilbert");
+				bench.run("roadgraph.MapGraph.dijkstra", ordered, () -> {
+					GeographicPoint[] pair = pairs[next[0]++ % PAIRS];
+					return renumbered.dijkstra(pair[0], pair[1]);
+				});
+				bench.run("roadgraph.MapGraph.aStarSearch", ordered, () -> {
+					GeographicPoint[] pair = pairs[next[0]++ % PAIRS];
+					return renumbered.aStarSearch(pair[0], pair[1]);
+				});
+			}
+		}
+
+		Random random = new Random(SEED);
+		GeographicPoint[] points = new GeographicPoint[1024];
+		for (int i = 0; i < points.length; i++) {
+			points[i] = new GeographicPoint(32 + random.nextDouble(), -117 + random.nextDouble());
+		}
+		int[] next = new int[1];
+		bench.run("geography.GeographicPoint.distance", () -> {
+			int i = next[0]++;
+			return points[i & 1023].distance(points[(i + 1) & 1023]);
+		});
+
+		if (args.length > 0) {
+			bench.writeJson(args[0]);
+		}
+		else {
+			bench.writeJson(new OutputStreamWriter(System.out));
+		}
+	}
+}
@@ -1,8 +1,10 @@
 package geography;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /** 
  * A segment of the road that includes the intersection end points
@@ -16,7 +18,11 @@ public class RoadSegment {
 	private GeographicPoint point1;
 	private GeographicPoint point2;
 	
-	private List<GeographicPoint> geometryPoints;
+	// Latitude and longitude, interleaved, of the points between point1 and
+	// point2, at points firstPoint..endPoint-1 of an array that may be shared
+	private double[] coordinates;
+	private int firstPoint;
+	private int endPoint;
 	
 	private String roadName;
 	private String roadType;
@@ -27,15 +33,46 @@ public class RoadSegment {
 	public RoadSegment(GeographicPoint pt1, GeographicPoint pt2, 
 						List<GeographicPoint> geometry, String roadName,
 						String roadType, double length)
+	{
+		this(pt1, pt2, toCoordinates(geometry), 0, geometry.size(), roadName, roadType, length);
+	}
+	
+	/** Create a segment whose geometry is read from an array of points
+	 * kept elsewhere, such as the shapes of a compiled graph, rather than
+	 * copied.  The array must not change afterwards.
+	 * @param pt1 The point at one end of the segment
+	 * @param pt2 The point at the other end of the segment
+	 * @param coordinates The latitude and longitude of each point, interleaved
+	 * @param firstPoint The index, in points, of the first point after pt1
+	 * @param endPoint One past the index of the last point before pt2
+	 * @param roadName The name of the road
+	 * @param roadType The type of the road
+	 * @param length The length of the segment in km
+	 */
+	public RoadSegment(GeographicPoint pt1, GeographicPoint pt2,
+						double[] coordinates, int firstPoint, int endPoint,
+						String roadName, String roadType, double length)
 	{
 		point1 = pt1;
 		point2 = pt2;
-		geometryPoints = new ArrayList<GeographicPoint>(geometry);
+		this.coordinates = coordinates;
+		this.firstPoint = firstPoint;
+		this.endPoint = endPoint;
 		this.roadName = roadName;
 		this.roadType = roadType;
 		this.length = length;
 	}
 	
+	private static double[] toCoordinates(List<GeographicPoint> geometry)
+	{
+		double[] coordinates = new double[2 * geometry.size()];
+		for (int i = 0; i < geometry.size(); i++) {
+			coordinates[2 * i] = geometry.get(i).getX();
+			coordinates[2 * i + 1] = geometry.get(i).getY();
+		}
+		return coordinates;
+	}
+	
 	
 	/** Return all of the points from start to end in that order
 	 * on this segment.
@@ -49,12 +86,12 @@ public class RoadSegment {
 		List<GeographicPoint> allPoints = new ArrayList<GeographicPoint>();
 		if (point1.equals(start) && point2.equals(end)) {
 			allPoints.add(start);
-			allPoints.addAll(geometryPoints);
+			addGeometry(allPoints);
 			allPoints.add(end);
 		}
 		else if (point2.equals(start) && point1.equals(end)) {
 			allPoints.add(end);
-			allPoints.addAll(geometryPoints);
+			addGeometry(allPoints);
 			allPoints.add(start);
 			Collections.reverse(allPoints);
 		}
@@ -66,6 +103,60 @@ public class RoadSegment {
 		return allPoints;
 	}
 	
+	// Add the points between the end points, from point1 to point2
+	private void addGeometry(List<GeographicPoint> points)
+	{
+		for (int i = firstPoint; i < endPoint; i++) {
+			points.add(new GeographicPoint(coordinates[2 * i], coordinates[2 * i + 1]));
+		}
+	}
+	
+	/** Return all of the points on this segment, from its first end
+	 * point to its second.
+	 * @return the end points and the geometry between them
+	 */
+	public List<GeographicPoint> getPoints()
+	{
+		return getPoints(point1, point2);
+	}
+	
+	/** Expand a path through intersections into the full geometry of the
+	 * roads it follows.  Between each pair of consecutive intersections the
+	 * shortest segment joining them is used.
+	 * @param path The intersections on the path, in order
+	 * @param roads The segments at each intersection, as filled in by
+	 *   GraphLoader.loadRoadMap
+	 * @return every point along the path, with the intersections where
+	 *   segments meet repeated once per segment
+	 */
+	public static List<GeographicPoint> expandPath(List<GeographicPoint> path,
+			Map<GeographicPoint, ? extends Collection<RoadSegment>> roads)
+	{
+		List<GeographicPoint> points = new ArrayList<GeographicPoint>();
+		for (int i = 0; i < path.size() - 1; i++) {
+			GeographicPoint curr = path.get(i);
+			GeographicPoint next = path.get(i + 1);
+			Collection<RoadSegment> segments = roads.get(curr);
+			if (segments == null) {
+				continue;
+			}
+			RoadSegment chosenSegment = null;
+			for (RoadSegment segment : segments) {
+				if (segment.getOtherPoint(curr).equals(next)
+						&& (chosenSegment == null || segment.getLength() < chosenSegment.getLength())) {
+					chosenSegment = segment;
+				}
+			}
+			if (chosenSegment != null) {
+				points.addAll(chosenSegment.getPoints(curr, next));
+			}
+			else {
+				System.err.println("ERROR in expandPath : no segment from " + curr + " to " + next);
+			}
+		}
+		return points;
+	}
+	
 	/** Two road segments are equal if they have the same start and end points
 	 *  and they have the same road name.
 	 */
@@ -98,8 +189,8 @@ public class RoadSegment {
 	{
 		String toReturn = this.roadName + ", " +this.roadType;
 		toReturn += " [" + point1;
-		for (GeographicPoint p : this.geometryPoints) {
-			toReturn += "; " + p;
+		for (int i = firstPoint; i < endPoint; i++) {
+			toReturn += "; " + new GeographicPoint(coordinates[2 * i], coordinates[2 * i + 1]);
 		}
 		toReturn += "; " + point2 + "]";
 		
@@ -109,6 +200,9 @@ public class RoadSegment {
 	// get the length of the road segment
 	public double getLength() { return this.length; }
 	
+	// get the type of the road segment
+	public String getRoadType() { return this.roadType; }
+	
 	
 	// given one end, return the other.
 	public geography.GeographicPoint getOtherPoint(geography.GeographicPoint point) {
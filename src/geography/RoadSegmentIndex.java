@@ -0,0 +1,112 @@
+package geography;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds the nearest point on any road to a location, following the full
+ * geometry of each RoadSegment rather than just its end points.
+ *
+ * Every straight piece between consecutive points of a segment is one item
+ * of a SpatialIndex.
+ */
+public class RoadSegmentIndex {
+
+	/** The result of snapping a location to the roads */
+	public static class Snap {
+		private final RoadSegment segment;
+		private final GeographicPoint point;
+		private final double distance;
+
+		Snap(RoadSegment segment, GeographicPoint point, double distance)
+		{
+			this.segment = segment;
+			this.point = point;
+			this.distance = distance;
+		}
+
+		/**
+		 * Get the segment the location snapped to
+		 * @return the nearest segment
+		 */
+		public RoadSegment getSegment()
+		{
+			return segment;
+		}
+
+		/**
+		 * Get the point on the segment nearest to the location
+		 * @return the snapped point
+		 */
+		public GeographicPoint getPoint()
+		{
+			return point;
+		}
+
+		/**
+		 * Get the distance from the location to the snapped point
+		 * @return the distance in km
+		 */
+		public double getDistance()
+		{
+			return distance;
+		}
+	}
+
+	private final SpatialIndex index;
+	private final RoadSegment[] segmentOf;//The segment each piece belongs to
+
+	/**
+	 * Build an index over road segments
+	 * @param segments The segments, such as the values of the segments map
+	 *   filled in by GraphLoader.loadRoadMap, flattened.  Duplicates are
+	 *   indexed once.
+	 */
+	public RoadSegmentIndex(Collection<RoadSegment> segments)
+	{
+		Set<RoadSegment> unique = new LinkedHashSet<RoadSegment>(segments);
+		List<RoadSegment> owners = new ArrayList<RoadSegment>();
+		List<GeographicPoint> starts = new ArrayList<GeographicPoint>();
+		List<GeographicPoint> ends = new ArrayList<GeographicPoint>();
+		for (RoadSegment seg : unique) {
+			List<GeographicPoint> points = seg.getPoints();
+			for (int i = 0; i + 1 < points.size(); i++) {
+				owners.add(seg);
+				starts.add(points.get(i));
+				ends.add(points.get(i + 1));
+			}
+		}
+		int n = owners.size();
+		double[] lat1 = new double[n];
+		double[] lon1 = new double[n];
+		double[] lat2 = new double[n];
+		double[] lon2 = new double[n];
+		for (int i = 0; i < n; i++) {
+			lat1[i] = starts.get(i).getX();
+			lon1[i] = starts.get(i).getY();
+			lat2[i] = ends.get(i).getX();
+			lon2[i] = ends.get(i).getY();
+		}
+		index = new SpatialIndex(lat1, lon1, lat2, lon2);
+		segmentOf = owners.toArray(new RoadSegment[n]);
+	}
+
+	/**
+	 * Snap a location to the nearest point on any road
+	 * @param lat The latitude of the location
+	 * @param lon The longitude of the location
+	 * @return the nearest road and point on it, or null if there are no roads
+	 */
+	public Snap snap(double lat, double lon)
+	{
+		int piece = index.nearest(lat, lon);
+		if (piece < 0) {
+			return null;
+		}
+		return new Snap(segmentOf[piece], index.closestPoint(piece, lat, lon),
+				index.distance(piece, lat, lon));
+	}
+}
@@ -0,0 +1,318 @@
+package geography;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A static k-d tree over points or straight line pieces on the earth's
+ * surface, for finding the items nearest to a location.
+ *
+ * Coordinates are projected onto a plane tangent at the mean latitude of
+ * the items (x = longitude scaled by the cosine of that latitude), so
+ * distances are in km and accurate to well under a metre across a city.
+ * Each item is filed by its centre.  For pieces, every subtree also records
+ * the largest half-length in it, so a subtree can only be skipped when even
+ * its longest piece could not reach the query.  For points the half-lengths
+ * are all zero and this is an ordinary k-d tree.
+ *
+ * Items are identified by their index in the arrays the index was built
+ * from.  The index is immutable and may be shared between threads.
+ */
+public class SpatialIndex {
+	// Km per degree of latitude on a sphere of the radius GeographicPoint uses
+	private static final double KM_PER_DEGREE = Math.PI * 6371 / 180;
+
+	private final double cosLat;//Scale of a degree of longitude
+
+	// Projected end points of each item, indexed by item
+	private final double[] x1;
+	private final double[] y1;
+	private final double[] x2;
+	private final double[] y2;
+
+	// The tree: the item at each position, its centre, and the largest
+	// half-length of any item in the subtree rooted at that position.  The
+	// root of positions lo..hi-1 is at (lo+hi)/2, split on x at even depths.
+	private final int[] item;
+	private final double[] cx;
+	private final double[] cy;
+	private final double[] maxRadius;
+
+	/**
+	 * Build an index over points
+	 * @param lat The latitude of each point
+	 * @param lon The longitude of each point
+	 */
+	public SpatialIndex(double[] lat, double[] lon)
+	{
+		this(lat, lon, lat, lon);
+	}
+
+	/**
+	 * Build an index over straight line pieces
+	 * @param lat1 The latitude of the first end of each piece
+	 * @param lon1 The longitude of the first end of each piece
+	 * @param lat2 The latitude of the second end of each piece
+	 * @param lon2 The longitude of the second end of each piece
+	 */
+	public SpatialIndex(double[] lat1, double[] lon1, double[] lat2, double[] lon2)
+	{
+		int n = lat1.length;
+		double meanLat = 0;
+		for (int i = 0; i < n; i++) {
+			meanLat += (lat1[i] + lat2[i]) / (2.0 * n);
+		}
+		cosLat = Math.cos(Math.toRadians(meanLat));
+		x1 = new double[n];
+		y1 = new double[n];
+		x2 = new double[n];
+		y2 = new double[n];
+		for (int i = 0; i < n; i++) {
+			x1[i] = projectX(lon1[i]);
+			y1[i] = projectY(lat1[i]);
+			x2[i] = projectX(lon2[i]);
+			y2[i] = projectY(lat2[i]);
+		}
+
+		item = new int[n];
+		cx = new double[n];
+		cy = new double[n];
+		maxRadius = new double[n];
+		double[] radius = new double[n];
+		for (int i = 0; i < n; i++) {
+			item[i] = i;
+			cx[i] = (x1[i] + x2[i]) / 2;
+			cy[i] = (y1[i] + y2[i]) / 2;
+			radius[i] = Math.hypot(x2[i] - x1[i], y2[i] - y1[i]) / 2;
+		}
+		build(0, n, 0, radius);
+	}
+
+	private double projectX(double lon)
+	{
+		return lon * cosLat * KM_PER_DEGREE;
+	}
+
+	private double projectY(double lat)
+	{
+		return lat * KM_PER_DEGREE;
+	}
+
+	// Arrange positions lo..hi-1 into a subtree and return its largest radius
+	private double build(int lo, int hi, int depth, double[] radius)
+	{
+		if (lo >= hi) {
+			return 0;
+		}
+		int mid = (lo + hi) >>> 1;
+		select(lo, hi - 1, mid, depth % 2 == 0 ? cx : cy, radius);
+		double max = radius[mid];
+		max = Math.max(max, build(lo, mid, depth + 1, radius));
+		max = Math.max(max, build(mid + 1, hi, depth + 1, radius));
+		maxRadius[mid] = max;
+		return max;
+	}
+
+	// Quickselect: put the position that belongs at k in order of key there,
+	// with smaller keys before it and larger after
+	private void select(int lo, int hi, int k, double[] key, double[] radius)
+	{
+		while (lo < hi) {
+			double pivot = key[(lo + hi) >>> 1];
+			int i = lo;
+			int j = hi;
+			while (i <= j) {
+				while (key[i] < pivot) {
+					i++;
+				}
+				while (key[j] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					swap(i++, j--, radius);
+				}
+			}
+			if (k <= j) {
+				hi = j;
+			}
+			else if (k >= i) {
+				lo = i;
+			}
+			else {
+				return;
+			}
+		}
+	}
+
+	private void swap(int i, int j, double[] radius)
+	{
+		int t = item[i]; item[i] = item[j]; item[j] = t;
+		double d = cx[i]; cx[i] = cx[j]; cx[j] = d;
+		d = cy[i]; cy[i] = cy[j]; cy[j] = d;
+		d = radius[i]; radius[i] = radius[j]; radius[j] = d;
+	}
+
+	/**
+	 * Get the number of items in this index
+	 * @return the number of items
+	 */
+	public int size()
+	{
+		return item.length;
+	}
+
+	/**
+	 * Find the item nearest to a location
+	 * @param lat The latitude of the location
+	 * @param lon The longitude of the location
+	 * @return the index of the nearest item, or -1 if there are none
+	 */
+	public int nearest(double lat, double lon)
+	{
+		int[] found = kNearest(lat, lon, 1);
+		return found.length == 0 ? -1 : found[0];
+	}
+
+	/**
+	 * Find the k items nearest to a location
+	 * @param lat The latitude of the location
+	 * @param lon The longitude of the location
+	 * @param k The number of items to find
+	 * @return the indexes of the nearest items, nearest first
+	 */
+	public int[] kNearest(double lat, double lon, int k)
+	{
+		if (k <= 0) {
+			return new int[0];
+		}
+		// Max-heap of the best k so far, as {distance, item}
+		PriorityQueue<double[]> best = new PriorityQueue<double[]>(k,
+				(a, b) -> Double.compare(b[0], a[0]));
+		kNearest(0, item.length, 0, projectX(lon), projectY(lat), k, best);
+		int[] result = new int[best.size()];
+		for (int i = result.length - 1; i >= 0; i--) {
+			result[i] = (int) best.poll()[1];
+		}
+		return result;
+	}
+
+	private void kNearest(int lo, int hi, int depth, double qx, double qy, int k,
+			PriorityQueue<double[]> best)
+	{
+		if (lo >= hi) {
+			return;
+		}
+		int mid = (lo + hi) >>> 1;
+		double d = planarDistance(item[mid], qx, qy);
+		if (best.size() < k) {
+			best.add(new double[] {d, item[mid]});
+		}
+		else if (d < best.peek()[0]) {
+			best.poll();
+			best.add(new double[] {d, item[mid]});
+		}
+		double diff = depth % 2 == 0 ? qx - cx[mid] : qy - cy[mid];
+		// Search the side of the split the query is on first
+		if (diff < 0) {
+			kNearest(lo, mid, depth + 1, qx, qy, k, best);
+			if (best.size() < k || diff + maxRadius[mid] > -best.peek()[0]) {
+				kNearest(mid + 1, hi, depth + 1, qx, qy, k, best);
+			}
+		}
+		else {
+			kNearest(mid + 1, hi, depth + 1, qx, qy, k, best);
+			if (best.size() < k || diff - maxRadius[mid] < best.peek()[0]) {
+				kNearest(lo, mid, depth + 1, qx, qy, k, best);
+			}
+		}
+	}
+
+	/**
+	 * Find every item within a distance of a location
+	 * @param lat The latitude of the location
+	 * @param lon The longitude of the location
+	 * @param radius The distance in km
+	 * @return the indexes of the items within radius, nearest first
+	 */
+	public int[] withinRadius(double lat, double lon, double radius)
+	{
+		List<double[]> found = new ArrayList<double[]>();
+		withinRadius(0, item.length, 0, projectX(lon), projectY(lat), radius, found);
+		found.sort((a, b) -> Double.compare(a[0], b[0]));
+		int[] result = new int[found.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = (int) found.get(i)[1];
+		}
+		return result;
+	}
+
+	private void withinRadius(int lo, int hi, int depth, double qx, double qy, double radius,
+			List<double[]> found)
+	{
+		if (lo >= hi) {
+			return;
+		}
+		int mid = (lo + hi) >>> 1;
+		double d = planarDistance(item[mid], qx, qy);
+		if (d <= radius) {
+			found.add(new double[] {d, item[mid]});
+		}
+		double diff = depth % 2 == 0 ? qx - cx[mid] : qy - cy[mid];
+		// Centres on the high side of the split are at least -diff away
+		if (-diff - maxRadius[mid] <= radius) {
+			withinRadius(mid + 1, hi, depth + 1, qx, qy, radius, found);
+		}
+		if (diff - maxRadius[mid] <= radius) {
+			withinRadius(lo, mid, depth + 1, qx, qy, radius, found);
+		}
+	}
+
+	/**
+	 * Distance from a location to an item
+	 * @param i The index of the item
+	 * @param lat The latitude of the location
+	 * @param lon The longitude of the location
+	 * @return the distance in km to the nearest point of the item
+	 */
+	public double distance(int i, double lat, double lon)
+	{
+		return planarDistance(i, projectX(lon), projectY(lat));
+	}
+
+	/**
+	 * The point of an item nearest to a location.  For a point item this
+	 * is just the point.
+	 * @param i The index of the item
+	 * @param lat The latitude of the location
+	 * @param lon The longitude of the location
+	 * @return the nearest point of the item
+	 */
+	public GeographicPoint closestPoint(int i, double lat, double lon)
+	{
+		double t = fraction(i, projectX(lon), projectY(lat));
+		double x = x1[i] + t * (x2[i] - x1[i]);
+		double y = y1[i] + t * (y2[i] - y1[i]);
+		return new GeographicPoint(y / KM_PER_DEGREE, x / (cosLat * KM_PER_DEGREE));
+	}
+
+	// How far along item i, from 0 at its first end to 1 at its second, is
+	// the point nearest to (qx, qy)
+	private double fraction(int i, double qx, double qy)
+	{
+		double dx = x2[i] - x1[i];
+		double dy = y2[i] - y1[i];
+		double lengthSquared = dx * dx + dy * dy;
+		if (lengthSquared == 0) {
+			return 0;
+		}
+		double t = ((qx - x1[i]) * dx + (qy - y1[i]) * dy) / lengthSquared;
+		return Math.max(0, Math.min(1, t));
+	}
+
+	private double planarDistance(int i, double qx, double qy)
+	{
+		double t = fraction(i, qx, qy);
+		return Math.hypot(x1[i] + t * (x2[i] - x1[i]) - qx, y1[i] + t * (y2[i] - y1[i]) - qy);
+	}
+}
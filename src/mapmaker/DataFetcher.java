@@ -54,7 +54,10 @@ public class DataFetcher {
             q += "way[\"highway\"=\"" + s + "\"]" + bounds + ";";
         }
 
-        q += "); (._;>;); out;";
+        q += "); (._;>;)->.roads;";
+
+        // Turn restrictions on those roads
+        q += " rel(bw.roads)[\"type\"=\"restriction\"]; (.roads; ._;); out;";
 
         return q;
     }
@@ -1,13 +1,15 @@
 package mapmaker;
 
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import javax.json.*;
 
 public class MapMaker {
     float[] bounds;
-    HashMap<Integer, Location> nodes = new HashMap<Integer, Location>();
+    HashMap<Long, Location> nodes = new HashMap<Long, Location>();
+    HashMap<Long, List<Long>> ways = new HashMap<Long, List<Long>>();
 
     public MapMaker(float[] bounds) {
         this.bounds = bounds;
@@ -21,7 +23,7 @@ public class MapMaker {
 
         for (JsonObject elem : elements.getValuesAs(JsonObject.class)) {
             if (elem.getString("type").equals("node")) {
-                nodes.put(elem.getInt("id"), new Location(elem.getJsonNumber("lat").doubleValue(), elem.getJsonNumber("lon").doubleValue()));
+                nodes.put(elem.getJsonNumber("id").longValue(), new Location(elem.getJsonNumber("lat").doubleValue(), elem.getJsonNumber("lon").doubleValue()));
             }
         }
 
@@ -39,9 +41,14 @@ public class MapMaker {
                 String type = elem.getJsonObject("tags").getString("highway", "");
                 String oneway = elem.getJsonObject("tags").getString("oneway", "no");
                 List<JsonNumber> nodelist = elem.getJsonArray("nodes").getValuesAs(JsonNumber.class);
+                List<Long> ids = new ArrayList<Long>();
+                for (JsonNumber id : nodelist) {
+                    ids.add(id.longValue());
+                }
+                ways.put(elem.getJsonNumber("id").longValue(), ids);
                 for (int i = 0; i < nodelist.size() - 1; i++) {
-                    Location start = nodes.get(nodelist.get(i).intValue());
-                    Location end = nodes.get(nodelist.get(i + 1).intValue());
+                    Location start = nodes.get(nodelist.get(i).longValue());
+                    Location end = nodes.get(nodelist.get(i + 1).longValue());
                     if (start.outsideBounds(bounds) || end.outsideBounds(bounds)) {
                         continue;
                     }
@@ -54,9 +61,79 @@ public class MapMaker {
             }
         }
         outfile.close();
+        return writeRestrictions(elements, filename + ".restrictions");
+    }
+
+    /**
+     * Write the turn restriction relations in the data, one per line as
+     *   fromLat fromLon viaLat viaLon toLat toLon restriction
+     * where via is the node turned at, from and to are the nodes next to it
+     * on the ways turned from and onto, and restriction is the OSM tag such
+     * as no_left_turn.  Restrictions through ways rather than a node, or
+     * whose ways do not begin or end at the via node, are skipped.
+     */
+    private boolean writeRestrictions(JsonArray elements, String filename) {
+        PrintWriter outfile;
+        try {
+            outfile = new PrintWriter(filename);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+
+        for (JsonObject elem : elements.getValuesAs(JsonObject.class)) {
+            if (!elem.getString("type").equals("relation") || !elem.containsKey("tags")) {
+                continue;
+            }
+            String restriction = elem.getJsonObject("tags").getString("restriction", "");
+            if (restriction.isEmpty()) {
+                continue;
+            }
+            Long from = null, via = null, to = null;
+            for (JsonObject member : elem.getJsonArray("members").getValuesAs(JsonObject.class)) {
+                long ref = member.getJsonNumber("ref").longValue();
+                String role = member.getString("role", "");
+                String type = member.getString("type", "");
+                if (role.equals("from") && type.equals("way")) {
+                    from = ref;
+                }
+                else if (role.equals("via") && type.equals("node")) {
+                    via = ref;
+                }
+                else if (role.equals("to") && type.equals("way")) {
+                    to = ref;
+                }
+            }
+            if (from == null || via == null || to == null) {
+                continue;
+            }
+            Location before = nodes.get(nextTo(ways.get(from), via));
+            Location at = nodes.get(via);
+            Location after = nodes.get(nextTo(ways.get(to), via));
+            if (before == null || at == null || after == null || before.outsideBounds(bounds)
+                    || at.outsideBounds(bounds) || after.outsideBounds(bounds)) {
+                continue;
+            }
+            outfile.println("" + before + at + after + restriction);
+        }
+        outfile.close();
         return true;
     }
 
+    // The node next to an end node of a way, or null if node is not an end
+    private static Long nextTo(List<Long> way, long node) {
+        if (way == null || way.size() < 2) {
+            return null;
+        }
+        if (way.get(0) == node) {
+            return way.get(1);
+        }
+        if (way.get(way.size() - 1) == node) {
+            return way.get(way.size() - 2);
+        }
+        return null;
+    }
+
     public static void main(String[] args) {
         if (args.length != 4) {
             System.out.println("Incorrect number of arguments.");
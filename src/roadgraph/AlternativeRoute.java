@@ -0,0 +1,78 @@
+package roadgraph;
+
+import java.util.Collections;
+import java.util.List;
+
+import geography.GeographicPoint;
+
+/**
+ * One of several meaningfully different routes between the same two
+ * intersections, as found by MapGraph.alternatives.
+ */
+public class AlternativeRoute {
+	private final List<GeographicPoint> path;
+	private final double duration;
+	private final double length;
+	private final double overlap;
+
+	/**
+	 * Create a route
+	 * @param path The intersections on the route, from start to goal
+	 * @param duration The travel time of the route in hours
+	 * @param length The length of the route in km
+	 * @param overlap The share of the travel time spent on roads of the
+	 *   routes before this one
+	 */
+	AlternativeRoute(List<GeographicPoint> path, double duration, double length, double overlap)
+	{
+		this.path = Collections.unmodifiableList(path);
+		this.duration = duration;
+		this.length = length;
+		this.overlap = overlap;
+	}
+
+	/**
+	 * Get the intersections on the route
+	 * @return the path from start to goal, including both
+	 */
+	public List<GeographicPoint> getPath()
+	{
+		return path;
+	}
+
+	/**
+	 * Get the travel time of the route
+	 * @return the travel time in hours
+	 */
+	public double getDuration()
+	{
+		return duration;
+	}
+
+	/**
+	 * Get the length of the route
+	 * @return the length in km
+	 */
+	public double getLength()
+	{
+		return length;
+	}
+
+	/**
+	 * Get how much of the route is shared with the better routes returned
+	 * before it
+	 * @return the largest share of this route's travel time spent on the
+	 *   roads of any one earlier route, from 0 for the fastest route to 1
+	 */
+	public double getOverlap()
+	{
+		return overlap;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("%d intersections, %.1f min, %.2f km, %.0f%% overlap",
+				path.size(), duration * 60, length, overlap * 100);
+	}
+}
@@ -0,0 +1,197 @@
+package roadgraph;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A monotone radix heap over integer-quantized keys.
+ *
+ * Keys are divided by a resolution and truncated to a long, so nodes whose
+ * keys fall in the same quantum come out in no particular order and a search
+ * using this queue is only exact up to the resolution.  In exchange each
+ * operation is a few array writes: a node lives in the bucket given by the
+ * highest bit in which its quantized key differs from the last key removed,
+ * and buckets are only redistributed when bucket 0 runs dry.
+ *
+ * The queue is monotone: a key smaller than the last one removed is treated
+ * as equal to it.  That holds for Dijkstra and for A* with a consistent
+ * heuristic.  A decrease-key re-files the node and leaves the old entry to
+ * be skipped when it is reached.
+ */
+public class BucketQueue implements NodeQueue {
+	private static final int NUM_BUCKETS = 65;
+	private static final int INITIAL_BUCKET_SIZE = 16;
+
+	private final double resolution;
+
+	private final int[][] bucketNodes;
+	private final long[][] bucketKeys;
+	private final int[] bucketSize;
+
+	private final long[] current;//Quantized key each queued node was last filed with
+	private final boolean[] queued;
+	private long last;//Last key removed
+	private int size;
+
+	/**
+	 * Create an empty queue for nodes 0..capacity-1
+	 * @param capacity The number of nodes in the graph
+	 * @param resolution The size of one key quantum, e.g. 1e-4 hours
+	 */
+	public BucketQueue(int capacity, double resolution)
+	{
+		if (resolution <= 0) {
+			throw new IllegalArgumentException("Resolution must be positive");
+		}
+		this.resolution = resolution;
+		bucketNodes = new int[NUM_BUCKETS][INITIAL_BUCKET_SIZE];
+		bucketKeys = new long[NUM_BUCKETS][INITIAL_BUCKET_SIZE];
+		bucketSize = new int[NUM_BUCKETS];
+		current = new long[capacity];
+		queued = new boolean[capacity];
+		last = 0;
+		size = 0;
+	}
+
+	/**
+	 * Get the size of one key quantum
+	 * @return the resolution of this queue
+	 */
+	public double getResolution()
+	{
+		return resolution;
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public void insertOrDecrease(int node, double key)
+	{
+		long q = Math.max(last, (long) (key / resolution));
+		if (queued[node]) {
+			if (q >= current[node]) {
+				return;
+			}
+		}
+		else {
+			queued[node] = true;
+			size++;
+		}
+		current[node] = q;
+		push(bucketOf(q), node, q);
+	}
+
+	/**
+	 * Get the smallest key, rounded down to the resolution of this queue
+	 * @return the smallest quantized key times the resolution
+	 */
+	@Override
+	public double peekKey()
+	{
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		skipStale();
+		return last * resolution;
+	}
+
+	@Override
+	public int poll()
+	{
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		skipStale();
+		int node = bucketNodes[0][--bucketSize[0]];
+		queued[node] = false;
+		size--;
+		return node;
+	}
+
+	// Make the top of bucket 0 a live entry, refilling bucket 0 as needed
+	private void skipStale()
+	{
+		while (true) {
+			if (bucketSize[0] == 0) {
+				redistribute();
+				continue;
+			}
+			int i = bucketSize[0] - 1;
+			int node = bucketNodes[0][i];
+			if (queued[node] && current[node] == bucketKeys[0][i]) {
+				return;
+			}
+			bucketSize[0] = i;
+		}
+	}
+
+	@Override
+	public void clear()
+	{
+		for (int b = 0; b < NUM_BUCKETS; b++) {
+			for (int i = 0; i < bucketSize[b]; i++) {
+				queued[bucketNodes[b][i]] = false;
+			}
+			bucketSize[b] = 0;
+		}
+		last = 0;
+		size = 0;
+	}
+
+	// Bucket for a quantized key relative to the last key removed
+	private int bucketOf(long q)
+	{
+		return q == last ? 0 : 64 - Long.numberOfLeadingZeros(q ^ last);
+	}
+
+	private void push(int b, int node, long q)
+	{
+		int n = bucketSize[b];
+		if (n == bucketNodes[b].length) {
+			bucketNodes[b] = Arrays.copyOf(bucketNodes[b], n * 2);
+			bucketKeys[b] = Arrays.copyOf(bucketKeys[b], n * 2);
+		}
+		bucketNodes[b][n] = node;
+		bucketKeys[b][n] = q;
+		bucketSize[b] = n + 1;
+	}
+
+	// Refill bucket 0 from the first non-empty bucket, dropping stale entries
+	private void redistribute()
+	{
+		int b = 1;
+		while (bucketSize[b] == 0) {
+			b++;
+		}
+		int[] nodes = bucketNodes[b];
+		long[] keys = bucketKeys[b];
+		int n = bucketSize[b];
+		long min = Long.MAX_VALUE;
+		for (int i = 0; i < n; i++) {
+			if (queued[nodes[i]] && current[nodes[i]] == keys[i] && keys[i] < min) {
+				min = keys[i];
+			}
+		}
+		bucketSize[b] = 0;
+		if (min == Long.MAX_VALUE) {
+			// Only stale entries were left in this bucket
+			return;
+		}
+		last = min;
+		for (int i = 0; i < n; i++) {
+			if (queued[nodes[i]] && current[nodes[i]] == keys[i]) {
+				push(bucketOf(keys[i]), nodes[i], keys[i]);
+			}
+		}
+	}
+}
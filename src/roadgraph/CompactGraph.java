@@ -0,0 +1,403 @@
+package roadgraph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import geography.GeographicPoint;
+import geography.SpatialIndex;
+
+/**
+ * A frozen, compressed-sparse-row (CSR) copy of a MapGraph.
+ *
+ * Every node gets a dense id 0..n-1 and the outgoing edges of node i are
+ * stored in head/duration/length at positions firstOut[i]..firstOut[i+1]-1.
+ * The searches in MapGraph run directly over these primitive arrays so that
+ * relaxing an edge is an array read rather than a walk through MapNode and
+ * MapEdge objects and their hash sets.
+ *
+ * The shape of the road along edge e, between its end nodes, is stored in
+ * shape at points firstShape[e]..firstShape[e+1]-1, so a route's full
+ * polyline is a series of array copies.  This is the only copy of the
+ * shapes: once they are packed, each MapEdge and each RoadSegment made by
+ * MapGraph.addRoadSegments reads its points from here.
+ *
+ * The incoming edges of node i are listed, as indexes into those same edge
+ * arrays, in inEdge at positions firstIn[i]..firstIn[i+1]-1, so that
+ * backward searches can run over the same data.
+ *
+ * Every node is labelled with its strongly and weakly connected components
+ * when the graph is built, so that mayReach can rule out most queries with
+ * no path in O(1) instead of searching all that the start can reach.
+ *
+ * The name and type of the road along each edge are kept as ids into
+ * tables of the distinct names and types, so the graph holds everything
+ * needed to make its MapEdges again.  MapGraph lets go of its edges once
+ * the graph is compiled, and makes them again from here only when it is
+ * changed.
+ *
+ * A CompactGraph is immutable once built, so it may be shared between
+ * threads.  MapGraph throws it away and rebuilds it whenever a vertex or
+ * edge is added.
+ */
+public class CompactGraph {
+	// Offsets into the edge arrays, one more entry than there are nodes
+	final int[] firstOut;
+	// Target node of each edge
+	final int[] head;
+	// Travel time of each edge (MapEdge.getRoadDuration), which is its
+	// cost under WeightProfile.CAR
+	final double[] duration;
+	// Length in km of each edge
+	final double[] length;
+	// Source node of each edge
+	final int[] tail;
+
+	// Offsets into shape, in points, one more entry than there are edges
+	final int[] firstShape;
+	// Latitude and longitude, interleaved, of the road between the ends of
+	// each edge, shared with the MapEdges
+	final double[] shape;
+
+	// Offsets into inEdge, one more entry than there are nodes
+	final int[] firstIn;
+	// Edge indexes grouped by target node
+	final int[] inEdge;
+
+	// Strongly connected component of each node, in the reverse
+	// topological numbering of StronglyConnectedComponents.label
+	final int[] scc;
+	// Weakly connected component of each node
+	final int[] wcc;
+
+	// Coordinates of each node
+	final double[] lat;
+	final double[] lon;
+
+	// The location of each node, as the MapGraph knows it
+	private final GeographicPoint[] locations;
+
+	// Index into roadNames and roadTypes of the name and type of each edge
+	private final int[] roadName;
+	private final int[] roadType;
+	// The distinct road names and types
+	private final String[] roadNames;
+	private final String[] roadTypes;
+
+	// k-d tree over the node coordinates, built on first use
+	private volatile SpatialIndex spatialIndex;
+
+	// Sizes of the strongly connected components, counted on first use
+	private volatile StronglyConnectedComponents components;
+
+	// Cost of each edge under each profile used so far, besides CAR's,
+	// which is duration
+	private final Map<WeightProfile,double[]> weights = new ConcurrentHashMap<WeightProfile,double[]>();
+
+	/**
+	 * Build the CSR arrays from a list of nodes.  The node at position i of
+	 * the list must have id i.
+	 * @param nodeList The nodes of the graph, ordered by id
+	 * @param numEdges The total number of edges out of all the nodes
+	 */
+	CompactGraph(List<MapNode> nodeList, int numEdges)
+	{
+		this(nodeList, numEdges, null, null);
+	}
+
+	/**
+	 * Build the CSR arrays from a list of nodes, with component labels
+	 * found earlier.  The node at position i of the list must have id i.
+	 * @param nodeList The nodes of the graph, ordered by id
+	 * @param numEdges The total number of edges out of all the nodes
+	 * @param scc The strongly connected component of each node, as from
+	 *   StronglyConnectedComponents.label, or null to find them
+	 * @param wcc The weakly connected component of each node, as from
+	 *   labelWeak, or null to find them
+	 */
+	CompactGraph(List<MapNode> nodeList, int numEdges, int[] scc, int[] wcc)
+	{
+		int n = nodeList.size();
+		firstOut = new int[n + 1];
+		head = new int[numEdges];
+		duration = new double[numEdges];
+		length = new double[numEdges];
+		tail = new int[numEdges];
+		firstShape = new int[numEdges + 1];
+		firstIn = new int[n + 1];
+		inEdge = new int[numEdges];
+		lat = new double[n];
+		lon = new double[n];
+		locations = new GeographicPoint[n];
+		roadName = new int[numEdges];
+		roadType = new int[numEdges];
+		MapEdge[] edges = new MapEdge[numEdges];
+		Map<String,Integer> names = new HashMap<String,Integer>();
+		Map<String,Integer> types = new HashMap<String,Integer>();
+
+		int e = 0;
+		int points = 0;
+		for (int i = 0; i < n; i++) {
+			MapNode node = nodeList.get(i);
+			locations[i] = node.getLocation();
+			lat[i] = node.getLocation().getX();
+			lon[i] = node.getLocation().getY();
+			firstOut[i] = e;
+			for (MapEdge edge : node.getEdges()) {
+				head[e] = edge.getEndNode().getId();
+				duration[e] = edge.getRoadDuration();
+				length[e] = edge.getLength();
+				tail[e] = i;
+				edges[e] = edge;
+				roadName[e] = intern(names, edge.getRoadName());
+				roadType[e] = intern(types, edge.getRoadType());
+				firstShape[e] = points;
+				points += edge.getNumPoints();
+				e++;
+			}
+		}
+		firstOut[n] = e;
+		firstShape[numEdges] = points;
+		roadNames = table(names);
+		roadTypes = table(types);
+
+		// Pack the shapes of all the edges into one array, which the edges
+		// then read from in place of their own
+		shape = new double[2 * points];
+		for (int f = 0; f < numEdges; f++) {
+			edges[f].copyGeometry(shape, 2 * firstShape[f]);
+			edges[f].shareGeometry(shape, firstShape[f]);
+		}
+
+		// Counting sort of the edges by target for the reverse adjacency
+		for (int f = 0; f < numEdges; f++) {
+			firstIn[head[f] + 1]++;
+		}
+		for (int i = 0; i < n; i++) {
+			firstIn[i + 1] += firstIn[i];
+		}
+		int[] next = Arrays.copyOf(firstIn, n);
+		for (int f = 0; f < numEdges; f++) {
+			inEdge[next[head[f]]++] = f;
+		}
+
+		// Label the components now, so that unreachable queries are
+		// answered without a search
+		this.scc = scc != null ? scc : StronglyConnectedComponents.label(firstOut, head);
+		this.wcc = wcc != null ? wcc : labelWeak(firstOut, head);
+	}
+
+	// The id of a string in a table being built, adding it if it is new
+	private static int intern(Map<String,Integer> ids, String s)
+	{
+		Integer id = ids.get(s);
+		if (id == null) {
+			id = ids.size();
+			ids.put(s, id);
+		}
+		return id;
+	}
+
+	// The strings of a table being built, indexed by id
+	private static String[] table(Map<String,Integer> ids)
+	{
+		String[] strings = new String[ids.size()];
+		for (Map.Entry<String,Integer> entry : ids.entrySet()) {
+			strings[entry.getValue()] = entry.getKey();
+		}
+		return strings;
+	}
+
+	/**
+	 * Find the weakly connected component of every node of a graph given
+	 * in compressed-sparse-row form: the nodes joined by edges in either
+	 * direction
+	 * @param firstOut Offsets into head, one more than there are nodes
+	 * @param head The target node of each edge
+	 * @return the component of each node, numbered from 0 in order of
+	 *   their first nodes
+	 */
+	public static int[] labelWeak(int[] firstOut, int[] head)
+	{
+		int n = firstOut.length - 1;
+		// Union-find forest with path halving
+		int[] parent = new int[n];
+		for (int i = 0; i < n; i++) {
+			parent[i] = i;
+		}
+		for (int i = 0; i < n; i++) {
+			for (int e = firstOut[i]; e < firstOut[i + 1]; e++) {
+				int a = find(parent, i);
+				int b = find(parent, head[e]);
+				if (a != b) {
+					parent[Math.max(a, b)] = Math.min(a, b);
+				}
+			}
+		}
+		int[] component = new int[n];
+		int count = 0;
+		for (int i = 0; i < n; i++) {
+			int root = find(parent, i);
+			component[i] = root == i ? count++ : component[root];
+		}
+		return component;
+	}
+
+	private static int find(int[] parent, int i)
+	{
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	/**
+	 * Whether there may be a path between two nodes.  There is none if
+	 * they are in different weakly connected components, or if the strongly
+	 * connected component of the start comes before that of the goal in
+	 * reverse topological order.  Otherwise there may or may not be one,
+	 * though there always is within one strongly connected component.
+	 * @param start The start node
+	 * @param goal The goal node
+	 * @return false if there is certainly no path
+	 */
+	boolean mayReach(int start, int goal)
+	{
+		return wcc[start] == wcc[goal] && scc[start] >= scc[goal];
+	}
+
+	/**
+	 * Get the number of nodes in this graph
+	 * @return the number of nodes
+	 */
+	public int getNumNodes()
+	{
+		return locations.length;
+	}
+
+	/**
+	 * Get the number of edges in this graph
+	 * @return the number of edges
+	 */
+	public int getNumEdges()
+	{
+		return head.length;
+	}
+
+	/**
+	 * Get the location of a node
+	 * @param id The dense id of the node
+	 * @return the location of the node
+	 */
+	public GeographicPoint getLocation(int id)
+	{
+		return locations[id];
+	}
+
+	/**
+	 * Get the name of the road along an edge
+	 * @param e The index of the edge
+	 * @return the road name
+	 */
+	String getRoadName(int e)
+	{
+		return roadNames[roadName[e]];
+	}
+
+	/**
+	 * Get the type of the road along an edge
+	 * @param e The index of the edge
+	 * @return the road type
+	 */
+	String getRoadType(int e)
+	{
+		return roadTypes[roadType[e]];
+	}
+
+	/**
+	 * Get a spatial index over the nodes of this graph, whose item numbers
+	 * are the node ids
+	 * @return the spatial index
+	 */
+	public SpatialIndex getSpatialIndex()
+	{
+		SpatialIndex index = spatialIndex;
+		if (index == null) {
+			synchronized (this) {
+				index = spatialIndex;
+				if (index == null) {
+					index = new SpatialIndex(lat, lon);
+					spatialIndex = index;
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Get the strongly connected components of the graph
+	 * @return the components
+	 */
+	public StronglyConnectedComponents getComponents()
+	{
+		StronglyConnectedComponents sccs = components;
+		if (sccs == null) {
+			synchronized (this) {
+				sccs = components;
+				if (sccs == null) {
+					sccs = new StronglyConnectedComponents(scc);
+					components = sccs;
+				}
+			}
+		}
+		return sccs;
+	}
+
+	/**
+	 * Get the cost of every edge under a weight profile, computing it the
+	 * first time the profile is asked for
+	 * @param profile The weight profile
+	 * @return the cost of each edge, indexed like head
+	 */
+	double[] getWeights(WeightProfile profile)
+	{
+		if (profile == WeightProfile.CAR) {
+			return duration;
+		}
+		return weights.computeIfAbsent(profile, p -> {
+			double[] cost = new double[head.length];
+			for (int e = 0; e < cost.length; e++) {
+				cost[e] = p.getCost(getRoadType(e), length[e]);
+			}
+			return cost;
+		});
+	}
+
+	/**
+	 * Straight line distance in km between two nodes
+	 * @param u The dense id of the first node
+	 * @param v The dense id of the second node
+	 * @return the distance between them in km
+	 */
+	double distance(int u, int v)
+	{
+		return GeographicPoint.haversine(lat[u], lon[u], lat[v], lon[v]);
+	}
+
+	/**
+	 * Approximate number of bytes used by the arrays of this graph, not
+	 * counting the locations and road names and types they refer to.
+	 * @return the approximate size in bytes
+	 */
+	public long getArrayBytes()
+	{
+		long n = locations.length;
+		long m = head.length;
+		return 4 * (n + 1) + 4 * m + 8 * m + 8 * m + 4 * m + 4 * (n + 1) + 4 * m
+				+ 16 * n + 4 * n + 8 * m + 4 * (m + 1) + 8L * shape.length
+				+ 8 * m * weights.size() + 8 * n + 4 * (roadNames.length + roadTypes.length);
+	}
+}
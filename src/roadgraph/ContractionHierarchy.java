@@ -0,0 +1,748 @@
+package roadgraph;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import geography.GeographicPoint;
+import util.GraphLoader;
+
+/**
+ * A Contraction Hierarchy over the travel times of a MapGraph.
+ *
+ * Preprocessing contracts the nodes one at a time in order of their edge
+ * difference (shortcuts added minus edges removed).  Contracting a node
+ * removes it from the remaining graph and adds a shortcut u -> x carrying
+ * the summed getRoadDuration weight for every pair of neighbors u -> v -> x
+ * that has no shorter witness path avoiding v.
+ *
+ * A query is a bidirectional Dijkstra in which both searches only follow
+ * edges towards nodes contracted later, so each settles a few hundred nodes
+ * even on the largest maps.  Shortcuts on the resulting path are unpacked
+ * back into original edges, so route() returns the same kind of
+ * List of GeographicPoints as MapGraph.dijkstra.
+ *
+ * The hierarchy can be saved to a file and loaded again for the same
+ * graph, so it only has to be built once per .map file.  The file records
+ * the length and modification time of the .map file and a checksum of the
+ * edges and their travel times, so that it is rebuilt when the map or the
+ * speeds of WeightProfile.CAR change.
+ */
+public class ContractionHierarchy {
+	// "CH02"
+	private static final int MAGIC = 0x43483032;
+
+	// Witness searches give up after settling this many nodes
+	private static final int WITNESS_SETTLE_LIMIT = 500;
+
+	private final MapGraph map;
+	private final CompactGraph graph;
+
+	// Position of each node in the contraction order
+	private final int[] rank;
+
+	// Upward forward graph: edges v -> x with rank[x] > rank[v], stored at v
+	private final int[] upFirst;
+	private final int[] upHead;
+	private final double[] upWeight;
+	private final int[] upMiddle;//Contracted node a shortcut skips, or -1
+
+	// Upward backward graph: edges u -> v with rank[u] > rank[v], stored at v
+	private final int[] downFirst;
+	private final int[] downTail;
+	private final double[] downWeight;
+	private final int[] downMiddle;
+
+	// Forward and backward search state for each thread
+	private final ThreadLocal<SearchContext[]> contexts = new ThreadLocal<SearchContext[]>();
+
+	private ContractionHierarchy(MapGraph map, CompactGraph graph, int[] rank,
+			int[] upFirst, int[] upHead, double[] upWeight, int[] upMiddle,
+			int[] downFirst, int[] downTail, double[] downWeight, int[] downMiddle)
+	{
+		this.map = map;
+		this.graph = graph;
+		this.rank = rank;
+		this.upFirst = upFirst;
+		this.upHead = upHead;
+		this.upWeight = upWeight;
+		this.upMiddle = upMiddle;
+		this.downFirst = downFirst;
+		this.downTail = downTail;
+		this.downWeight = downWeight;
+		this.downMiddle = downMiddle;
+	}
+
+	/**
+	 * Get the number of edges in the hierarchy, original edges plus shortcuts
+	 * @return the number of edges
+	 */
+	public int getNumEdges()
+	{
+		return upHead.length + downTail.length;
+	}
+
+	/**
+	 * Get the number of shortcut edges added by contraction
+	 * @return the number of shortcuts
+	 */
+	public int getNumShortcuts()
+	{
+		int count = 0;
+		for (int m : upMiddle) {
+			if (m >= 0) count++;
+		}
+		for (int m : downMiddle) {
+			if (m >= 0) count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Whether this hierarchy was built for the current form of a graph
+	 * @param map The graph to check
+	 * @return true if route() may be used for this graph
+	 */
+	public boolean isFor(MapGraph map)
+	{
+		return this.map == map && map.compile() == graph;
+	}
+
+	/** Find the fastest path from start to goal using the hierarchy
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @return The list of intersections that form the shortest path from
+	 *   start to goal (including both start and goal), or null if none exists.
+	 */
+	public List<GeographicPoint> route(GeographicPoint start, GeographicPoint goal)
+	{
+		Consumer<GeographicPoint> temp = (x) -> {};
+		return route(start, goal, temp);
+	}
+
+	/** Find the fastest path from start to goal using the hierarchy
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param nodeSearched A hook for visualization, called for every node
+	 *   settled by either search
+	 * @return The list of intersections that form the shortest path from
+	 *   start to goal (including both start and goal), or null if none exists.
+	 */
+	public List<GeographicPoint> route(GeographicPoint start, GeographicPoint goal,
+			Consumer<GeographicPoint> nodeSearched)
+	{
+		if (start == null || goal == null) {
+			System.out.println("Start or goal node is null!  No path exists.");
+			return null;
+		}
+		int s = map.getId(start);
+		int t = map.getId(goal);
+		if (s < 0 || t < 0) {
+			System.out.println("No path exists");
+			return null;
+		}
+
+		SearchContext[] pair = getSearchContexts();
+		SearchContext fwd = pair[0];
+		SearchContext bwd = pair[1];
+		NodeQueue fwdQueue = fwd.getQueue();
+		NodeQueue bwdQueue = bwd.getQueue();
+
+		// The parent of a node is the index of the edge it was reached by
+		fwd.setDistance(s, 0.0, -1);
+		fwdQueue.insertOrDecrease(s, 0.0);
+		bwd.setDistance(t, 0.0, -1);
+		bwdQueue.insertOrDecrease(t, 0.0);
+
+		double best = Double.POSITIVE_INFINITY;
+		int meet = -1;
+		boolean forwardDone = false;
+		boolean backwardDone = false;
+		boolean forward = true;
+		while (!(forwardDone && backwardDone)) {
+			forwardDone = forwardDone || fwdQueue.isEmpty() || fwdQueue.peekKey() >= best;
+			backwardDone = backwardDone || bwdQueue.isEmpty() || bwdQueue.peekKey() >= best;
+			if (forward ? forwardDone : backwardDone) {
+				forward = !forward;
+				continue;
+			}
+			SearchContext side = forward ? fwd : bwd;
+			SearchContext other = forward ? bwd : fwd;
+			int v = side.getQueue().poll();
+			side.settle(v);
+			nodeSearched.accept(graph.getLocation(v));
+
+			double dv = side.getDistance(v);
+			if (other.isReached(v) && dv + other.getDistance(v) < best) {
+				best = dv + other.getDistance(v);
+				meet = v;
+			}
+			if (forward) {
+				for (int e = upFirst[v]; e < upFirst[v + 1]; e++) {
+					relax(fwd, upHead[e], dv + upWeight[e], e);
+				}
+			}
+			else {
+				for (int e = downFirst[v]; e < downFirst[v + 1]; e++) {
+					relax(bwd, downTail[e], dv + downWeight[e], e);
+				}
+			}
+			forward = !forward;
+		}
+		System.out.println("CH visited:" + (fwd.getSettledCount() + bwd.getSettledCount()));
+
+		if (meet < 0) {
+			System.out.println("No path exists");
+			return null;
+		}
+		return constructPath(fwd, bwd, s, t, meet);
+	}
+
+	// Lower the distance of a node if a shorter path to it was found
+	private static void relax(SearchContext context, int v, double dist, int edge)
+	{
+		if (!context.isSettled(v) && dist < context.getDistance(v)) {
+			context.setDistance(v, dist, edge);
+			context.getQueue().insertOrDecrease(v, dist);
+		}
+	}
+
+	// Get this thread's forward and backward search state, reset
+	private SearchContext[] getSearchContexts()
+	{
+		SearchContext[] pair = contexts.get();
+		if (pair == null) {
+			pair = new SearchContext[] { new SearchContext(graph), new SearchContext(graph) };
+			contexts.set(pair);
+		}
+		pair[0].reset();
+		pair[1].reset();
+		return pair;
+	}
+
+	// Rebuild the path s .. meet .. t, unpacking every shortcut on the way
+	private List<GeographicPoint> constructPath(SearchContext fwd, SearchContext bwd,
+			int s, int t, int meet)
+	{
+		LinkedList<Integer> nodesOnPath = new LinkedList<Integer>();
+		nodesOnPath.add(meet);
+		int v = meet;
+		while (v != s) {
+			int e = fwd.getParent(v);
+			int u = ownerOf(upFirst, e);
+			LinkedList<Integer> inner = new LinkedList<Integer>();
+			unpack(u, v, upMiddle[e], inner);
+			nodesOnPath.addAll(0, inner);
+			nodesOnPath.addFirst(u);
+			v = u;
+		}
+		v = meet;
+		while (v != t) {
+			int e = bwd.getParent(v);
+			int x = ownerOf(downFirst, e);
+			LinkedList<Integer> inner = new LinkedList<Integer>();
+			unpack(v, x, downMiddle[e], inner);
+			nodesOnPath.addAll(inner);
+			nodesOnPath.addLast(x);
+			v = x;
+		}
+
+		LinkedList<GeographicPoint> path = new LinkedList<GeographicPoint>();
+		for (int id : nodesOnPath) {
+			path.add(graph.getLocation(id));
+		}
+		return path;
+	}
+
+	// The node whose edge list contains edge e
+	private static int ownerOf(int[] first, int e)
+	{
+		int lo = 0;
+		int hi = first.length - 2;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (first[mid] <= e) {
+				lo = mid;
+			}
+			else {
+				hi = mid - 1;
+			}
+		}
+		return lo;
+	}
+
+	// Append the nodes strictly between u and x on the edge u -> x that
+	// skips middle (or nothing, for an original edge)
+	private void unpack(int u, int x, int middle, List<Integer> out)
+	{
+		if (middle < 0) {
+			return;
+		}
+		// u -> middle is stored at middle in the downward lists,
+		// middle -> x at middle in the upward lists
+		int first = findEdge(downFirst, downTail, downWeight, middle, u);
+		int second = findEdge(upFirst, upHead, upWeight, middle, x);
+		unpack(u, middle, downMiddle[first], out);
+		out.add(middle);
+		unpack(middle, x, upMiddle[second], out);
+	}
+
+	// Cheapest edge stored at v whose other end is w
+	private static int findEdge(int[] first, int[] other, double[] weight, int v, int w)
+	{
+		int found = -1;
+		for (int e = first[v]; e < first[v + 1]; e++) {
+			if (other[e] == w && (found < 0 || weight[e] < weight[found])) {
+				found = e;
+			}
+		}
+		if (found < 0) {
+			throw new IllegalStateException("Contraction hierarchy is missing an edge");
+		}
+		return found;
+	}
+
+	/**
+	 * Contract a graph into a hierarchy.
+	 * @param map The graph to preprocess
+	 * @return the hierarchy for the current form of the graph
+	 */
+	public static ContractionHierarchy build(MapGraph map)
+	{
+		return new Builder(map, map.compile()).build();
+	}
+
+	/**
+	 * Save this hierarchy so that load() can read it back.
+	 * @param filename The file to write
+	 * @param mapFile The .map file the graph was loaded from
+	 * @throws IOException if the file cannot be written
+	 */
+	public void save(String filename, String mapFile) throws IOException
+	{
+		File source = new File(mapFile);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(filename)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeLong(source.length());
+			out.writeLong(source.lastModified());
+			out.writeLong(checksum(graph));
+			int n = graph.getNumNodes();
+			out.writeInt(n);
+			out.writeInt(graph.getNumEdges());
+			for (int i = 0; i < n; i++) {
+				out.writeDouble(graph.lat[i]);
+				out.writeDouble(graph.lon[i]);
+			}
+			for (int i = 0; i < n; i++) {
+				out.writeInt(rank[i]);
+			}
+			writeEdges(out, upFirst, upHead, upWeight, upMiddle);
+			writeEdges(out, downFirst, downTail, downWeight, downMiddle);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	private static void writeEdges(DataOutputStream out, int[] first, int[] other,
+			double[] weight, int[] middle) throws IOException
+	{
+		out.writeInt(other.length);
+		for (int f : first) {
+			out.writeInt(f);
+		}
+		for (int e = 0; e < other.length; e++) {
+			out.writeInt(other[e]);
+			out.writeDouble(weight[e]);
+			out.writeInt(middle[e]);
+		}
+	}
+
+	/**
+	 * Read a hierarchy written by save().
+	 * @param filename The file to read
+	 * @param mapFile The .map file the graph was loaded from
+	 * @param map The graph the hierarchy was built for
+	 * @return the hierarchy, or null if the file does not exist or was
+	 *   built for a different graph or version of the .map file
+	 */
+	public static ContractionHierarchy load(String filename, String mapFile, MapGraph map)
+	{
+		if (!new File(filename).exists()) {
+			return null;
+		}
+		File source = new File(mapFile);
+		CompactGraph graph = map.compile();
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)));
+			if (in.readInt() != MAGIC || in.readLong() != source.length()
+					|| in.readLong() != source.lastModified() || in.readLong() != checksum(graph)) {
+				return null;
+			}
+			int n = in.readInt();
+			if (n != graph.getNumNodes() || in.readInt() != graph.getNumEdges()) {
+				return null;
+			}
+			for (int i = 0; i < n; i++) {
+				if (in.readDouble() != graph.lat[i] || in.readDouble() != graph.lon[i]) {
+					return null;
+				}
+			}
+			int[] rank = new int[n];
+			for (int i = 0; i < n; i++) {
+				rank[i] = in.readInt();
+			}
+			int upCount = in.readInt();
+			int[] upFirst = readInts(in, n + 1);
+			int[] upHead = new int[upCount];
+			double[] upWeight = new double[upCount];
+			int[] upMiddle = new int[upCount];
+			for (int e = 0; e < upCount; e++) {
+				upHead[e] = in.readInt();
+				upWeight[e] = in.readDouble();
+				upMiddle[e] = in.readInt();
+			}
+			int downCount = in.readInt();
+			int[] downFirst = readInts(in, n + 1);
+			int[] downTail = new int[downCount];
+			double[] downWeight = new double[downCount];
+			int[] downMiddle = new int[downCount];
+			for (int e = 0; e < downCount; e++) {
+				downTail[e] = in.readInt();
+				downWeight[e] = in.readDouble();
+				downMiddle[e] = in.readInt();
+			}
+			return new ContractionHierarchy(map, graph, rank, upFirst, upHead, upWeight, upMiddle,
+					downFirst, downTail, downWeight, downMiddle);
+		}
+		catch (IOException e) {
+			System.err.println("Problem loading contraction hierarchy: " + filename);
+			e.printStackTrace();
+			return null;
+		}
+		finally {
+			if (in != null) {
+				try {
+					in.close();
+				}
+				catch (IOException e) {
+					// Nothing more to do
+				}
+			}
+		}
+	}
+
+	// A checksum of the edges and their travel times, which change with the
+	// .map file and with the speeds of WeightProfile.CAR
+	private static long checksum(CompactGraph g)
+	{
+		long sum = 17;
+		for (int e = 0; e < g.getNumEdges(); e++) {
+			sum = 31 * sum + g.head[e];
+			sum = 31 * sum + Double.doubleToLongBits(g.duration[e]);
+		}
+		return sum;
+	}
+
+	private static int[] readInts(DataInputStream in, int count) throws IOException
+	{
+		int[] values = new int[count];
+		for (int i = 0; i < count; i++) {
+			values[i] = in.readInt();
+		}
+		return values;
+	}
+
+	/**
+	 * Load the hierarchy for a map file if one has been saved next to it,
+	 * otherwise build it and save it there.
+	 * @param mapFile The .map file the graph was loaded from
+	 * @param map The loaded graph
+	 * @return the hierarchy
+	 */
+	public static ContractionHierarchy loadOrBuild(String mapFile, MapGraph map)
+	{
+		String chFile = mapFile + ".ch";
+		ContractionHierarchy ch = load(chFile, mapFile, map);
+		if (ch == null) {
+			ch = build(map);
+			try {
+				ch.save(chFile, mapFile);
+			}
+			catch (IOException e) {
+				System.err.println("Problem saving contraction hierarchy: " + chFile);
+				e.printStackTrace();
+			}
+		}
+		return ch;
+	}
+
+	// A growable list of arcs to or from one node during contraction
+	private static class Arcs {
+		int[] other = new int[4];
+		double[] weight = new double[4];
+		int[] middle = new int[4];
+		int size = 0;
+
+		// Add an arc, keeping only the cheapest arc to each other node
+		void add(int w, double wt, int mid)
+		{
+			for (int i = 0; i < size; i++) {
+				if (other[i] == w) {
+					if (wt < weight[i]) {
+						weight[i] = wt;
+						middle[i] = mid;
+					}
+					return;
+				}
+			}
+			if (size == other.length) {
+				other = Arrays.copyOf(other, size * 2);
+				weight = Arrays.copyOf(weight, size * 2);
+				middle = Arrays.copyOf(middle, size * 2);
+			}
+			other[size] = w;
+			weight[size] = wt;
+			middle[size] = mid;
+			size++;
+		}
+
+		void remove(int w)
+		{
+			for (int i = 0; i < size; i++) {
+				if (other[i] == w) {
+					size--;
+					other[i] = other[size];
+					weight[i] = weight[size];
+					middle[i] = middle[size];
+					return;
+				}
+			}
+		}
+	}
+
+	// Performs the contraction and collects the upward graphs
+	private static class Builder {
+		private final MapGraph map;
+		private final CompactGraph graph;
+		private final int n;
+		private final Arcs[] out;
+		private final Arcs[] in;
+		private final boolean[] contracted;
+		private final int[] contractedNeighbors;
+		private final SearchContext witness;
+
+		// Upward edges collected as nodes are contracted
+		private final Arcs[] up;
+		private final Arcs[] down;
+
+		Builder(MapGraph map, CompactGraph graph)
+		{
+			this.map = map;
+			this.graph = graph;
+			n = graph.getNumNodes();
+			out = new Arcs[n];
+			in = new Arcs[n];
+			up = new Arcs[n];
+			down = new Arcs[n];
+			for (int v = 0; v < n; v++) {
+				out[v] = new Arcs();
+				in[v] = new Arcs();
+			}
+			for (int v = 0; v < n; v++) {
+				for (int e = graph.firstOut[v]; e < graph.firstOut[v + 1]; e++) {
+					int w = graph.head[e];
+					if (w != v) {
+						out[v].add(w, graph.duration[e], -1);
+						in[w].add(v, graph.duration[e], -1);
+					}
+				}
+			}
+			contracted = new boolean[n];
+			contractedNeighbors = new int[n];
+			witness = new SearchContext(graph);
+		}
+
+		ContractionHierarchy build()
+		{
+			IndexedMinHeap order = new IndexedMinHeap(n);
+			for (int v = 0; v < n; v++) {
+				order.insertOrDecrease(v, priority(v));
+			}
+			int[] rank = new int[n];
+			int next = 0;
+			while (!order.isEmpty()) {
+				int v = order.poll();
+				// Lazy update: the priority may have grown since it was queued
+				double p = priority(v);
+				if (!order.isEmpty() && p > order.peekKey()) {
+					order.insertOrDecrease(v, p);
+					continue;
+				}
+				rank[v] = next++;
+				contract(v);
+			}
+			return collect(rank);
+		}
+
+		// Edge difference plus the number of already contracted neighbors
+		private double priority(int v)
+		{
+			int shortcuts = shortcuts(v, false);
+			return shortcuts - in[v].size - out[v].size + contractedNeighbors[v];
+		}
+
+		// Remove v from the remaining graph
+		private void contract(int v)
+		{
+			shortcuts(v, true);
+			up[v] = out[v];
+			down[v] = in[v];
+			for (int i = 0; i < out[v].size; i++) {
+				int x = out[v].other[i];
+				in[x].remove(v);
+				contractedNeighbors[x]++;
+			}
+			for (int i = 0; i < in[v].size; i++) {
+				int u = in[v].other[i];
+				out[u].remove(v);
+				contractedNeighbors[u]++;
+			}
+			contracted[v] = true;
+		}
+
+		// Count (and if add is true, add) the shortcuts needed to contract v
+		private int shortcuts(int v, boolean add)
+		{
+			int count = 0;
+			Arcs ins = in[v];
+			Arcs outs = out[v];
+			for (int i = 0; i < ins.size; i++) {
+				int u = ins.other[i];
+				double maxDist = 0;
+				for (int j = 0; j < outs.size; j++) {
+					maxDist = Math.max(maxDist, ins.weight[i] + outs.weight[j]);
+				}
+				witnessSearch(u, v, maxDist);
+				for (int j = 0; j < outs.size; j++) {
+					int x = outs.other[j];
+					if (x == u) {
+						continue;
+					}
+					double via = ins.weight[i] + outs.weight[j];
+					if (witness.getDistance(x) > via) {
+						count++;
+						if (add) {
+							out[u].add(x, via, v);
+							in[x].add(u, via, v);
+						}
+					}
+				}
+			}
+			return count;
+		}
+
+		// Dijkstra from u over the remaining graph without v, up to maxDist
+		private void witnessSearch(int u, int v, double maxDist)
+		{
+			witness.reset();
+			NodeQueue queue = witness.getQueue();
+			witness.setDistance(u, 0.0, -1);
+			queue.insertOrDecrease(u, 0.0);
+			while (!queue.isEmpty() && witness.getSettledCount() < WITNESS_SETTLE_LIMIT) {
+				int w = queue.poll();
+				witness.settle(w);
+				double dw = witness.getDistance(w);
+				if (dw > maxDist) {
+					break;
+				}
+				Arcs arcs = out[w];
+				for (int i = 0; i < arcs.size; i++) {
+					int x = arcs.other[i];
+					if (x == v || witness.isSettled(x)) {
+						continue;
+					}
+					double dx = dw + arcs.weight[i];
+					if (dx < witness.getDistance(x)) {
+						witness.setDistance(x, dx, w);
+						queue.insertOrDecrease(x, dx);
+					}
+				}
+			}
+		}
+
+		// Pack the upward edges of every node into CSR arrays
+		private ContractionHierarchy collect(int[] rank)
+		{
+			int upCount = 0;
+			int downCount = 0;
+			for (int v = 0; v < n; v++) {
+				upCount += up[v].size;
+				downCount += down[v].size;
+			}
+			int[] upFirst = new int[n + 1];
+			int[] upHead = new int[upCount];
+			double[] upWeight = new double[upCount];
+			int[] upMiddle = new int[upCount];
+			int[] downFirst = new int[n + 1];
+			int[] downTail = new int[downCount];
+			double[] downWeight = new double[downCount];
+			int[] downMiddle = new int[downCount];
+			int ue = 0;
+			int de = 0;
+			for (int v = 0; v < n; v++) {
+				upFirst[v] = ue;
+				for (int i = 0; i < up[v].size; i++, ue++) {
+					upHead[ue] = up[v].other[i];
+					upWeight[ue] = up[v].weight[i];
+					upMiddle[ue] = up[v].middle[i];
+				}
+				downFirst[v] = de;
+				for (int i = 0; i < down[v].size; i++, de++) {
+					downTail[de] = down[v].other[i];
+					downWeight[de] = down[v].weight[i];
+					downMiddle[de] = down[v].middle[i];
+				}
+			}
+			upFirst[n] = ue;
+			downFirst[n] = de;
+			return new ContractionHierarchy(map, graph, rank, upFirst, upHead, upWeight, upMiddle,
+					downFirst, downTail, downWeight, downMiddle);
+		}
+	}
+
+	public static void main(String[] args)
+	{
+		MapGraph theMap = new MapGraph();
+		System.out.print("DONE. \nLoading the map...");
+		GraphLoader.loadRoadMap("data/maps/utc.map", theMap);
+		System.out.println("DONE.");
+
+		long startTime = System.currentTimeMillis();
+		ContractionHierarchy ch = ContractionHierarchy.build(theMap);
+		System.out.println("Contracted " + theMap.getNumVertices() + " nodes in "
+				+ (System.currentTimeMillis() - startTime) + "ms, adding "
+				+ ch.getNumShortcuts() + " shortcuts");
+
+		GeographicPoint start = new GeographicPoint(32.8648772, -117.2254046);
+		GeographicPoint end = new GeographicPoint(32.8660691, -117.217393);
+
+		List<GeographicPoint> route = theMap.dijkstra(start,end);
+		List<GeographicPoint> route2 = ch.route(start,end);
+		System.out.println("Same route as Dijkstra: " + route.equals(route2));
+	}
+}
@@ -0,0 +1,181 @@
+package roadgraph;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import util.GraphLoader;
+import geography.*;
+
+/**
+ * Checks that ContractionHierarchy.route finds paths as fast as
+ * MapGraph.dijkstra on the bundled maps, and that a saved hierarchy is not
+ * reused once its .map file has changed.
+ */
+public class ContractionHierarchyGrader implements Runnable {
+    public String feedback;
+
+    public int correct;
+
+    private static final int TESTS = 6;
+
+    // Random start and goal pairs tried on each map
+    private static final int PAIRS = 100;
+    private static final long SEED = 42;
+
+    /** Format readable feedback */
+    public static String printOutput(double score, String feedback) {
+        return "Score: " + score + "\nFeedback: " + feedback;
+    }
+
+    /** Format test number and description */
+    public static String appendFeedback(int num, String test) {
+        return "\n** Test #" + num + ": " + test + "...";
+    }
+
+    public static void main(String[] args) {
+        ContractionHierarchyGrader grader = new ContractionHierarchyGrader();
+
+        // Infinite loop detection
+        Thread thread = new Thread(grader);
+        thread.start();
+        long endTime = System.currentTimeMillis() + 120000;
+        boolean infinite = false;
+        while(thread.isAlive()) {
+            // Stop thread after 2 minutes
+            if (System.currentTimeMillis() > endTime) {
+                thread.stop();
+                infinite = true;
+                break;
+            }
+        }
+        if (infinite) {
+            System.out.println(printOutput((double)grader.correct / TESTS, grader.feedback + "\nThe grader ran out of time."));
+        }
+    }
+
+    /** Build a hierarchy for a map and compare it with Dijkstra.
+     * @param i The test number
+     * @param file The map file, in data/maps
+     */
+    public void runTest(int i, String file) {
+        MapGraph graph = new MapGraph();
+        GraphLoader.loadRoadMap("data/maps/" + file, graph);
+
+        feedback += "\n\nMAP: " + file;
+        feedback += appendFeedback(i, "Comparing " + PAIRS + " routes with Dijkstra's algorithm");
+        judge(graph, ContractionHierarchy.build(graph));
+    }
+
+    /** Check that a hierarchy goes on matching Dijkstra after its map changes
+     * @param i The test number
+     * @param file The map file, in data/maps, to copy and change
+     */
+    public void runChangedMapTest(int i, String file) throws IOException {
+        File copy = File.createTempFile("changed", ".map");
+        File chFile = new File(copy.getPath() + ".ch");
+        try {
+            feedback += "\n\nMAP: " + file + ", with its residential roads made motorways";
+            feedback += appendFeedback(i, "Reloading a hierarchy saved before the change");
+
+            Files.copy(new File("data/maps/" + file).toPath(), copy.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            MapGraph before = new MapGraph();
+            GraphLoader.loadRoadMap(copy.getPath(), before);
+            ContractionHierarchy.loadOrBuild(copy.getPath(), before);
+
+            String text = new String(Files.readAllBytes(copy.toPath()), StandardCharsets.UTF_8);
+            Files.write(copy.toPath(), text.replace(" residential", " motorway").getBytes(StandardCharsets.UTF_8));
+            copy.setLastModified(copy.lastModified() + 1000);
+            MapGraph after = new MapGraph();
+            GraphLoader.loadRoadMap(copy.getPath(), after);
+            judge(after, ContractionHierarchy.loadOrBuild(copy.getPath(), after));
+        }
+        finally {
+            copy.delete();
+            chFile.delete();
+        }
+    }
+
+    /** Compare the travel times of the hierarchy's routes with Dijkstra's.
+     * @param graph The graph
+     * @param ch The hierarchy for it
+     */
+    public void judge(MapGraph graph, ContractionHierarchy ch) {
+        List<GeographicPoint> vertices = new ArrayList<GeographicPoint>(graph.getVertices());
+        vertices.sort((a, b) -> a.getX() != b.getX() ? Double.compare(a.getX(), b.getX())
+                : Double.compare(a.getY(), b.getY()));
+        Random random = new Random(SEED);
+        int wrong = 0;
+        String example = "";
+
+        // Both searches report what they visit; only the answers matter here
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (int k = 0; k < PAIRS; k++) {
+                GeographicPoint start = vertices.get(random.nextInt(vertices.size()));
+                GeographicPoint end = vertices.get(random.nextInt(vertices.size()));
+                List<GeographicPoint> expected = graph.dijkstra(start, end);
+                List<GeographicPoint> path = ch.route(start, end);
+                double expectedTime = expected == null ? -1 : graph.getTravelTime(expected, 0);
+                double time = path == null ? -1 : graph.getTravelTime(path, 0);
+                if (Math.abs(time - expectedTime) > 1e-9 * Math.max(1, expectedTime)) {
+                    if (wrong == 0) {
+                        example = " From " + start + " to " + end + " took " + time * 60
+                                + " min; expected " + expectedTime * 60 + " min.";
+                    }
+                    wrong++;
+                }
+            }
+        }
+        finally {
+            System.setOut(out);
+        }
+
+        if (wrong == 0) {
+            feedback += "PASSED.";
+            correct++;
+        } else {
+            feedback += "FAILED. " + wrong + " of " + PAIRS + " routes were not the fastest." + example;
+        }
+    }
+
+    /** Run the grader */
+    public void run() {
+        feedback = "";
+
+        correct = 0;
+
+        try {
+            runTest(1, "ucsd.map");
+
+            runTest(2, "utc.map");
+
+            runTest(3, "san_diego.map");
+
+            runTest(4, "hollywood_large.map");
+
+            runTest(5, "new_york.map");
+
+            runChangedMapTest(6, "san_diego.map");
+
+            if (correct == TESTS)
+                feedback = "All tests passed. Great job!" + feedback;
+            else
+                feedback = "Some tests failed. Check your code for errors, then try again:" + feedback;
+
+        } catch (Exception e) {
+            feedback += "\nError during runtime: " + e;
+            e.printStackTrace();
+        }
+
+        System.out.println(printOutput((double)correct / TESTS, feedback));
+    }
+}
@@ -0,0 +1,149 @@
+package roadgraph;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A binary min-heap of node ids with true decrease-key.
+ *
+ * The heap itself is an int array of node ids, the keys are a double array
+ * indexed by node id, and pos records where each node sits in the heap so
+ * that a decrease-key can sift the node up in place instead of queueing a
+ * duplicate.  Nothing is allocated after construction.
+ */
+public class IndexedMinHeap implements NodeQueue {
+	private final int[] heap;
+	private final int[] pos;//Position of each node in heap, or -1
+	private final double[] keys;
+	private int size;
+
+	/**
+	 * Create an empty heap for nodes 0..capacity-1
+	 * @param capacity The number of nodes in the graph
+	 */
+	public IndexedMinHeap(int capacity)
+	{
+		heap = new int[capacity];
+		pos = new int[capacity];
+		keys = new double[capacity];
+		Arrays.fill(pos, -1);
+		size = 0;
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Whether a node is currently in the heap
+	 * @param node The node id
+	 * @return true if the node is queued
+	 */
+	public boolean contains(int node)
+	{
+		return pos[node] >= 0;
+	}
+
+	@Override
+	public void insertOrDecrease(int node, double key)
+	{
+		int i = pos[node];
+		if (i < 0) {
+			i = size++;
+			heap[i] = node;
+			pos[node] = i;
+		}
+		else if (key >= keys[node]) {
+			return;
+		}
+		keys[node] = key;
+		siftUp(i);
+	}
+
+	@Override
+	public double peekKey()
+	{
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		return keys[heap[0]];
+	}
+
+	@Override
+	public int poll()
+	{
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		int min = heap[0];
+		pos[min] = -1;
+		size--;
+		if (size > 0) {
+			heap[0] = heap[size];
+			pos[heap[0]] = 0;
+			siftDown(0);
+		}
+		return min;
+	}
+
+	@Override
+	public void clear()
+	{
+		for (int i = 0; i < size; i++) {
+			pos[heap[i]] = -1;
+		}
+		size = 0;
+	}
+
+	// Move the node at heap index i up until its parent is not larger
+	private void siftUp(int i)
+	{
+		int node = heap[i];
+		double key = keys[node];
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			int p = heap[parent];
+			if (keys[p] <= key) {
+				break;
+			}
+			heap[i] = p;
+			pos[p] = i;
+			i = parent;
+		}
+		heap[i] = node;
+		pos[node] = i;
+	}
+
+	// Move the node at heap index i down until neither child is smaller
+	private void siftDown(int i)
+	{
+		int node = heap[i];
+		double key = keys[node];
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			int c = heap[child];
+			int right = child + 1;
+			if (right < size && keys[heap[right]] < keys[c]) {
+				child = right;
+				c = heap[child];
+			}
+			if (key <= keys[c]) {
+				break;
+			}
+			heap[i] = c;
+			pos[c] = i;
+			i = child;
+		}
+		heap[i] = node;
+		pos[node] = i;
+	}
+}
@@ -0,0 +1,180 @@
+package roadgraph;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import geography.GeographicPoint;
+import geography.RoadSegment;
+
+/**
+ * The set of intersections reachable from a start within a travel time
+ * budget, with the time each one is reached.  Made by MapGraph.isochrones.
+ */
+public class Isochrone {
+	private final GeographicPoint start;
+	private final double budget;
+	// Reached intersections and their arrival times, in order of arrival
+	private final LinkedHashMap<GeographicPoint,Double> arrivals;
+
+	/**
+	 * Create an isochrone
+	 * @param start The location the search started from
+	 * @param budget The travel time budget
+	 * @param arrivals The reached intersections and their arrival times,
+	 *   which must all be within the budget
+	 */
+	Isochrone(GeographicPoint start, double budget, LinkedHashMap<GeographicPoint,Double> arrivals)
+	{
+		this.start = start;
+		this.budget = budget;
+		this.arrivals = arrivals;
+	}
+
+	/**
+	 * Get the location the search started from
+	 * @return the start location
+	 */
+	public GeographicPoint getStart()
+	{
+		return start;
+	}
+
+	/**
+	 * Get the travel time budget, in the units of MapEdge.getRoadDuration
+	 * @return the budget
+	 */
+	public double getBudget()
+	{
+		return budget;
+	}
+
+	/**
+	 * Get the reached intersections with their arrival times
+	 * @return an unmodifiable map from intersection to arrival time, in
+	 *   order of arrival
+	 */
+	public Map<GeographicPoint,Double> getArrivals()
+	{
+		return Collections.unmodifiableMap(arrivals);
+	}
+
+	/**
+	 * Whether an intersection can be reached within the budget
+	 * @param location The intersection
+	 * @return true if it is reached
+	 */
+	public boolean contains(GeographicPoint location)
+	{
+		return arrivals.containsKey(location);
+	}
+
+	/**
+	 * Build a polygon around the reached part of the road network.
+	 *
+	 * The polygon is the convex hull of the geometry of every road segment
+	 * between two reached intersections, together with the part of each
+	 * segment leaving a reached intersection that can be covered in the
+	 * time left.  Segments are treated as two-way, so on one-way streets
+	 * the boundary can reach a little further than the search did.
+	 *
+	 * @param roads The segments at each intersection, as filled in by
+	 *   GraphLoader.loadRoadMap
+	 * @return the corners of the polygon in counterclockwise order, or
+	 *   fewer than three points if the reached area is degenerate
+	 */
+	public List<GeographicPoint> getBoundary(Map<GeographicPoint, ? extends Collection<RoadSegment>> roads)
+	{
+		List<GeographicPoint> points = new ArrayList<GeographicPoint>();
+		for (Map.Entry<GeographicPoint,Double> arrival : arrivals.entrySet()) {
+			GeographicPoint from = arrival.getKey();
+			points.add(from);
+			Collection<RoadSegment> segments = roads.get(from);
+			if (segments == null) {
+				continue;
+			}
+			for (RoadSegment seg : segments) {
+				GeographicPoint to = seg.getOtherPoint(from);
+				List<GeographicPoint> geometry = seg.getPoints(from, to);
+				if (arrivals.containsKey(to)) {
+					points.addAll(geometry);
+				}
+				else {
+					double left = budget - arrival.getValue();
+					double fraction = left / MapEdge.getRoadDuration(seg.getRoadType(), seg.getLength());
+					points.addAll(prefix(geometry, fraction));
+				}
+			}
+		}
+		return convexHull(points);
+	}
+
+	// The points of a polyline up to a fraction of its length, ending with
+	// the point at that fraction
+	private static List<GeographicPoint> prefix(List<GeographicPoint> line, double fraction)
+	{
+		double total = 0;
+		for (int i = 0; i + 1 < line.size(); i++) {
+			total += line.get(i).distance(line.get(i + 1));
+		}
+		double remaining = Math.min(1, fraction) * total;
+		List<GeographicPoint> points = new ArrayList<GeographicPoint>();
+		points.add(line.get(0));
+		for (int i = 0; i + 1 < line.size(); i++) {
+			GeographicPoint a = line.get(i);
+			GeographicPoint b = line.get(i + 1);
+			double step = a.distance(b);
+			if (step >= remaining) {
+				double t = step == 0 ? 0 : remaining / step;
+				points.add(new GeographicPoint(a.getX() + t * (b.getX() - a.getX()),
+						a.getY() + t * (b.getY() - a.getY())));
+				break;
+			}
+			points.add(b);
+			remaining -= step;
+		}
+		return points;
+	}
+
+	// Andrew's monotone chain, treating longitude as x and latitude as y
+	private static List<GeographicPoint> convexHull(List<GeographicPoint> points)
+	{
+		List<GeographicPoint> sorted = new ArrayList<GeographicPoint>(points);
+		sorted.sort((a, b) -> a.getY() != b.getY() ? Double.compare(a.getY(), b.getY())
+				: Double.compare(a.getX(), b.getX()));
+		int n = sorted.size();
+		if (n < 3) {
+			return sorted;
+		}
+		GeographicPoint[] hull = new GeographicPoint[2 * n];
+		int k = 0;
+		//Lower hull, then upper hull
+		for (int i = 0; i < n; i++) {
+			while (k >= 2 && cross(hull[k - 2], hull[k - 1], sorted.get(i)) <= 0) {
+				k--;
+			}
+			hull[k++] = sorted.get(i);
+		}
+		for (int i = n - 2, lower = k + 1; i >= 0; i--) {
+			while (k >= lower && cross(hull[k - 2], hull[k - 1], sorted.get(i)) <= 0) {
+				k--;
+			}
+			hull[k++] = sorted.get(i);
+		}
+		List<GeographicPoint> result = new ArrayList<GeographicPoint>(k - 1);
+		for (int i = 0; i < k - 1; i++) {
+			result.add(hull[i]);
+		}
+		return result;
+	}
+
+	// Positive if o, a, b turn counterclockwise
+	private static double cross(GeographicPoint o, GeographicPoint a, GeographicPoint b)
+	{
+		return (a.getY() - o.getY()) * (b.getX() - o.getX())
+				- (a.getX() - o.getX()) * (b.getY() - o.getY());
+	}
+}
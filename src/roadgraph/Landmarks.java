@@ -0,0 +1,316 @@
+package roadgraph;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import geography.GeographicPoint;
+import util.GraphLoader;
+
+/**
+ * Landmark lower bounds for A* (the ALT algorithm: A*, Landmarks and the
+ * Triangle inequality).
+ *
+ * For a handful of landmark nodes L we store the travel time from L to
+ * every node and from every node to L.  By the triangle inequality
+ *   d(v,t) >= d(L,t) - d(L,v)   and   d(v,t) >= d(v,L) - d(t,L)
+ * so the largest of these over all landmarks is a lower bound on the travel
+ * time from v to t.  The bound is consistent, so A* with it still returns
+ * shortest paths, and it is usually far tighter than straight-line distance
+ * divided by the top speed.
+ */
+public class Landmarks {
+
+	/** How landmarks are chosen */
+	public enum Strategy {
+		/** Each new landmark is the node farthest from those already chosen */
+		FARTHEST,
+		/** Each new landmark lies in the region the current ones bound worst */
+		AVOID
+	}
+
+	private final CompactGraph graph;
+	private final int[] landmarks;
+	// fromLandmark[l][v] = d(landmark l, v), toLandmark[l][v] = d(v, landmark l)
+	private final double[][] fromLandmark;
+	private final double[][] toLandmark;
+
+	private Landmarks(CompactGraph graph, int[] landmarks, double[][] fromLandmark,
+			double[][] toLandmark)
+	{
+		this.graph = graph;
+		this.landmarks = landmarks;
+		this.fromLandmark = fromLandmark;
+		this.toLandmark = toLandmark;
+	}
+
+	/**
+	 * Choose k landmarks in a graph and precompute their distance tables.
+	 * @param map The graph
+	 * @param k The number of landmarks
+	 * @param strategy How to choose them
+	 * @return the landmarks for the current form of the graph
+	 */
+	public static Landmarks select(MapGraph map, int k, Strategy strategy)
+	{
+		CompactGraph g = map.compile();
+		int n = g.getNumNodes();
+		k = Math.min(k, n);
+		int[] chosen = new int[k];
+		double[][] from = new double[k][];
+		double[][] to = new double[k][];
+		Random random = new Random(n);
+		for (int l = 0; l < k; l++) {
+			int landmark;
+			if (strategy == Strategy.AVOID && l > 0) {
+				landmark = avoid(g, Arrays.copyOf(from, l), Arrays.copyOf(to, l),
+						random.nextInt(n));
+			}
+			else {
+				landmark = farthest(g, Arrays.copyOf(from, l), random.nextInt(n));
+			}
+			chosen[l] = landmark;
+			from[l] = distancesFrom(g, landmark, true);
+			to[l] = distancesFrom(g, landmark, false);
+		}
+		return new Landmarks(g, chosen, from, to);
+	}
+
+	/**
+	 * Whether these landmarks were computed for a compiled graph
+	 * @param g The compiled graph
+	 * @return true if the distance tables are valid for g
+	 */
+	boolean isFor(CompactGraph g)
+	{
+		return graph == g;
+	}
+
+	/**
+	 * Get the number of landmarks
+	 * @return the number of landmarks
+	 */
+	public int size()
+	{
+		return landmarks.length;
+	}
+
+	/**
+	 * Get the locations of the landmarks
+	 * @return the landmark locations
+	 */
+	public List<GeographicPoint> getLocations()
+	{
+		List<GeographicPoint> locations = new ArrayList<GeographicPoint>();
+		for (int l : landmarks) {
+			locations.add(graph.getLocation(l));
+		}
+		return locations;
+	}
+
+	/**
+	 * A lower bound on the travel time from v to t
+	 * @param v The node id to bound from
+	 * @param t The goal node id
+	 * @return the largest landmark lower bound, or 0
+	 */
+	double lowerBound(int v, int t)
+	{
+		double best = 0;
+		for (int l = 0; l < landmarks.length; l++) {
+			double[] from = fromLandmark[l];
+			double[] to = toLandmark[l];
+			// Unreachable entries are infinite and give no bound
+			if (from[t] != Double.POSITIVE_INFINITY && from[v] != Double.POSITIVE_INFINITY) {
+				best = Math.max(best, from[t] - from[v]);
+			}
+			if (to[v] != Double.POSITIVE_INFINITY && to[t] != Double.POSITIVE_INFINITY) {
+				best = Math.max(best, to[v] - to[t]);
+			}
+		}
+		return best;
+	}
+
+	// One-to-all Dijkstra, over outgoing edges if forward, else incoming
+	private static double[] distancesFrom(CompactGraph g, int source, boolean forward)
+	{
+		return distancesFrom(g, source, forward, null);
+	}
+
+	// As above, also recording the node each node was reached from
+	private static double[] distancesFrom(CompactGraph g, int source, boolean forward,
+			int[] parent)
+	{
+		double[] dist = new double[g.getNumNodes()];
+		Arrays.fill(dist, Double.POSITIVE_INFINITY);
+		IndexedMinHeap queue = new IndexedMinHeap(g.getNumNodes());
+		dist[source] = 0;
+		if (parent != null) {
+			Arrays.fill(parent, -1);
+		}
+		queue.insertOrDecrease(source, 0);
+		while (!queue.isEmpty()) {
+			int v = queue.poll();
+			if (forward) {
+				for (int e = g.firstOut[v]; e < g.firstOut[v + 1]; e++) {
+					relax(g.head[e], dist[v] + g.duration[e], v, dist, parent, queue);
+				}
+			}
+			else {
+				for (int i = g.firstIn[v]; i < g.firstIn[v + 1]; i++) {
+					int e = g.inEdge[i];
+					relax(g.tail[e], dist[v] + g.duration[e], v, dist, parent, queue);
+				}
+			}
+		}
+		return dist;
+	}
+
+	private static void relax(int w, double d, int v, double[] dist, int[] parent,
+			IndexedMinHeap queue)
+	{
+		if (d < dist[w]) {
+			dist[w] = d;
+			if (parent != null) {
+				parent[w] = v;
+			}
+			queue.insertOrDecrease(w, d);
+		}
+	}
+
+	// Node whose distance to the nearest chosen landmark is largest.  The
+	// first landmark is the node farthest from a random start.
+	private static int farthest(CompactGraph g, double[][] from, int start)
+	{
+		int n = g.getNumNodes();
+		double[] nearest = new double[n];
+		if (from.length == 0) {
+			nearest = distancesFrom(g, start, true);
+		}
+		else {
+			Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+			for (double[] table : from) {
+				for (int v = 0; v < n; v++) {
+					nearest[v] = Math.min(nearest[v], table[v]);
+				}
+			}
+		}
+		int best = start;
+		for (int v = 0; v < n; v++) {
+			// Skip nodes no landmark reaches so islands do not attract landmarks
+			if (nearest[v] != Double.POSITIVE_INFINITY && nearest[v] > nearest[best]) {
+				best = v;
+			}
+		}
+		return best;
+	}
+
+	// Goldberg and Harrelson's "avoid" rule: grow a shortest path tree from
+	// a random root, weight each node by how far the current landmarks
+	// underestimate its distance from the root, and descend into the
+	// heaviest subtree that holds no landmark until reaching a leaf.
+	private static int avoid(CompactGraph g, double[][] from, double[][] to, int root)
+	{
+		int n = g.getNumNodes();
+		int[] parent = new int[n];
+		double[] dist = distancesFrom(g, root, true, parent);
+		Landmarks current = new Landmarks(g, new int[from.length], from, to);
+
+		// Nodes in order of distance, so children come after their parents
+		Integer[] order = new Integer[n];
+		for (int v = 0; v < n; v++) {
+			order[v] = v;
+		}
+		Arrays.sort(order, (a, b) -> Double.compare(dist[a], dist[b]));
+
+		double[] size = new double[n];
+		boolean[] hasLandmark = new boolean[n];
+		for (double[] table : from) {
+			for (int v = 0; v < n; v++) {
+				if (table[v] == 0) {
+					hasLandmark[v] = true;
+				}
+			}
+		}
+		for (int i = n - 1; i >= 0; i--) {
+			int v = order[i];
+			if (dist[v] == Double.POSITIVE_INFINITY) {
+				continue;
+			}
+			size[v] += dist[v] - current.lowerBound(root, v);
+			if (parent[v] >= 0) {
+				hasLandmark[parent[v]] |= hasLandmark[v];
+				size[parent[v]] += size[v];
+			}
+		}
+
+		int v = root;
+		while (true) {
+			int next = -1;
+			for (int e = g.firstOut[v]; e < g.firstOut[v + 1]; e++) {
+				int w = g.head[e];
+				if (parent[w] == v && w != root && !hasLandmark[w]
+						&& (next < 0 || size[w] > size[next])) {
+					next = w;
+				}
+			}
+			if (next < 0) {
+				return v;
+			}
+			v = next;
+		}
+	}
+
+	/**
+	 * Compare the number of nodes settled by Dijkstra, A* with the straight
+	 * line bound and A* with 8 landmarks on every map in data/maps.
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		int queries = 200;
+		BufferedReader reader = new BufferedReader(new FileReader("data/maps/mapfiles.list"));
+		String file;
+		System.out.println("map, nodes, dijkstra, astar, alt-farthest, alt-avoid (mean settled nodes)");
+		while ((file = reader.readLine()) != null) {
+			if (file.trim().isEmpty()) {
+				continue;
+			}
+			MapGraph map = new MapGraph();
+			GraphLoader.loadRoadMap("data/maps/" + file.trim(), map);
+			List<GeographicPoint> vertices = new ArrayList<GeographicPoint>(map.getVertices());
+			Landmarks farthest = Landmarks.select(map, 8, Strategy.FARTHEST);
+			Landmarks avoid = Landmarks.select(map, 8, Strategy.AVOID);
+
+			Random random = new Random(42);
+			long dijkstra = 0, astar = 0, altFarthest = 0, altAvoid = 0;
+			PrintStream out = System.out;
+			System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+			for (int i = 0; i < queries; i++) {
+				GeographicPoint start = vertices.get(random.nextInt(vertices.size()));
+				GeographicPoint end = vertices.get(random.nextInt(vertices.size()));
+				map.setLandmarks(null);
+				map.dijkstra(start, end);
+				dijkstra += map.getLastSearchCount();
+				map.aStarSearch(start, end);
+				astar += map.getLastSearchCount();
+				map.setLandmarks(farthest);
+				map.aStarSearch(start, end);
+				altFarthest += map.getLastSearchCount();
+				map.setLandmarks(avoid);
+				map.aStarSearch(start, end);
+				altAvoid += map.getLastSearchCount();
+			}
+			System.setOut(out);
+			System.out.println(file.trim() + ", " + map.getNumVertices() + ", "
+					+ dijkstra / (double) queries + ", " + astar / (double) queries + ", "
+					+ altFarthest / (double) queries + ", " + altAvoid / (double) queries);
+		}
+		reader.close();
+	}
+}
@@ -9,6 +9,9 @@ import geography.GeographicPoint;
 		private String roadName; //Name of the edge
 		private String roadType; //Type of the edge
 		private double roadDuration; //Duration of the edge
+		private double[] shape; //Lat, lon pairs holding the points between start and end,
+		private int firstPoint; //from this point of shape on
+		private int numPoints; //Number of points between start and end
 		
 		/** The length of the road segment*/
 		private double length;
@@ -38,8 +41,46 @@ import geography.GeographicPoint;
 		 */	
 		MapEdge(String roadName, String roadType,
 				MapNode n1, MapNode n2, double length) 
+		{
+			this(roadName, roadType, n1, n2, length, new double[0]);
+		}
+		
+		/** 
+		 * Create a new MapEdge object
+		 * @param roadName  The name of the road
+		 * @param roadType  The type of the road
+		 * @param n1 The point at one end of the segment
+		 * @param n2 The point at the other end of the segment
+		 * @param length The length of the road segment
+		 * @param geometry The latitude and longitude of each point of the
+		 *   road between n1 and n2, in order from n1, interleaved
+		 */	
+		MapEdge(String roadName, String roadType,
+				MapNode n1, MapNode n2, double length, double[] geometry) 
+		{
+			this(roadName, roadType, n1, n2, length, geometry, 0, geometry.length / 2);
+		}
+		
+		/** 
+		 * Create a new MapEdge object whose points are read from an array
+		 * shared with other edges.  The array must not change afterwards.
+		 * @param roadName  The name of the road
+		 * @param roadType  The type of the road
+		 * @param n1 The point at one end of the segment
+		 * @param n2 The point at the other end of the segment
+		 * @param length The length of the road segment
+		 * @param shape The latitude and longitude of each point, interleaved
+		 * @param firstPoint The index, in points, of the first point of the
+		 *   road after n1
+		 * @param numPoints The number of points between n1 and n2
+		 */	
+		MapEdge(String roadName, String roadType, MapNode n1, MapNode n2,
+				double length, double[] shape, int firstPoint, int numPoints) 
 		{
 			this.roadName = roadName;
+			this.shape = shape;
+			this.firstPoint = firstPoint;
+			this.numPoints = numPoints;
 			start = n1;
 			end = n2;
 			this.roadType = roadType;
@@ -47,6 +88,14 @@ import geography.GeographicPoint;
 			calculateDuration();
 		}
 		
+		/**
+		 * return the MapNode for the start point
+		 * @return the MapNode for the start point
+		 */
+		MapNode getStartNode() {
+		   return start;
+		}
+
 		/**
 		 * return the MapNode for the end point
 		 * @return the MapNode for the end point
@@ -73,6 +122,39 @@ import geography.GeographicPoint;
 			return end.getLocation();
 		}
 		
+		/**
+		 * Return the number of points of the road between the start and end points
+		 * @return the number of points
+		 */
+		int getNumPoints()
+		{
+			return numPoints;
+		}
+		
+		/**
+		 * Copy the points of the road between the start and end points
+		 * @param into The array to copy the latitude and longitude of each
+		 *   point into, interleaved
+		 * @param at The index in the array to copy the first latitude to
+		 */
+		void copyGeometry(double[] into, int at)
+		{
+			System.arraycopy(shape, 2 * firstPoint, into, at, 2 * numPoints);
+		}
+		
+		/**
+		 * Read the points of the road from an array they have been copied
+		 * into along with those of other edges, instead of keeping them
+		 * apart.  The array must not change afterwards.
+		 * @param shape The latitude and longitude of each point, interleaved
+		 * @param firstPoint The index, in points, of this edge's first point
+		 */
+		void shareGeometry(double[] shape, int firstPoint)
+		{
+			this.shape = shape;
+			this.firstPoint = firstPoint;
+		}
+		
 		/**
 		 * Return the length of this road segment
 		 * @return the length of the road segment
@@ -140,45 +222,17 @@ import geography.GeographicPoint;
 		}
 		
 		private void calculateDuration(){
-			switch(roadType){
-			case "motorway": //Assume speed limit 70mph
-				roadDuration = length/70;
-			break;
-			case "trunk": //Assume speed limit 60mph
-				roadDuration = length/60;
-			break;
-			case "primary": //Assume speed limit 55mph
-				roadDuration = length/55;
-			break;
-			case "secondary": //Assume speed limit 50mph
-				roadDuration = length/50;
-			break;
-			case "tertiary": //Assume speed limit 45mph
-				roadDuration = length/45;
-			break;
-			case "unclassified": //Assume speed limit 30mph
-			case "trunk_link": //Assume speed limit 30mph
-			case "primary_link": //Assume speed limit 30mph
-				roadDuration = length/30;
-			break;
-			case "residential": //Assume speed limit 25mph
-				roadDuration = length/25;
-			break;
-			case "service": //Assume speed limit 20mph
-			case "secondary_link": //Assume speed limit 20mph
-				roadDuration = length/20;
-			break;
-			case "motorway_link": //Assume speed limit 35mph
-				roadDuration = length/35;
-			break;
-			case "tertiary_link": //Assume speed limit 15mph
-			case "living_street": //Assume speed limit 15mph
-			case "pedestrian": //Assume speed limit 15mph
-			case "track": //Assume speed limit 15mph
-				roadDuration = length/15;
-			break;			
-			default: //Default speed limit
-				roadDuration = length/20;
-			}
+			roadDuration = getRoadDuration(roadType, length);
+		}
+
+		/**
+		 * Get the duration of a road of a given type and length
+		 * @param roadType The type of the road
+		 * @param length The length of the road
+		 * @return the time to travel the road at the speed limit assumed
+		 *   for its type by WeightProfile.CAR
+		 */
+		static double getRoadDuration(String roadType, double length){
+			return WeightProfile.CAR.getCost(roadType, length);
 		}
 	}
\ No newline at end of file
@@ -1,53 +1,94 @@
 /**
  * @author UCSD MOOC development team and YOU
- * 
+ *
  * A class which reprsents a graph of geographic locations
- * Nodes in the graph are intersections between 
+ * Nodes in the graph are intersections between
  *
  */
 package roadgraph;
 
 
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
-import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.function.Consumer;
+import java.util.stream.IntStream;
 import geography.GeographicPoint;
+import geography.RoadSegment;
 import util.GraphLoader;
 
 /**
  * @author UCSD MOOC development team and YOU
- * 
+ *
  * A class which represents a graph of geographic locations
- * Nodes in the graph are intersections between 
+ * Nodes in the graph are intersections between
+ *
+ * The graph is built up with addVertex and addEdge.  Before the first
+ * search it is compiled into a CompactGraph, and all of the searches
+ * run over the primitive arrays of that CompactGraph.  From then on the
+ * CompactGraph is the only copy of the edges: the MapEdge objects are let
+ * go, and made again from its arrays only if the graph is changed.
  *
  */
-public class MapGraph {	
+public class MapGraph {
+	/** Default time budget of alternatives, in ms */
+	public static final long ALTERNATIVES_MILLIS = 100;
+	//Alternative routes may be at most this many times slower than the fastest
+	private static final double MAX_STRETCH = 1.3;
+	//and may spend at most this share of their time on the roads of any better one
+	private static final double MAX_OVERLAP = 0.7;
+	//Their plateau must be at least this share of their detour from the fastest
+	private static final double MIN_PLATEAU = 0.25;
+	//Cells a side of the grid renumberAlongCurve orders by, as a power of 2
+	private static final int CURVE_ORDER = 16;
+
 	private HashMap<GeographicPoint,MapNode> nodes;//HashMap of vertices/nodes for O(1) retrieval
-	private HashSet<MapEdge> edges;
-	
-	/** 
-	 * Create a new empty MapGraph 
+	private HashSet<MapEdge> edges;//Null once compiled, when compact holds the edges instead
+	private ArrayList<MapNode> nodeList;//Vertices in order of their dense ids
+
+	//Frozen CSR copy of this graph, null until compiled or after a change
+	private volatile CompactGraph compact;
+
+	//Per-thread search state, so the compiled graph can be queried concurrently
+	private final ThreadLocal<SearchContext> contexts = new ThreadLocal<SearchContext>();
+
+	//Key resolution of the bucket queue used by the searches, 0 for a binary heap
+	private volatile double queueResolution;
+
+	//Landmark lower bounds for aStarSearch, or null to use straight line distance
+	private volatile Landmarks landmarks;
+
+	//Turn restrictions and penalties for the turn-aware searches
+	private volatile TurnCosts turnCosts;
+
+	//Time of day congestion for the time-dependent searches
+	private volatile TrafficProfiles traffic;
+
+	//Component labels of the nodes, read with the graph, for the next compile
+	private int[] sccLabels;
+	private int[] wccLabels;
+
+	/**
+	 * Create a new empty MapGraph
 	 */
 	public MapGraph()
 	{
 		//New Graph called. Initialize HashMap
 		nodes = new HashMap<GeographicPoint,MapNode>();
 		edges = new HashSet<MapEdge>();
-		
+		nodeList = new ArrayList<MapNode>();
+		compact = null;
+		queueResolution = 0;
+		landmarks = null;
+		turnCosts = null;
+		traffic = null;
 	}
-	/*
-	public static Comparator<MapNode> idComparator = new Comparator<MapNode>(){
-			@Override
-			public int compare(MapNode c1, MapNode c2) {
-	            return (int) (c1.getId() - c2.getId());
-	        }
-	};*/
 
 	/**
 	 * Get the number of vertices (road intersections) in the graph
@@ -57,7 +98,7 @@ public class MapGraph {
 	{
 		return nodes.values().size();
 	}
-	
+
 	/**
 	 * Return the intersections, which are the vertices in this graph.
 	 * @return The vertices in this graph as GeographicPoints
@@ -66,20 +107,21 @@ public class MapGraph {
 	{
 		return nodes.keySet();
 	}
-	
+
 	/**
 	 * Get the number of road segments in the graph
 	 * @return The number of edges in the graph.
 	 */
 	public int getNumEdges()
 	{
-		return edges.size();
+		HashSet<MapEdge> set = edges;
+		return set != null ? set.size() : compile().getNumEdges();
 	}
 
-	
-	
+
+
 	/** Add a node corresponding to an intersection at a Geographic Point
-	 * If the location is already in the graph or null, this method does 
+	 * If the location is already in the graph or null, this method does
 	 * not change the graph.
 	 * @param location  The location of the intersection
 	 * @return true if a node was added, false if it was not (the node
@@ -91,12 +133,18 @@ public class MapGraph {
 			//Return False if node exists in list or node is null
 			return false;
 		}
-		nodes.put(location,new MapNode(location));
+		thaw();
+		MapNode node = new MapNode(location, nodeList.size());
+		nodes.put(location,node);
+		nodeList.add(node);
+		compact = null;
+		sccLabels = null;
+		wccLabels = null;
 		return true;
 	}
-	
+
 	/**
-	 * Adds a directed edge to the graph from pt1 to pt2.  
+	 * Adds a directed edge to the graph from pt1 to pt2.
 	 * Precondition: Both GeographicPoints have already been added to the graph
 	 * @param from The starting point of the edge
 	 * @param to The ending point of the edge
@@ -109,30 +157,644 @@ public class MapGraph {
 	 */
 	public void addEdge(GeographicPoint from, GeographicPoint to, String roadName,
 			String roadType, double length) throws IllegalArgumentException {
-		if(!nodes.containsKey(from) || !nodes.containsKey(to) || from == null 
+		addEdge(from, to, roadName, roadType, length, new ArrayList<GeographicPoint>());
+	}
+
+	/**
+	 * Adds a directed edge to the graph from pt1 to pt2, along with the
+	 * shape of the road between them.
+	 * Precondition: Both GeographicPoints have already been added to the graph
+	 * @param from The starting point of the edge
+	 * @param to The ending point of the edge
+	 * @param roadName The name of the road
+	 * @param roadType The type of the road
+	 * @param length The length of the road, in km
+	 * @param geometry The points of the road between from and to, in order
+	 * @throws IllegalArgumentException If the points have not already been
+	 *   added as nodes to the graph, if any of the arguments is null,
+	 *   or if the length is less than 0.
+	 */
+	public void addEdge(GeographicPoint from, GeographicPoint to, String roadName,
+			String roadType, double length, List<GeographicPoint> geometry)
+			throws IllegalArgumentException {
+		if(geometry == null || !nodes.containsKey(from) || !nodes.containsKey(to) || from == null
 				|| to == null || roadType == null || length < 0){
 			//Throw IllegalArgumentException if points do not exist/are null/length < 0
 			throw new IllegalArgumentException("Something went wrong while adding an Edge");
 		}
 		else{
-			MapEdge edge = new MapEdge(roadName, roadType, nodes.get(from), nodes.get(to), length);
+			thaw();
+			double[] shape = new double[2 * geometry.size()];
+			for (int i = 0; i < geometry.size(); i++) {
+				shape[2 * i] = geometry.get(i).getX();
+				shape[2 * i + 1] = geometry.get(i).getY();
+			}
+			MapEdge edge = new MapEdge(roadName, roadType, nodes.get(from), nodes.get(to),
+					length, shape);
 			edges.add(edge);
 			nodes.get(from).addMapEdge(edge);
+			nodes.get(to).addIncomingEdge(edge);
+			compact = null;
+			sccLabels = null;
+			wccLabels = null;
+		}
+	}
+
+	/**
+	 * Freeze the graph into its compressed-sparse-row form.  This is done
+	 * automatically before the first search, but GraphLoader calls it once
+	 * loading has finished so that the first query does not pay for it.
+	 * Adding a vertex or an edge afterwards discards the compiled form.
+	 * @return The compiled graph
+	 */
+	public CompactGraph compile()
+	{
+		CompactGraph g = compact;
+		if (g == null) {
+			synchronized (this) {
+				g = compact;
+				if (g == null) {
+					g = new CompactGraph(nodeList, edges.size(), sccLabels, wccLabels);
+					compact = g;
+					sccLabels = null;
+					wccLabels = null;
+					//The compiled graph holds the edges now
+					edges = null;
+					for (MapNode node : nodeList) {
+						node.releaseEdges();
+					}
+				}
+			}
+		}
+		return g;
+	}
+
+	/**
+	 * Give the component labels of the graph as it now stands, as saved
+	 * with a compiled map, so that the next compile need not find them.
+	 * They are forgotten if a vertex or edge is added first.
+	 * @param scc The strongly connected component of each vertex, in id
+	 *   order, as from StronglyConnectedComponents.label
+	 * @param wcc The weakly connected component of each vertex, as from
+	 *   CompactGraph.labelWeak
+	 * @throws IllegalArgumentException if there is not one label of each
+	 *   kind for every vertex
+	 */
+	public void setComponentLabels(int[] scc, int[] wcc)
+	{
+		if (scc.length != nodeList.size() || wcc.length != nodeList.size()) {
+			throw new IllegalArgumentException("Need component labels for " + nodeList.size()
+					+ " vertices");
+		}
+		synchronized (this) {
+			thaw();
+			compact = null;
+			sccLabels = scc;
+			wccLabels = wcc;
+		}
+	}
+
+	//Make the edges again from the compiled graph, if they were let go when
+	//it was compiled, before the graph is changed
+	private void thaw()
+	{
+		if (edges != null) {
+			return;
+		}
+		CompactGraph g = compact;
+		edges = new HashSet<MapEdge>();
+		for (MapNode node : nodeList) {
+			node.clearEdges();
+		}
+		for (int e = 0; e < g.getNumEdges(); e++) {
+			MapNode from = nodeList.get(g.tail[e]);
+			MapNode to = nodeList.get(g.head[e]);
+			MapEdge edge = new MapEdge(g.getRoadName(e), g.getRoadType(e), from, to,
+					g.length[e], g.shape, g.firstShape[e], g.firstShape[e + 1] - g.firstShape[e]);
+			edges.add(edge);
+			from.addMapEdge(edge);
+			to.addIncomingEdge(edge);
+		}
+	}
+
+	/**
+	 * Contract chains of intersections that only pass traffic through.
+	 * An intersection is contracted if a single road leads into it and on
+	 * out to a different intersection, one way or in both directions, and
+	 * the road keeps its type, so the costs of every path are unchanged
+	 * under every WeightProfile.  Each pair of edges through it becomes one
+	 * edge along the same geometry, named after both roads if they differ.
+	 * Like adding edges, this discards the compiled graph, and with it any
+	 * landmarks, turn costs or traffic profiles made for it.
+	 * @return the number of intersections removed
+	 */
+	public int contractChains()
+	{
+		thaw();
+		int removed = 0;
+		for (MapNode node : nodeList) {
+			if (contractNode(node)) {
+				nodes.remove(node.getLocation());
+				removed++;
+			}
+		}
+		renumber();
+		return removed;
+	}
+
+	//Replace the edges through v by edges past it, if v only passes one
+	//road through, and return whether it did
+	private boolean contractNode(MapNode v)
+	{
+		Set<MapEdge> in = v.getIncomingEdges();
+		Set<MapEdge> out = v.getEdges();
+		if (in.size() == 1 && out.size() == 1) {
+			MapEdge into = in.iterator().next();
+			MapEdge onward = out.iterator().next();
+			MapNode u = into.getStartNode();
+			MapNode w = onward.getEndNode();
+			if (u == v || w == v || u == w || !into.getRoadType().equals(onward.getRoadType())) {
+				return false;
+			}
+			bypass(into, onward);
+			return true;
+		}
+		if (in.size() == 2 && out.size() == 2) {
+			Iterator<MapEdge> ins = in.iterator();
+			MapEdge fromU = ins.next();
+			MapEdge fromW = ins.next();
+			MapNode u = fromU.getStartNode();
+			MapNode w = fromW.getStartNode();
+			MapEdge toU = null;
+			MapEdge toW = null;
+			for (MapEdge edge : out) {
+				if (edge.getEndNode() == u && toU == null) {
+					toU = edge;
+				}
+				else if (edge.getEndNode() == w && toW == null) {
+					toW = edge;
+				}
+			}
+			if (u == v || w == v || u == w || toU == null || toW == null
+					|| !fromU.getRoadType().equals(toW.getRoadType())
+					|| !fromW.getRoadType().equals(toU.getRoadType())) {
+				return false;
+			}
+			bypass(fromU, toW);
+			bypass(fromW, toU);
+			return true;
+		}
+		return false;
+	}
+
+	//Replace the edges into and onward from the node between them by one edge
+	private void bypass(MapEdge into, MapEdge onward)
+	{
+		MapNode u = into.getStartNode();
+		MapNode v = into.getEndNode();
+		MapNode w = onward.getEndNode();
+		int first = 2 * into.getNumPoints();
+		double[] shape = new double[first + 2 + 2 * onward.getNumPoints()];
+		into.copyGeometry(shape, 0);
+		shape[first] = v.getLocation().getX();
+		shape[first + 1] = v.getLocation().getY();
+		onward.copyGeometry(shape, first + 2);
+		String name = into.getRoadName().equals(onward.getRoadName()) ? into.getRoadName()
+				: into.getRoadName() + ", " + onward.getRoadName();
+		MapEdge edge = new MapEdge(name, into.getRoadType(), u, w,
+				into.getLength() + onward.getLength(), shape);
+
+		u.removeMapEdge(into);
+		v.removeIncomingEdge(into);
+		v.removeMapEdge(onward);
+		w.removeIncomingEdge(onward);
+		edges.remove(into);
+		edges.remove(onward);
+		edges.add(edge);
+		u.addMapEdge(edge);
+		w.addIncomingEdge(edge);
+	}
+
+	/**
+	 * Whether an intersection is in the largest strongly connected
+	 * component of the graph, the set of intersections that can all reach
+	 * each other.  Most routes between intersections outside it and those
+	 * in it do not exist, and are found not to only after a long search.
+	 * @param location The intersection
+	 * @return true if it is a vertex in the largest component
+	 */
+	public boolean isInLargestComponent(GeographicPoint location)
+	{
+		CompactGraph g = compile();
+		int id = getId(location);
+		StronglyConnectedComponents sccs = g.getComponents();
+		return id >= 0 && sccs.getComponent(id) == sccs.getLargest();
+	}
+
+	/**
+	 * Remove every intersection outside the largest strongly connected
+	 * component, along with its roads, such as the islands cut off by the
+	 * bounding box of a map.  Every route left then exists.  Like adding
+	 * edges, this discards the compiled graph.
+	 * @return the number of intersections removed
+	 */
+	public int removeOutsideLargestComponent()
+	{
+		CompactGraph g = compile();
+		StronglyConnectedComponents sccs = g.getComponents();
+		thaw();
+		int removed = 0;
+		for (MapNode node : nodeList) {
+			if (sccs.getComponent(node.getId()) == sccs.getLargest()) {
+				continue;
+			}
+			for (MapEdge edge : node.getEdges()) {
+				edge.getEndNode().removeIncomingEdge(edge);
+				edges.remove(edge);
+			}
+			for (MapEdge edge : node.getIncomingEdges()) {
+				edge.getStartNode().removeMapEdge(edge);
+				edges.remove(edge);
+			}
+			nodes.remove(node.getLocation());
+			removed++;
+		}
+		renumber();
+		return removed;
+	}
+
+	//Drop removed nodes from nodeList and give the rest dense ids again
+	private void renumber()
+	{
+		ArrayList<MapNode> kept = new ArrayList<MapNode>(nodes.size());
+		for (MapNode node : nodeList) {
+			if (nodes.get(node.getLocation()) == node) {
+				node.setId(kept.size());
+				kept.add(node);
+			}
+		}
+		nodeList = kept;
+		compact = null;
+		sccLabels = null;
+		wccLabels = null;
+	}
+
+	/**
+	 * Give the intersections new ids in the order they fall along a Hilbert
+	 * curve over the map, so that intersections near each other on the map
+	 * are near each other in the arrays of the compiled graph, and a search
+	 * touches fewer cache lines as it spreads out.  The curve order can then
+	 * be refined into the order a breadth-first search over the roads
+	 * reaches them, started at the first intersection on the curve and
+	 * taking neighbors in curve order, which keeps the roads out of an
+	 * intersection closer still.  Ids as loaded follow the hash order of
+	 * the locations, which scatters neighbors across the whole graph.
+	 * Routes with ties in cost may be broken differently afterwards.  Like
+	 * adding edges, this discards the compiled graph.
+	 * @param breadthFirst Whether to refine the curve order by breadth-first
+	 *   search
+	 */
+	public void renumberAlongCurve(boolean breadthFirst)
+	{
+		thaw();
+		int n = nodeList.size();
+		if (n == 0) {
+			return;
+		}
+		double minLat = Double.POSITIVE_INFINITY;
+		double maxLat = Double.NEGATIVE_INFINITY;
+		double minLon = Double.POSITIVE_INFINITY;
+		double maxLon = Double.NEGATIVE_INFINITY;
+		for (MapNode node : nodeList) {
+			minLat = Math.min(minLat, node.getLocation().getX());
+			maxLat = Math.max(maxLat, node.getLocation().getX());
+			minLon = Math.min(minLon, node.getLocation().getY());
+			maxLon = Math.max(maxLon, node.getLocation().getY());
+		}
+		//Snap each intersection to a grid over the map and find its cell on the curve
+		int cells = 1 << CURVE_ORDER;
+		double latScale = maxLat > minLat ? (cells - 1) / (maxLat - minLat) : 0;
+		double lonScale = maxLon > minLon ? (cells - 1) / (maxLon - minLon) : 0;
+		long[] key = new long[n];
+		for (MapNode node : nodeList) {
+			int x = (int) ((node.getLocation().getY() - minLon) * lonScale);
+			int y = (int) ((node.getLocation().getX() - minLat) * latScale);
+			key[node.getId()] = hilbertIndex(x, y);
+		}
+		Integer[] byCurve = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			byCurve[i] = i;
+		}
+		Arrays.sort(byCurve, (a, b) -> key[a] != key[b] ? Long.compare(key[a], key[b])
+				: Integer.compare(a, b));
+
+		ArrayList<MapNode> order = new ArrayList<MapNode>(n);
+		if (!breadthFirst) {
+			for (int id : byCurve) {
+				order.add(nodeList.get(id));
+			}
+		}
+		else {
+			int[] rank = new int[n];
+			for (int i = 0; i < n; i++) {
+				rank[byCurve[i]] = i;
+			}
+			//Ids in the order they are reached, which doubles as the queue
+			boolean[] reached = new boolean[n];
+			List<MapNode> neighbors = new ArrayList<MapNode>();
+			for (int root : byCurve) {
+				if (reached[root]) {
+					continue;
+				}
+				reached[root] = true;
+				order.add(nodeList.get(root));
+				for (int head = order.size() - 1; head < order.size(); head++) {
+					MapNode node = order.get(head);
+					neighbors.clear();
+					for (MapEdge edge : node.getEdges()) {
+						neighbors.add(edge.getEndNode());
+					}
+					for (MapEdge edge : node.getIncomingEdges()) {
+						neighbors.add(edge.getStartNode());
+					}
+					neighbors.sort((a, b) -> Integer.compare(rank[a.getId()], rank[b.getId()]));
+					for (MapNode next : neighbors) {
+						if (!reached[next.getId()]) {
+							reached[next.getId()] = true;
+							order.add(next);
+						}
+					}
+				}
+			}
+		}
+
+		for (int i = 0; i < n; i++) {
+			order.get(i).setId(i);
+		}
+		nodeList = order;
+		compact = null;
+		sccLabels = null;
+		wccLabels = null;
+	}
+
+	//Position of cell (x, y) along the Hilbert curve over a grid of
+	//2^CURVE_ORDER cells a side
+	private static long hilbertIndex(int x, int y)
+	{
+		long d = 0;
+		for (int s = 1 << (CURVE_ORDER - 1); s > 0; s >>= 1) {
+			int rx = (x & s) > 0 ? 1 : 0;
+			int ry = (y & s) > 0 ? 1 : 0;
+			d += (long) s * s * ((3 * rx) ^ ry);
+			//Rotate the quadrant so the curve inside it runs the standard way
+			if (ry == 0) {
+				if (rx == 1) {
+					x = s - 1 - x;
+					y = s - 1 - y;
+				}
+				int t = x;
+				x = y;
+				y = t;
+			}
+		}
+		return d;
+	}
+
+	/**
+	 * Get this thread's search state for the current compiled graph,
+	 * reset and ready for a new query.
+	 * @return the search context
+	 */
+	SearchContext getSearchContext()
+	{
+		CompactGraph g = compile();
+		SearchContext context = contexts.get();
+		if (context == null || context.getGraph() != g
+				|| context.getQueueResolution() != queueResolution) {
+			context = new SearchContext(g, queueResolution);
+			contexts.set(context);
+		}
+		context.reset();
+		return context;
+	}
+
+	/**
+	 * Choose the priority queue used by dijkstra and aStarSearch.  By default
+	 * they use an IndexedMinHeap.  With a positive resolution they use a
+	 * BucketQueue over travel times quantized to that resolution, which is
+	 * cheaper per operation but only orders nodes to within the resolution.
+	 * @param resolution The size of one key quantum in hours, or 0 for the
+	 *   exact binary heap
+	 */
+	public void setQueueResolution(double resolution)
+	{
+		if (resolution < 0) {
+			throw new IllegalArgumentException("Resolution must not be negative");
+		}
+		queueResolution = resolution;
+	}
+
+	/**
+	 * Use landmark lower bounds (ALT) as the heuristic of aStarSearch.
+	 * The landmarks only apply while the graph is unchanged; after a vertex
+	 * or edge is added aStarSearch falls back to straight line distance.
+	 * @param landmarks The landmarks, or null to use straight line distance
+	 */
+	public void setLandmarks(Landmarks landmarks)
+	{
+		this.landmarks = landmarks;
+	}
+
+	/**
+	 * Set the turn restrictions and penalties used by turnAwareDijkstra and
+	 * turnAwareAStar.  They only apply while the graph is unchanged; after
+	 * a vertex or edge is added the turn-aware searches fall back to the
+	 * default penalties with no restrictions.
+	 * @param turnCosts The turn costs, or null for the defaults
+	 */
+	public void setTurnCosts(TurnCosts turnCosts)
+	{
+		this.turnCosts = turnCosts;
+	}
+
+	/**
+	 * Set the traffic profiles used by timeDependentDijkstra and
+	 * timeDependentAStar.  They only apply while the graph is unchanged;
+	 * after a vertex or edge is added the time-dependent searches fall back
+	 * to free flow.
+	 * @param traffic The traffic profiles, or null for free flow
+	 */
+	public void setTraffic(TrafficProfiles traffic)
+	{
+		this.traffic = traffic;
+	}
+
+	/**
+	 * Choose k landmarks with the avoid strategy and use them in aStarSearch
+	 * @param k The number of landmarks
+	 * @return the landmarks
+	 */
+	public Landmarks prepareLandmarks(int k)
+	{
+		Landmarks chosen = Landmarks.select(this, k, Landmarks.Strategy.AVOID);
+		setLandmarks(chosen);
+		return chosen;
+	}
+
+	/**
+	 * Get the number of nodes settled by the last search this thread ran
+	 * on this graph.
+	 * @return the number of settled nodes
+	 */
+	public int getLastSearchCount()
+	{
+		SearchContext context = contexts.get();
+		return context == null ? 0 : context.getSettledCount();
+	}
+
+	/**
+	 * Get the dense id of the vertex at a location
+	 * @param location The location of the vertex
+	 * @return the id of the vertex, or -1 if there is no vertex there
+	 */
+	int getId(GeographicPoint location)
+	{
+		MapNode node = nodes.get(location);
+		return node == null ? -1 : node.getId();
+	}
+
+	/**
+	 * Find the intersection nearest to a location, which need not be in
+	 * the graph, so that it can be used as the start or goal of a search.
+	 * @param latitude The latitude of the location
+	 * @param longitude The longitude of the location
+	 * @return the nearest vertex, or null if the graph is empty
+	 */
+	public GeographicPoint nearest(double latitude, double longitude)
+	{
+		CompactGraph g = compile();
+		int id = g.getSpatialIndex().nearest(latitude, longitude);
+		return id < 0 ? null : g.getLocation(id);
+	}
+
+	/**
+	 * Find the k intersections nearest to a location
+	 * @param latitude The latitude of the location
+	 * @param longitude The longitude of the location
+	 * @param k The number of vertices to find
+	 * @return the nearest vertices, nearest first
+	 */
+	public List<GeographicPoint> kNearest(double latitude, double longitude, int k)
+	{
+		CompactGraph g = compile();
+		return toLocations(g, g.getSpatialIndex().kNearest(latitude, longitude, k));
+	}
+
+	/**
+	 * Find the intersections within a distance of a location
+	 * @param latitude The latitude of the location
+	 * @param longitude The longitude of the location
+	 * @param radius The distance in km
+	 * @return the vertices within radius of the location, nearest first
+	 */
+	public List<GeographicPoint> withinRadius(double latitude, double longitude, double radius)
+	{
+		CompactGraph g = compile();
+		return toLocations(g, g.getSpatialIndex().withinRadius(latitude, longitude, radius));
+	}
+
+	private static List<GeographicPoint> toLocations(CompactGraph g, int[] ids)
+	{
+		List<GeographicPoint> locations = new ArrayList<GeographicPoint>(ids.length);
+		for (int id : ids) {
+			locations.add(g.getLocation(id));
+		}
+		return locations;
+	}
+
+	/** Expand a path through intersections into the full shape of the roads
+	 * it follows.  Between each pair of consecutive intersections the
+	 * fastest edge joining them by car is used.
+	 *
+	 * @param path The intersections on the path, in order, such as a path
+	 *   returned by one of the searches
+	 * @return The latitude and longitude of every point along the path,
+	 *   interleaved, with each intersection appearing once
+	 * @throws IllegalArgumentException If a point of the path is not in the
+	 *   graph or two consecutive intersections are not joined by an edge
+	 */
+	public double[] expandPath(List<GeographicPoint> path)
+	{
+		return expandPath(path, WeightProfile.CAR);
+	}
+
+	/** Expand a path through intersections into the full shape of the roads
+	 * it follows.  Between each pair of consecutive intersections the
+	 * cheapest edge joining them under a weight profile is used, so that
+	 * the path is drawn along the roads the search for it could take.
+	 *
+	 * @param path The intersections on the path, in order, such as a path
+	 *   returned by one of the searches
+	 * @param profile The weight profile the path was found under
+	 * @return The latitude and longitude of every point along the path,
+	 *   interleaved, with each intersection appearing once
+	 * @throws IllegalArgumentException If a point of the path is not in the
+	 *   graph or two consecutive intersections are not joined by an edge
+	 */
+	public double[] expandPath(List<GeographicPoint> path, WeightProfile profile)
+	{
+		CompactGraph g = compile();
+		double[] cost = g.getWeights(profile);
+		int[] ids = toIds(path);
+		//The edge taken from each intersection to the next
+		int[] hopEdge = new int[Math.max(0, ids.length - 1)];
+		int size = 2 * ids.length;
+		for (int i = 0; i < hopEdge.length; i++) {
+			int best = cheapestEdge(g, cost, ids[i], ids[i + 1]);
+			if (best < 0) {
+				throw new IllegalArgumentException("No edge from " + path.get(i)
+						+ " to " + path.get(i + 1));
+			}
+			hopEdge[i] = best;
+			size += 2 * (g.firstShape[best + 1] - g.firstShape[best]);
+		}
+
+		double[] coordinates = new double[size];
+		int at = 0;
+		for (int i = 0; i < ids.length; i++) {
+			coordinates[at++] = g.lat[ids[i]];
+			coordinates[at++] = g.lon[ids[i]];
+			if (i < hopEdge.length) {
+				int e = hopEdge[i];
+				int count = 2 * (g.firstShape[e + 1] - g.firstShape[e]);
+				System.arraycopy(g.shape, 2 * g.firstShape[e], coordinates, at, count);
+				at += count;
+			}
 		}
+		return coordinates;
 	}
-	
-	/** 
-	 * Get a set of neighbor nodes from a mapNode
-	 * @param node  The node to get the neighbors from
-	 * @return A set containing the MapNode objects that are the neighbors 
-	 * 	of node
+
+	/**
+	 * Add the road segment along every edge to the segments at each of its
+	 * ends, as GraphLoader.loadRoadMap fills them in.  The segments read
+	 * their points from the compiled graph rather than copying them.
+	 * @param segments The segments at each intersection, to add to
 	 */
-	private Set<MapNode> getNeighbors(MapNode node) {
-		return node.getNeighbors();
+	public void addRoadSegments(HashMap<GeographicPoint,HashSet<RoadSegment>> segments)
+	{
+		CompactGraph g = compile();
+		for (int e = 0; e < g.getNumEdges(); e++) {
+			GeographicPoint start = g.getLocation(g.tail[e]);
+			GeographicPoint end = g.getLocation(g.head[e]);
+			RoadSegment seg = new RoadSegment(start, end, g.shape, g.firstShape[e],
+					g.firstShape[e + 1], g.getRoadName(e), g.getRoadType(e), g.length[e]);
+			segments.computeIfAbsent(start, k -> new HashSet<RoadSegment>()).add(seg);
+			segments.computeIfAbsent(end, k -> new HashSet<RoadSegment>()).add(seg);
+		}
 	}
-	
+
 	/** Find the path from start to goal using breadth first search
-	 * 
+	 *
 	 * @param start The starting location
 	 * @param goal The goal location
 	 * @return The list of intersections that form the shortest (unweighted)
@@ -140,105 +802,112 @@ public class MapGraph {
 	 */
 	public List<GeographicPoint> bfs(GeographicPoint start, GeographicPoint goal) {
 		// Dummy variable for calling the search algorithms
-		
+
         Consumer<GeographicPoint> temp = (x) -> {};
         return bfs(start, goal, temp);
 	}
-	
+
 	/** Find the path from start to goal using breadth first search
-	 * 
+	 *
 	 * @param start The starting location
 	 * @param goal The goal location
 	 * @param nodeSearched A hook for visualization.  See assignment instructions for how to use it.
 	 * @return The list of intersections that form the shortest (unweighted)
 	 *   path from start to goal (including both start and goal).
 	 */
-	public List<GeographicPoint> bfs(GeographicPoint start, 
+	public List<GeographicPoint> bfs(GeographicPoint start,
 			 					     GeographicPoint goal, Consumer<GeographicPoint> nodeSearched)
 	{
 		if (start == null || goal == null) {
 			//Check if start and goal are non null.
 			throw new NullPointerException("Start or goal node is null!  No path exists.");
 		}
-		MapNode startNode = nodes.get(start);
-		MapNode endNode = nodes.get(goal);
-		//ParentMap for current and Visited nodes
-		HashMap<MapNode, MapNode> parentMap = new HashMap<MapNode, MapNode>();
-		
+		SearchContext context = getSearchContext();
+		int startId = getId(start);
+		int goalId = getId(goal);
+		if (startId < 0 || goalId < 0 || !context.getGraph().mayReach(startId, goalId)) {
+			System.out.println("No path exists from"+start+"to"+goal);
+			return null;
+		}
+
 		//Perform BFS
-		boolean found = bfsSearch(startNode,endNode,parentMap,nodeSearched);
-		
+		boolean found = bfsSearch(context, startId, goalId, nodeSearched);
+
 		if (!found) {
-			//A path from start to end not found. 
+			//A path from start to end not found.
 			System.out.println("No path exists from"+start+"to"+goal);
 			return null;
 		}
-		
+
 		//Path found. Recreate path and return
-		return constructPath(startNode, endNode, parentMap);		
+		return constructPath(context, startId, goalId);
 	}
-	
+
 	/**BFS function to check if path exists
-	 * @param start The starting location
-	 * @param goal The goal location
-	 * @param Parent Map to keep track of vertices for path
-	 * @return if path exists or not 
+	 * @param context The search state, which records the parent of each node
+	 * @param start The starting node id
+	 * @param goal The goal node id
+	 * @return if path exists or not
 	 */
-	private boolean bfsSearch(MapNode start,MapNode goal,HashMap<MapNode, MapNode> parentMap,Consumer<GeographicPoint> nodeSearched){
-		Queue<MapNode> toExplore = new LinkedList<MapNode>();
-		HashSet<MapNode> visited = new HashSet<MapNode>();
-		toExplore.add(start);
-		
-		while (!toExplore.isEmpty()) {
+	private boolean bfsSearch(SearchContext context, int start, int goal,
+			Consumer<GeographicPoint> nodeSearched){
+		CompactGraph g = context.getGraph();
+		int[] toExplore = context.fifo;//Each node is queued at most once
+		int queueHead = 0;
+		int queueTail = 0;
+		toExplore[queueTail++] = start;
+		context.setDistance(start, 0, -1);
+
+		while (queueHead < queueTail) {
 			//Continue loop while a neighbor node exists to explore
-			MapNode curr = toExplore.remove();
-			
+			int curr = toExplore[queueHead++];
+			context.settle(curr);
+
 			// hook for visualization
-			nodeSearched.accept(curr.getLocation());
-			
-			if (curr.equals(goal)) {
+			nodeSearched.accept(g.getLocation(curr));
+
+			if (curr == goal) {
 				//Reached goal
 				return true;
 			}
-			Set<MapNode> neighbors = getNeighbors(curr);
-			for (MapNode neighbor : neighbors) {
-				if (!visited.contains(neighbor)) {
-					visited.add(neighbor);
-					parentMap.put(neighbor, curr);
-					toExplore.add(neighbor);
+			for (int e = g.firstOut[curr]; e < g.firstOut[curr + 1]; e++) {
+				int neighbor = g.head[e];
+				if (!context.isReached(neighbor)) {
+					context.setDistance(neighbor, context.getDistance(curr) + 1, curr);
+					toExplore[queueTail++] = neighbor;
 				}
 			}
 		}
 
 		return false;//path not found
 	}
-	
-	/** Reconstruct a path from start to goal using the parentMap
-	 * @param parentMap the HashNode map of children and their parents
-	 * @param start The starting location
-	 * @param goal The goal location
+
+	/** Reconstruct a path from start to goal using the parents recorded by a search
+	 * @param context The search state of the search that reached goal
+	 * @param start The starting node id
+	 * @param goal The goal node id
 	 * @return The list of intersections that form the shortest path from
 	 *   start to goal (including both start and goal).
 	 */
-	private List<GeographicPoint> constructPath(MapNode start, MapNode goal,
-			HashMap<MapNode, MapNode> parentMap)
+	private List<GeographicPoint> constructPath(SearchContext context, int start, int goal)
 	{
+		CompactGraph g = context.getGraph();
 		LinkedList<GeographicPoint> path = new LinkedList<GeographicPoint>();//Path to return
-		MapNode curr = goal;//Start constructing from goal to start
+		int curr = goal;//Start constructing from goal to start
 		while (curr != start) {
 			//While start vertex not reached
-			path.addFirst(curr.getLocation());//Add vertex to list
-			curr = parentMap.get(curr);//Get next vertex in path
+			path.addFirst(g.getLocation(curr));//Add vertex to list
+			curr = context.getParent(curr);//Get next vertex in path
 		}
-		path.addFirst(start.getLocation());//Add last path
+		path.addFirst(g.getLocation(start));//Add last path
 		return path;
 	}
-	
+
 	/** Find the path from start to goal using Dijkstra's algorithm
-	 * 
+	 *
 	 * @param start The starting location
 	 * @param goal The goal location
-	 * @return The list of intersections that form the shortest path from 
+	 * @return The list of intersections that form the shortest path from
 	 *   start to goal (including both start and goal).
 	 */
 	public List<GeographicPoint> dijkstra(GeographicPoint start, GeographicPoint goal) {
@@ -247,124 +916,120 @@ public class MapGraph {
         Consumer<GeographicPoint> temp = (x) -> {};
         return dijkstra(start, goal, temp);
 	}
-	
+
 	/** Find the path from start to goal using Dijkstra's algorithm
-	 * 
+	 *
 	 * @param start The starting location
 	 * @param goal The goal location
 	 * @param nodeSearched A hook for visualization.  See assignment instructions for how to use it.
-	 * @return The list of intersections that form the shortest path from 
+	 * @return The list of intersections that form the shortest path from
 	 *   start to goal (including both start and goal).
 	 */
-	public List<GeographicPoint> dijkstra(GeographicPoint start, 
+	public List<GeographicPoint> dijkstra(GeographicPoint start,
 										  GeographicPoint goal, Consumer<GeographicPoint> nodeSearched)
+	{
+		return dijkstra(start, goal, WeightProfile.CAR, nodeSearched);
+	}
+
+	/** Find the cheapest path from start to goal under a weight profile
+	 * using Dijkstra's algorithm
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param profile The cost of each road
+	 * @return The list of intersections that form the cheapest path from
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> dijkstra(GeographicPoint start, GeographicPoint goal,
+			WeightProfile profile) {
+        Consumer<GeographicPoint> temp = (x) -> {};
+        return dijkstra(start, goal, profile, temp);
+	}
+
+	/** Find the cheapest path from start to goal under a weight profile
+	 * using Dijkstra's algorithm
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param profile The cost of each road
+	 * @param nodeSearched A hook for visualization.  See assignment instructions for how to use it.
+	 * @return The list of intersections that form the cheapest path from
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> dijkstra(GeographicPoint start, GeographicPoint goal,
+			WeightProfile profile, Consumer<GeographicPoint> nodeSearched)
 	{
 		if (start == null || goal == null) {
 			//Check if start and goal are non null.
 			System.out.println("Start or goal node is null!  No path exists.");
 			return null;
 		}
-		
-		//ParentMap for current and Visited nodes
-		HashMap<MapNode, MapNode> parentMap = new HashMap<MapNode, MapNode>();
-		MapNode startNode = nodes.get(start);
-		MapNode endNode = nodes.get(goal);
-		
-		//Perform Dijsktra Search
-		boolean found = dijsktraSearch(startNode, endNode,parentMap, nodeSearched);
-		
-		if (!found) {
-			//A path from start to end not found. 
+
+		SearchContext context = getSearchContext();
+		int startId = getId(start);
+		int goalId = getId(goal);
+		if (startId < 0 || goalId < 0 || !context.getGraph().mayReach(startId, goalId)) {
 			System.out.println("No path exists");
 			return null;
 		}
-		
-		//Path found. Recreate path and return
-		return constructPath(startNode, endNode, parentMap);		
-	}
-	
-	//Initializing all Distances to infinity
-	private void initializeDistances() {
-		for (MapNode m : nodes.values()) {
-			m.setPriorityDistance(Double.MAX_VALUE);
-			m.setPriorityFuncDistance(Double.MAX_VALUE);
-		}
-	}
-	
-	//Gets edges with their distances
-	private HashMap<MapNode, Double> getEdgeDistance(MapNode curr) {
-		HashMap<MapNode, Double> distancesMap = new HashMap<>();
-		for (MapEdge ed : curr.getEdges()) {
-			distancesMap.put(ed.getEndNode(), ed.getRoadDuration());
+
+		//Perform Dijsktra Search
+		boolean found = dijsktraSearch(context, startId, goalId, profile, nodeSearched);
+
+		if (!found) {
+			//A path from start to end not found.
+			System.out.println("No path exists");
+			return null;
 		}
-		return distancesMap;
+
+		//Path found. Recreate path and return
+		return constructPath(context, startId, goalId);
 	}
-	
-	public static Comparator<MapNode> dijsktraComparator = new Comparator<MapNode>(){
-		
-		@Override
-		public int compare(MapNode n1, MapNode n2) {
-			if (n1.getPriorityDistance() < n2.getPriorityDistance())
-	        {
-	            return -1;
-	        }
-	        if (n1.getPriorityDistance() > n2.getPriorityDistance())
-	        {
-	            return 1;
-	        }
-	        return 0;
-        }
-	};
-	
-	private boolean dijsktraSearch(MapNode start,MapNode goal, HashMap<MapNode, MapNode> parentMap,
-			Consumer<GeographicPoint> nodeSearched) {
-		PriorityQueue<MapNode> toExplore = new PriorityQueue<MapNode>(getNumVertices(),dijsktraComparator);
-		HashSet<MapNode> visited = new HashSet<MapNode>();
-		int count  = 0;
-		initializeDistances();
+
+	private boolean dijsktraSearch(SearchContext context, int start, int goal,
+			WeightProfile profile, Consumer<GeographicPoint> nodeSearched) {
+		CompactGraph g = context.getGraph();
+		NodeQueue toExplore = context.getQueue();
+		double[] cost = g.getWeights(profile);
 
 		//Setting visited node to 0
-		start.setPriorityDistance(0.0);
+		context.setDistance(start, 0.0, -1);
+
+		toExplore.insertOrDecrease(start, 0.0);
 
-		toExplore.add(start);
-		
 		while (!toExplore.isEmpty()) {
 			//Continue loop while a neighbor node exists to explore
-			MapNode curr = toExplore.remove();
-			count++;
-			
+			int curr = toExplore.poll();
+			context.settle(curr);
+
 			// hook for visualization
-			nodeSearched.accept(curr.getLocation());
-			
-			if (curr.equals(goal)) {
+			nodeSearched.accept(g.getLocation(curr));
+
+			if (curr == goal) {
 				//Reached goal
-				System.out.println("Dijsktra visited:"+count);
+				System.out.println("Dijsktra visited:"+context.getSettledCount());
 				return true;
 			}
-			HashMap<MapNode, Double> distancesMap = getEdgeDistance(curr);
-			Set<MapNode> neighbors = getNeighbors(curr);
-			for (MapNode neighbor : neighbors) {
-				if (!visited.contains(neighbor)) {	
-					
-					visited.add(curr);
-					double priority = curr.getPriorityDistance() + distancesMap.get(neighbor);
+			for (int e = g.firstOut[curr]; e < g.firstOut[curr + 1]; e++) {
+				int neighbor = g.head[e];
+				if (!context.isSettled(neighbor)) {
+					double priority = context.getDistance(curr) + cost[e];
 					//Change priority only if lower than set
-					if (priority < neighbor.getPriorityDistance()) {
-						neighbor.setPriorityDistance(priority);
-						parentMap.put(neighbor, curr);
-						toExplore.offer(neighbor);
+					if (priority < context.getDistance(neighbor)) {
+						context.setDistance(neighbor, priority, curr);
+						toExplore.insertOrDecrease(neighbor, priority);
 					}
 				}
 			}
 		}
 		return false;
 	}
-	
+
 	/** Find the path from start to goal using A-Star search
-	 * 
+	 *
 	 * @param start The starting location
 	 * @param goal The goal location
-	 * @return The list of intersections that form the shortest path from 
+	 * @return The list of intersections that form the shortest path from
 	 *   start to goal (including both start and goal).
 	 */
 	public List<GeographicPoint> aStarSearch(GeographicPoint start, GeographicPoint goal) {
@@ -372,106 +1037,130 @@ public class MapGraph {
         Consumer<GeographicPoint> temp = (x) -> {};
         return aStarSearch(start, goal, temp);
 	}
-	
+
 	/** Find the path from start to goal using A-Star search
-	 * 
+	 *
 	 * @param start The starting location
 	 * @param goal The goal location
 	 * @param nodeSearched A hook for visualization.  See assignment instructions for how to use it.
-	 * @return The list of intersections that form the shortest path from 
+	 * @return The list of intersections that form the shortest path from
 	 *   start to goal (including both start and goal).
 	 */
-	public List<GeographicPoint> aStarSearch(GeographicPoint start, 
+	public List<GeographicPoint> aStarSearch(GeographicPoint start,
 											 GeographicPoint goal, Consumer<GeographicPoint> nodeSearched)
+	{
+		return aStarSearch(start, goal, WeightProfile.CAR, nodeSearched);
+	}
+
+	/** Find the cheapest path from start to goal under a weight profile
+	 * using A-Star search
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param profile The cost of each road
+	 * @return The list of intersections that form the cheapest path from
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> aStarSearch(GeographicPoint start, GeographicPoint goal,
+			WeightProfile profile) {
+        Consumer<GeographicPoint> temp = (x) -> {};
+        return aStarSearch(start, goal, profile, temp);
+	}
+
+	/** Find the cheapest path from start to goal under a weight profile
+	 * using A-Star search.  Landmarks are only used with WeightProfile.CAR,
+	 * the profile they were computed for.
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param profile The cost of each road
+	 * @param nodeSearched A hook for visualization.  See assignment instructions for how to use it.
+	 * @return The list of intersections that form the cheapest path from
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> aStarSearch(GeographicPoint start, GeographicPoint goal,
+			WeightProfile profile, Consumer<GeographicPoint> nodeSearched)
 	{
 		if (start == null || goal == null) {
 			//Check if start and goal are non null.
 			System.out.println("Start or goal node is null!  No path exists.");
 			return null;
 		}
-		
-		//ParentMap for current and Visited nodes
-		HashMap<MapNode, MapNode> parentMap = new HashMap<MapNode, MapNode>();
-		MapNode startNode = nodes.get(start);
-		MapNode endNode = nodes.get(goal);
-		
+
+		SearchContext context = getSearchContext();
+		int startId = getId(start);
+		int goalId = getId(goal);
+		if (startId < 0 || goalId < 0 || !context.getGraph().mayReach(startId, goalId)) {
+			System.out.println("No path exists");
+			return null;
+		}
+
 		//Perform Dijsktra Search
-		boolean found = aStar(startNode, endNode,parentMap, nodeSearched);
-		
+		boolean found = aStar(context, startId, goalId, profile, nodeSearched);
+
 		if (!found) {
-			//A path from start to end not found. 
+			//A path from start to end not found.
 			System.out.println("No path exists");
 			return null;
 		}
-		
+
 		//Path found. Recreate path and return
-		return constructPath(startNode, endNode, parentMap);		
+		return constructPath(context, startId, goalId);
 	}
 
-	//Get straightline distance to goal
-	private double getStraightLineDistance(MapNode curr,MapNode goal){
-		return (curr.getLocation().distance(goal.getLocation())/20);
+	//Get straightline distance to goal, divided by the top speed of the
+	//profile so that it never overestimates the cost
+	private double getStraightLineDistance(CompactGraph g, WeightProfile profile, int curr, int goal){
+		return (g.distance(curr, goal)/profile.getMaxSpeed());
+	}
+
+	//Lower bound on the cost to goal: the better of the landmark bound, if
+	//there are landmarks for this graph and profile, and straight line distance
+	private double getHeuristic(CompactGraph g, Landmarks alt, WeightProfile profile, int curr, int goal){
+		double h = getStraightLineDistance(g, profile, curr, goal);
+		if (alt != null) {
+			h = Math.max(h, alt.lowerBound(curr, goal));
+		}
+		return h;
 	}
-	
-	//Comparator for aStar
-	public static Comparator<MapNode> aStarComparator = new Comparator<MapNode>(){
-		
-		@Override
-		public int compare(MapNode n1, MapNode n2) {
-			if (n1.getPriorityFuncDistance() < n2.getPriorityFuncDistance())
-	        {
-	            return -1;
-	        }
-	        if (n1.getPriorityFuncDistance() > n2.getPriorityFuncDistance())
-	        {
-	            return 1;
-	        }
-	        return 0;
-        }
-	};
-	
-	
-	//aStar Search method
-	private boolean aStar(MapNode start,MapNode goal, HashMap<MapNode, MapNode> parentMap,
-			Consumer<GeographicPoint> nodeSearched) {
-		PriorityQueue<MapNode> toExplore = new PriorityQueue<MapNode>(getNumVertices(),aStarComparator);
-		HashSet<MapNode> visited = new HashSet<MapNode>();
 
-		initializeDistances();
-		int count = 0;
+	//aStar Search method
+	private boolean aStar(SearchContext context, int start, int goal,
+			WeightProfile profile, Consumer<GeographicPoint> nodeSearched) {
+		CompactGraph g = context.getGraph();
+		NodeQueue toExplore = context.getQueue();
+		double[] cost = g.getWeights(profile);
+		Landmarks alt = profile == WeightProfile.CAR ? landmarks : null;
+		if (alt != null && !alt.isFor(g)) {
+			alt = null;
+		}
 		//Setting visited node to 0
-		start.setPriorityFuncDistance(0.0);
-		start.setPriorityDistance(0.0);
+		context.setDistance(start, 0.0, -1);
+
+		toExplore.insertOrDecrease(start, 0.0);
 
-		toExplore.add(start);
-		
 		while (!toExplore.isEmpty()) {
 			//Continue loop while a neighbor node exists to explore
-			MapNode curr = toExplore.remove();
-						
+			int curr = toExplore.poll();
+			context.settle(curr);
+
 			// hook for visualization
-			nodeSearched.accept(curr.getLocation());
-			
-			count++;
-						
-			if (curr.equals(goal)) {
-				System.out.println("aStar visited:"+count);
+			nodeSearched.accept(g.getLocation(curr));
+
+			if (curr == goal) {
+				System.out.println("aStar visited:"+context.getSettledCount());
 				//Reached goal
 				return true;
 			}
-			HashMap<MapNode, Double> distancesMap = getEdgeDistance(curr);
-			Set<MapNode> neighbors = getNeighbors(curr);
-			for (MapNode neighbor : neighbors) {
-				if (!visited.contains(neighbor)) {					
-					visited.add(curr);					
-					double priorityFunc = curr.getPriorityDistance()+ distancesMap.get(neighbor)+ getStraightLineDistance(neighbor,goal);
-					double priority = curr.getPriorityDistance()+ distancesMap.get(neighbor);
+			for (int e = g.firstOut[curr]; e < g.firstOut[curr + 1]; e++) {
+				int neighbor = g.head[e];
+				if (!context.isSettled(neighbor)) {
+					double priority = context.getDistance(curr) + cost[e];
 					//Change priority only if lower than set
-					if (priorityFunc < neighbor.getPriorityFuncDistance()) {						
-						neighbor.setPriorityFuncDistance(priorityFunc);
-						neighbor.setPriorityDistance(priority);
-						parentMap.put(neighbor, curr);
-						toExplore.offer(neighbor);
+					if (priority < context.getDistance(neighbor)) {
+						context.setDistance(neighbor, priority, curr);
+						toExplore.insertOrDecrease(neighbor,
+								priority + getHeuristic(g, alt, profile, neighbor, goal));
 					}
 				}
 			}
@@ -479,7 +1168,957 @@ public class MapGraph {
 		return false;
 	}
 
-	
+
+	/** Find the path from start to goal using bidirectional Dijkstra
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @return The list of intersections that form the shortest path from
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> bidirectionalDijkstra(GeographicPoint start, GeographicPoint goal) {
+		// Dummy variable for calling the search algorithms
+        Consumer<GeographicPoint> temp = (x) -> {};
+        return bidirectionalDijkstra(start, goal, temp);
+	}
+
+	/** Find the path from start to goal using bidirectional Dijkstra.
+	 * One search runs forward from start over outgoing edges and another
+	 * backward from goal over incoming edges until they meet, which
+	 * settles far fewer nodes than a single search on long routes.
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param nodeSearched A hook for visualization, called for the nodes
+	 *   settled in both directions
+	 * @return The list of intersections that form the shortest path from
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> bidirectionalDijkstra(GeographicPoint start,
+			GeographicPoint goal, Consumer<GeographicPoint> nodeSearched)
+	{
+		return bidirectional(start, goal, false, nodeSearched);
+	}
+
+	/** Find the path from start to goal using bidirectional A-Star search
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @return The list of intersections that form the shortest path from
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> bidirectionalAStar(GeographicPoint start, GeographicPoint goal) {
+		// Dummy variable for calling the search algorithms
+        Consumer<GeographicPoint> temp = (x) -> {};
+        return bidirectionalAStar(start, goal, temp);
+	}
+
+	/** Find the path from start to goal using bidirectional A-Star search.
+	 * Both directions are guided by the average of the forward and backward
+	 * lower bounds (landmarks if set, else straight line distance), which
+	 * keeps the two searches consistent with each other.
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param nodeSearched A hook for visualization, called for the nodes
+	 *   settled in both directions
+	 * @return The list of intersections that form the shortest path from
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> bidirectionalAStar(GeographicPoint start,
+			GeographicPoint goal, Consumer<GeographicPoint> nodeSearched)
+	{
+		return bidirectional(start, goal, true, nodeSearched);
+	}
+
+	private List<GeographicPoint> bidirectional(GeographicPoint start, GeographicPoint goal,
+			boolean guided, Consumer<GeographicPoint> nodeSearched)
+	{
+		if (start == null || goal == null) {
+			//Check if start and goal are non null.
+			System.out.println("Start or goal node is null!  No path exists.");
+			return null;
+		}
+
+		SearchContext forward = getSearchContext();
+		SearchContext backward = forward.getReverse();
+		int startId = getId(start);
+		int goalId = getId(goal);
+		if (startId < 0 || goalId < 0 || !forward.getGraph().mayReach(startId, goalId)) {
+			System.out.println("No path exists");
+			return null;
+		}
+
+		int[] meeting = bidirectionalSearch(forward, backward, startId, goalId, guided,
+				nodeSearched);
+		System.out.println((guided ? "Bidirectional aStar" : "Bidirectional Dijsktra")
+				+ " visited:" + forward.getSettledCount());
+
+		if (meeting == null) {
+			//A path from start to end not found.
+			System.out.println("No path exists");
+			return null;
+		}
+
+		//Path found. Join the forward path to the meeting edge with the
+		//backward path from it
+		LinkedList<GeographicPoint> path = new LinkedList<GeographicPoint>(
+				constructPath(forward, startId, meeting[0]));
+		CompactGraph g = forward.getGraph();
+		int curr = meeting[1];
+		if (curr != meeting[0]) {
+			path.add(g.getLocation(curr));
+		}
+		while (curr != goalId) {
+			curr = backward.getParent(curr);
+			path.add(g.getLocation(curr));
+		}
+		return path;
+	}
+
+	//Potential of a node for bidirectional A*: half the difference of the
+	//bounds to goal and from start.  The backward search uses its negation.
+	private double getPotential(CompactGraph g, Landmarks alt, int curr, int start, int goal){
+		return (getHeuristic(g, alt, WeightProfile.CAR, curr, goal)
+				- getHeuristic(g, alt, WeightProfile.CAR, start, curr)) / 2;
+	}
+
+	//Bidirectional search method.  Returns the edge {u, w} on which the two
+	//searches meet on a shortest path, or null if there is no path.
+	private int[] bidirectionalSearch(SearchContext forward, SearchContext backward,
+			int start, int goal, boolean guided, Consumer<GeographicPoint> nodeSearched) {
+		CompactGraph g = forward.getGraph();
+		NodeQueue forwardQueue = forward.getQueue();
+		NodeQueue backwardQueue = backward.getQueue();
+		Landmarks alt = landmarks;
+		if (alt != null && !alt.isFor(g)) {
+			alt = null;
+		}
+
+		forward.setDistance(start, 0.0, -1);
+		forwardQueue.insertOrDecrease(start, guided ? getPotential(g, alt, start, start, goal) : 0);
+		backward.setDistance(goal, 0.0, -1);
+		backwardQueue.insertOrDecrease(goal, guided ? -getPotential(g, alt, goal, start, goal) : 0);
+
+		//Length of the best path seen so far and the edge it crosses over
+		double best = start == goal ? 0.0 : Double.POSITIVE_INFINITY;
+		int[] meeting = start == goal ? new int[] {start, start} : null;
+
+		while (!forwardQueue.isEmpty() && !backwardQueue.isEmpty()) {
+			//Stop once no path through an unsettled node can beat the best.
+			//With the average potentials the two keys add up to a lower
+			//bound on the length of any such path.
+			double forwardKey = forwardQueue.peekKey();
+			double backwardKey = backwardQueue.peekKey();
+			if (forwardKey + backwardKey >= best) {
+				break;
+			}
+
+			//Expand the direction with the smaller key
+			if (forwardKey <= backwardKey) {
+				int curr = forwardQueue.poll();
+				forward.settle(curr);
+
+				// hook for visualization
+				nodeSearched.accept(g.getLocation(curr));
+
+				for (int e = g.firstOut[curr]; e < g.firstOut[curr + 1]; e++) {
+					int neighbor = g.head[e];
+					double dist = forward.getDistance(curr) + g.duration[e];
+					if (!forward.isSettled(neighbor) && dist < forward.getDistance(neighbor)) {
+						forward.setDistance(neighbor, dist, curr);
+						double potential = guided ? getPotential(g, alt, neighbor, start, goal) : 0;
+						forwardQueue.insertOrDecrease(neighbor, dist + potential);
+					}
+					//Does this edge join the two searches on a shorter path?
+					if (dist + backward.getDistance(neighbor) < best) {
+						best = dist + backward.getDistance(neighbor);
+						meeting = new int[] {curr, neighbor};
+					}
+				}
+			}
+			else {
+				int curr = backwardQueue.poll();
+				backward.settle(curr);
+
+				// hook for visualization
+				nodeSearched.accept(g.getLocation(curr));
+
+				for (int i = g.firstIn[curr]; i < g.firstIn[curr + 1]; i++) {
+					int e = g.inEdge[i];
+					int neighbor = g.tail[e];
+					double dist = backward.getDistance(curr) + g.duration[e];
+					if (!backward.isSettled(neighbor) && dist < backward.getDistance(neighbor)) {
+						backward.setDistance(neighbor, dist, curr);
+						double potential = guided ? -getPotential(g, alt, neighbor, start, goal) : 0;
+						backwardQueue.insertOrDecrease(neighbor, dist + potential);
+					}
+					if (dist + forward.getDistance(neighbor) < best) {
+						best = dist + forward.getDistance(neighbor);
+						meeting = new int[] {neighbor, curr};
+					}
+				}
+			}
+		}
+		return meeting;
+	}
+
+	/** Find the fastest path from start to goal using Dijkstra's algorithm
+	 * over edges rather than intersections, so that each turn can be
+	 * charged for or forbidden by the TurnCosts set on this graph.
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @return The list of intersections that form the shortest path from
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> turnAwareDijkstra(GeographicPoint start, GeographicPoint goal) {
+        Consumer<GeographicPoint> temp = (x) -> {};
+        return turnAwareDijkstra(start, goal, temp);
+	}
+
+	/** Find the fastest path from start to goal using Dijkstra's algorithm
+	 * over edges, charging for turns
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param nodeSearched A hook for visualization.  See assignment instructions for how to use it.
+	 * @return The list of intersections that form the shortest path from
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> turnAwareDijkstra(GeographicPoint start,
+			GeographicPoint goal, Consumer<GeographicPoint> nodeSearched) {
+		return turnAware(start, goal, nodeSearched, false);
+	}
+
+	/** Find the fastest path from start to goal using A* search over edges,
+	 * charging for turns
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @return The list of intersections that form the shortest path from
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> turnAwareAStar(GeographicPoint start, GeographicPoint goal) {
+        Consumer<GeographicPoint> temp = (x) -> {};
+        return turnAwareAStar(start, goal, temp);
+	}
+
+	/** Find the fastest path from start to goal using A* search over edges,
+	 * charging for turns
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param nodeSearched A hook for visualization.  See assignment instructions for how to use it.
+	 * @return The list of intersections that form the shortest path from
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> turnAwareAStar(GeographicPoint start,
+			GeographicPoint goal, Consumer<GeographicPoint> nodeSearched) {
+		return turnAware(start, goal, nodeSearched, true);
+	}
+
+	private List<GeographicPoint> turnAware(GeographicPoint start, GeographicPoint goal,
+			Consumer<GeographicPoint> nodeSearched, boolean guided)
+	{
+		if (start == null || goal == null) {
+			System.out.println("Start or goal node is null!  No path exists.");
+			return null;
+		}
+
+		SearchContext context = getSearchContext();
+		int startId = getId(start);
+		int goalId = getId(goal);
+		if (startId < 0 || goalId < 0 || !context.getGraph().mayReach(startId, goalId)) {
+			System.out.println("No path exists");
+			return null;
+		}
+		if (startId == goalId) {
+			List<GeographicPoint> path = new LinkedList<GeographicPoint>();
+			path.add(start);
+			return path;
+		}
+
+		SearchContext edgeContext = context.getEdgeContext();
+		int last = turnAwareSearch(edgeContext, startId, goalId, nodeSearched, guided);
+		if (last < 0) {
+			System.out.println("No path exists");
+			return null;
+		}
+
+		//Follow the parent edges back from the edge into the goal
+		CompactGraph g = context.getGraph();
+		LinkedList<GeographicPoint> path = new LinkedList<GeographicPoint>();
+		for (int e = last; e >= 0; e = edgeContext.getParent(e)) {
+			path.addFirst(g.getLocation(g.head[e]));
+		}
+		path.addFirst(start);
+		return path;
+	}
+
+	//Dijkstra or A* in which the state is the edge just driven along, so
+	//that the cost of moving on can depend on the turn.  Returns the edge
+	//by which the goal is reached, or -1 if it cannot be.
+	private int turnAwareSearch(SearchContext context, int start, int goal,
+			Consumer<GeographicPoint> nodeSearched, boolean guided) {
+		CompactGraph g = context.getGraph();
+		NodeQueue toExplore = context.getQueue();
+		TurnCosts turns = turnCosts;
+		if (turns == null || !turns.isFor(g)) {
+			turns = new TurnCosts(g);
+		}
+		Landmarks alt = guided ? landmarks : null;
+		if (alt != null && !alt.isFor(g)) {
+			alt = null;
+		}
+
+		//No turn is made leaving the start
+		for (int e = g.firstOut[start]; e < g.firstOut[start + 1]; e++) {
+			if (g.duration[e] < context.getDistance(e)) {
+				context.setDistance(e, g.duration[e], -1);
+				toExplore.insertOrDecrease(e, g.duration[e]
+						+ (guided ? getHeuristic(g, alt, WeightProfile.CAR, g.head[e], goal) : 0));
+			}
+		}
+
+		while (!toExplore.isEmpty()) {
+			int curr = toExplore.poll();
+			context.settle(curr);
+			int node = g.head[curr];
+
+			// hook for visualization
+			nodeSearched.accept(g.getLocation(node));
+
+			if (node == goal) {
+				System.out.println((guided ? "Turn-aware aStar" : "Turn-aware Dijsktra")
+						+ " visited:" + context.getSettledCount());
+				return curr;
+			}
+			for (int e = g.firstOut[node]; e < g.firstOut[node + 1]; e++) {
+				if (!context.isSettled(e)) {
+					double priority = context.getDistance(curr) + turns.cost(curr, e) + g.duration[e];
+					//Forbidden turns have infinite cost and are never queued
+					if (priority < context.getDistance(e)) {
+						context.setDistance(e, priority, curr);
+						toExplore.insertOrDecrease(e, priority
+								+ (guided ? getHeuristic(g, alt, WeightProfile.CAR, g.head[e], goal) : 0));
+					}
+				}
+			}
+		}
+		return -1;
+	}
+
+	/** Find the earliest arriving path from start to goal, leaving at a
+	 * given time, using Dijkstra's algorithm over the travel times of the
+	 * TrafficProfiles set on this graph
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param departure The time of leaving start, in hours since midnight
+	 * @return The list of intersections that form the fastest path from
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> timeDependentDijkstra(GeographicPoint start,
+			GeographicPoint goal, double departure) {
+        Consumer<GeographicPoint> temp = (x) -> {};
+        return timeDependentDijkstra(start, goal, departure, temp);
+	}
+
+	/** Find the earliest arriving path from start to goal, leaving at a
+	 * given time, using Dijkstra's algorithm
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param departure The time of leaving start, in hours since midnight
+	 * @param nodeSearched A hook for visualization.  See assignment instructions for how to use it.
+	 * @return The list of intersections that form the fastest path from
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> timeDependentDijkstra(GeographicPoint start,
+			GeographicPoint goal, double departure, Consumer<GeographicPoint> nodeSearched) {
+		return timeDependent(start, goal, departure, nodeSearched, false);
+	}
+
+	/** Find the earliest arriving path from start to goal, leaving at a
+	 * given time, using A* search
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param departure The time of leaving start, in hours since midnight
+	 * @return The list of intersections that form the fastest path from
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> timeDependentAStar(GeographicPoint start,
+			GeographicPoint goal, double departure) {
+        Consumer<GeographicPoint> temp = (x) -> {};
+        return timeDependentAStar(start, goal, departure, temp);
+	}
+
+	/** Find the earliest arriving path from start to goal, leaving at a
+	 * given time, using A* search.  The free-flow heuristic is scaled by
+	 * the lightest congestion anywhere, so it stays a lower bound.
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param departure The time of leaving start, in hours since midnight
+	 * @param nodeSearched A hook for visualization.  See assignment instructions for how to use it.
+	 * @return The list of intersections that form the fastest path from
+	 *   start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> timeDependentAStar(GeographicPoint start,
+			GeographicPoint goal, double departure, Consumer<GeographicPoint> nodeSearched) {
+		return timeDependent(start, goal, departure, nodeSearched, true);
+	}
+
+	/**
+	 * Get the time taken to follow a path, leaving at a given time.  Where
+	 * there are parallel roads between two intersections the one arriving
+	 * first is taken.
+	 * @param path The intersections on the path, as returned by the searches
+	 * @param departure The time of leaving the first intersection, in hours
+	 *   since midnight
+	 * @return the travel time in hours under the TrafficProfiles set on
+	 *   this graph
+	 * @throws IllegalArgumentException if a location is not a vertex or two
+	 *   consecutive ones are not joined by an edge
+	 */
+	public double getTravelTime(List<GeographicPoint> path, double departure)
+	{
+		CompactGraph g = compile();
+		TrafficProfiles profiles = getTraffic(g);
+		int[] ids = toIds(path);
+		double time = departure;
+		for (int i = 0; i + 1 < ids.length; i++) {
+			double best = Double.POSITIVE_INFINITY;
+			for (int e = g.firstOut[ids[i]]; e < g.firstOut[ids[i] + 1]; e++) {
+				if (g.head[e] == ids[i + 1]) {
+					best = Math.min(best, profiles.travelTime(e, time));
+				}
+			}
+			if (best == Double.POSITIVE_INFINITY) {
+				throw new IllegalArgumentException("No edge from " + path.get(i) + " to " + path.get(i + 1));
+			}
+			time += best;
+		}
+		return time - departure;
+	}
+
+	private TrafficProfiles getTraffic(CompactGraph g)
+	{
+		TrafficProfiles profiles = traffic;
+		if (profiles == null || !profiles.isFor(g)) {
+			profiles = new TrafficProfiles(g);
+		}
+		return profiles;
+	}
+
+	private List<GeographicPoint> timeDependent(GeographicPoint start, GeographicPoint goal,
+			double departure, Consumer<GeographicPoint> nodeSearched, boolean guided)
+	{
+		if (start == null || goal == null) {
+			System.out.println("Start or goal node is null!  No path exists.");
+			return null;
+		}
+
+		SearchContext context = getSearchContext();
+		int startId = getId(start);
+		int goalId = getId(goal);
+		if (startId < 0 || goalId < 0 || !context.getGraph().mayReach(startId, goalId)) {
+			System.out.println("No path exists");
+			return null;
+		}
+
+		boolean found = timeDependentSearch(context, startId, goalId, departure, nodeSearched, guided);
+		if (!found) {
+			System.out.println("No path exists");
+			return null;
+		}
+		return constructPath(context, startId, goalId);
+	}
+
+	//Dijkstra or A* in which the cost of an edge is its travel time when it
+	//is reached.  Distances are the time since departure, so the queue keys
+	//start from 0 as in the other searches.  Since every edge is FIFO,
+	//arriving at a node earlier never makes the rest of the way slower.
+	private boolean timeDependentSearch(SearchContext context, int start, int goal,
+			double departure, Consumer<GeographicPoint> nodeSearched, boolean guided) {
+		CompactGraph g = context.getGraph();
+		NodeQueue toExplore = context.getQueue();
+		TrafficProfiles profiles = getTraffic(g);
+		Landmarks alt = guided ? landmarks : null;
+		if (alt != null && !alt.isFor(g)) {
+			alt = null;
+		}
+		double scale = profiles.getMinFactor();
+
+		context.setDistance(start, 0.0, -1);
+		toExplore.insertOrDecrease(start, 0.0);
+
+		while (!toExplore.isEmpty()) {
+			int curr = toExplore.poll();
+			context.settle(curr);
+
+			// hook for visualization
+			nodeSearched.accept(g.getLocation(curr));
+
+			if (curr == goal) {
+				System.out.println((guided ? "Time-dependent aStar" : "Time-dependent Dijsktra")
+						+ " visited:" + context.getSettledCount());
+				return true;
+			}
+			double elapsed = context.getDistance(curr);
+			for (int e = g.firstOut[curr]; e < g.firstOut[curr + 1]; e++) {
+				int neighbor = g.head[e];
+				if (!context.isSettled(neighbor)) {
+					double priority = elapsed + profiles.travelTime(e, departure + elapsed);
+					if (priority < context.getDistance(neighbor)) {
+						context.setDistance(neighbor, priority, curr);
+						toExplore.insertOrDecrease(neighbor, priority
+								+ (guided ? scale * getHeuristic(g, alt, WeightProfile.CAR, neighbor, goal) : 0));
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/** Find up to k meaningfully different fast routes from start to goal,
+	 * within the default time budget
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param k The most routes to return
+	 * @return The routes, fastest first, or an empty list if there is no path
+	 */
+	public List<AlternativeRoute> alternatives(GeographicPoint start, GeographicPoint goal, int k)
+	{
+		return alternatives(start, goal, k, ALTERNATIVES_MILLIS);
+	}
+
+	/** Find up to k meaningfully different fast routes from start to goal
+	 * with the via-node plateau method.
+	 *
+	 * A full shortest path tree is grown from start and a reverse one into
+	 * goal.  Each node v reached by both gives a via route: the tree path
+	 * from start to v, then the tree path from v to goal.  Where the two
+	 * trees follow the same roads around v they form a plateau, and a via
+	 * route with a long plateau is a shortest path along most of its length,
+	 * so it has no needless detours.  Via routes are taken fastest first if
+	 * they are at most MAX_STRETCH times slower than the fastest route,
+	 * share at most MAX_OVERLAP of their time with each route already
+	 * taken, and have a plateau of at least MIN_PLATEAU of their detour.
+	 *
+	 * The fastest route is always found.  The rest of the work stops once
+	 * the time budget is spent, returning the routes found so far.
+	 *
+	 * @param start The starting location
+	 * @param goal The goal location
+	 * @param k The most routes to return
+	 * @param millis The time budget in ms
+	 * @return The routes, fastest first, or an empty list if there is no path
+	 */
+	public List<AlternativeRoute> alternatives(GeographicPoint start, GeographicPoint goal,
+			int k, long millis)
+	{
+		List<AlternativeRoute> routes = new ArrayList<AlternativeRoute>();
+		if (start == null || goal == null || k <= 0) {
+			return routes;
+		}
+		SearchContext forward = getSearchContext();
+		int startId = getId(start);
+		int goalId = getId(goal);
+		if (startId < 0 || goalId < 0 || !forward.getGraph().mayReach(startId, goalId)) {
+			return routes;
+		}
+		long deadline = System.nanoTime() + millis * 1000000;
+		CompactGraph g = forward.getGraph();
+		SearchContext backward = forward.getReverse();
+
+		//Grow the forward tree until the goal is settled, then both trees
+		//as far as any route within the stretch bound can reach
+		forward.setDistance(startId, 0.0, -1);
+		forward.getQueue().insertOrDecrease(startId, 0.0);
+		growTree(forward, false, goalId, Double.POSITIVE_INFINITY, 0);
+		if (!forward.isSettled(goalId)) {
+			return routes;
+		}
+		double bound = MAX_STRETCH * forward.getDistance(goalId);
+		growTree(forward, false, -1, bound, deadline);
+		backward.setDistance(goalId, 0.0, -1);
+		backward.getQueue().insertOrDecrease(goalId, 0.0);
+		growTree(backward, true, -1, bound, deadline);
+
+		//Candidate via nodes, cheapest route first.  The goal gives the
+		//fastest route, since its backward path is just itself.
+		List<Integer> candidates = new ArrayList<Integer>();
+		for (int v = 0; v < g.getNumNodes(); v++) {
+			if (forward.isSettled(v) && backward.isSettled(v)
+					&& forward.getDistance(v) + backward.getDistance(v) <= bound) {
+				candidates.add(v);
+			}
+		}
+		candidates.sort((a, b) -> Double.compare(forward.getDistance(a) + backward.getDistance(a),
+				forward.getDistance(b) + backward.getDistance(b)));
+		candidates.remove(Integer.valueOf(goalId));
+		candidates.add(0, goalId);
+
+		//Nodes on a plateau or route already considered, and the hops of
+		//each route taken
+		boolean[] seen = new boolean[g.getNumNodes()];
+		int[] onRoute = new int[g.getNumNodes()];
+		List<Set<Long>> taken = new ArrayList<Set<Long>>();
+		for (int i = 0; i < candidates.size() && routes.size() < k; i++) {
+			if (i > 0 && System.nanoTime() - deadline > 0) {
+				break;
+			}
+			int via = candidates.get(i);
+			if (seen[via]) {
+				continue;
+			}
+
+			//Walk the plateau through via in both directions
+			seen[via] = true;
+			int first = via;
+			int last = via;
+			for (int w = forward.getParent(first); w >= 0 && backward.isSettled(w)
+					&& backward.getParent(w) == first; w = forward.getParent(first)) {
+				first = w;
+				seen[w] = true;
+			}
+			for (int w = backward.getParent(last); w >= 0 && forward.isSettled(w)
+					&& forward.getParent(w) == last; w = backward.getParent(last)) {
+				last = w;
+				seen[w] = true;
+			}
+			double plateau = forward.getDistance(last) - forward.getDistance(first);
+
+			//The via route, skipped if the two tree paths cross
+			LinkedList<Integer> route = new LinkedList<Integer>();
+			boolean simple = true;
+			for (int v = via; v >= 0; v = forward.getParent(v)) {
+				simple &= onRoute[v] != i + 1;
+				onRoute[v] = i + 1;
+				route.addFirst(v);
+			}
+			for (int v = backward.getParent(via); v >= 0; v = backward.getParent(v)) {
+				simple &= onRoute[v] != i + 1;
+				onRoute[v] = i + 1;
+				route.addLast(v);
+			}
+			if (!simple) {
+				continue;
+			}
+
+			//Time of the route, and of it spent on each earlier route
+			Set<Long> hops = new HashSet<Long>();
+			double duration = 0;
+			double length = 0;
+			double[] shared = new double[taken.size()];
+			int prev = -1;
+			for (int v : route) {
+				if (prev >= 0) {
+					int e = fastestEdge(g, prev, v);
+					long hop = ((long) prev << 32) | v;
+					hops.add(hop);
+					duration += g.duration[e];
+					length += g.length[e];
+					for (int j = 0; j < taken.size(); j++) {
+						if (taken.get(j).contains(hop)) {
+							shared[j] += g.duration[e];
+						}
+					}
+				}
+				prev = v;
+			}
+			double overlap = 0;
+			for (double time : shared) {
+				overlap = Math.max(overlap, time / duration);
+			}
+			double detour = duration - (taken.isEmpty() ? duration : shared[0]);
+			if (overlap > MAX_OVERLAP || plateau < MIN_PLATEAU * detour) {
+				continue;
+			}
+
+			List<GeographicPoint> path = new ArrayList<GeographicPoint>(route.size());
+			for (int v : route) {
+				path.add(g.getLocation(v));
+				seen[v] = true;
+			}
+			routes.add(new AlternativeRoute(path, duration, length, overlap));
+			taken.add(hops);
+		}
+		System.out.println("Alternatives visited:" + forward.getSettledCount());
+		return routes;
+	}
+
+	//Dijkstra from whatever is in the queue, over outgoing edges or, if
+	//reverse, incoming ones.  Stops once target is settled, the next key is
+	//past bound, or, if deadline is not 0, System.nanoTime() passes deadline.
+	private void growTree(SearchContext context, boolean reverse, int target,
+			double bound, long deadline) {
+		CompactGraph g = context.getGraph();
+		NodeQueue toExplore = context.getQueue();
+		int settled = 0;
+		while (!toExplore.isEmpty() && toExplore.peekKey() <= bound) {
+			if (deadline != 0 && (++settled & 255) == 0 && System.nanoTime() - deadline > 0) {
+				return;
+			}
+			int curr = toExplore.poll();
+			context.settle(curr);
+			if (curr == target) {
+				return;
+			}
+			int end = reverse ? g.firstIn[curr + 1] : g.firstOut[curr + 1];
+			for (int i = reverse ? g.firstIn[curr] : g.firstOut[curr]; i < end; i++) {
+				int e = reverse ? g.inEdge[i] : i;
+				int neighbor = reverse ? g.tail[e] : g.head[e];
+				if (!context.isSettled(neighbor)) {
+					double priority = context.getDistance(curr) + g.duration[e];
+					if (priority < context.getDistance(neighbor)) {
+						context.setDistance(neighbor, priority, curr);
+						toExplore.insertOrDecrease(neighbor, priority);
+					}
+				}
+			}
+		}
+	}
+
+	//The fastest of the edges from u to w, or -1 if there are none
+	private static int fastestEdge(CompactGraph g, int u, int w)
+	{
+		return cheapestEdge(g, g.duration, u, w);
+	}
+
+	//The edge from u to w of least cost, or -1 if there are none
+	private static int cheapestEdge(CompactGraph g, double[] cost, int u, int w)
+	{
+		int best = -1;
+		for (int e = g.firstOut[u]; e < g.firstOut[u + 1]; e++) {
+			if (g.head[e] == w && (best < 0 || cost[e] < cost[best])) {
+				best = e;
+			}
+		}
+		return best;
+	}
+
+	/** Find the travel time between every source and every target
+	 *
+	 * @param sources The start locations, one row of the result each
+	 * @param targets The goal locations, one column of the result each
+	 * @return The matrix of travel times in hours along the fastest paths,
+	 *   with Double.POSITIVE_INFINITY where there is no path
+	 */
+	public double[][] travelMatrix(List<GeographicPoint> sources, List<GeographicPoint> targets)
+	{
+		return travelMatrix(sources, targets, WeightProfile.CAR);
+	}
+
+	/** Find the shortest path cost between every source and every target.
+	 *
+	 * Each source gets one Dijkstra search, which stops as soon as every
+	 * target has been settled, and the sources are searched in parallel.
+	 *
+	 * @param sources The start locations, one row of the result each
+	 * @param targets The goal locations, one column of the result each
+	 * @param profile The cost of each road
+	 * @return The matrix of path costs, with Double.POSITIVE_INFINITY where
+	 *   there is no path
+	 */
+	public double[][] travelMatrix(List<GeographicPoint> sources, List<GeographicPoint> targets,
+			WeightProfile profile)
+	{
+		return travelMatrix(sources, targets, profile, null);
+	}
+
+	/** Find the shortest path cost between every source and every target,
+	 * and the paths themselves.
+	 *
+	 * @param sources The start locations, one row of the result each
+	 * @param targets The goal locations, one column of the result each
+	 * @param profile The cost of each road
+	 * @param paths If not null, receives in paths[row][col] the node ids of
+	 *   the path from each source to each target, or null where there is
+	 *   no path.  It must have one row of targets.size() per source.
+	 * @return The matrix of path costs, with Double.POSITIVE_INFINITY where
+	 *   there is no path
+	 */
+	double[][] travelMatrix(List<GeographicPoint> sources, List<GeographicPoint> targets,
+			WeightProfile profile, int[][][] paths)
+	{
+		CompactGraph g = compile();
+		int[] sourceIds = toIds(sources);
+		int[] targetIds = toIds(targets);
+
+		//Columns of each target node, as a linked list through nextColumn
+		//since the same location may be asked for more than once
+		int[] firstColumn = new int[g.getNumNodes()];
+		Arrays.fill(firstColumn, -1);
+		int[] nextColumn = new int[targetIds.length];
+		int distinctTargets = 0;
+		for (int col = targetIds.length - 1; col >= 0; col--) {
+			if (firstColumn[targetIds[col]] < 0) {
+				distinctTargets++;
+			}
+			nextColumn[col] = firstColumn[targetIds[col]];
+			firstColumn[targetIds[col]] = col;
+		}
+
+		double[] cost = g.getWeights(profile);
+		double[][] matrix = new double[sourceIds.length][];
+		int remaining = distinctTargets;
+		IntStream.range(0, sourceIds.length).parallel().forEach(row -> {
+			matrix[row] = oneToMany(getSearchContext(), sourceIds[row], cost,
+					firstColumn, nextColumn, targetIds.length, remaining,
+					paths == null ? null : paths[row]);
+		});
+		return matrix;
+	}
+
+	private int[] toIds(List<GeographicPoint> locations)
+	{
+		int[] ids = new int[locations.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = getId(locations.get(i));
+			if (ids[i] < 0) {
+				throw new IllegalArgumentException("Not a vertex: " + locations.get(i));
+			}
+		}
+		return ids;
+	}
+
+	//Dijkstra from start over the given edge costs, until the targets
+	//indexed by firstColumn/nextColumn have all been settled, keeping the
+	//path to each in paths if it is not null
+	private double[] oneToMany(SearchContext context, int start, double[] cost,
+			int[] firstColumn, int[] nextColumn, int columns, int remaining, int[][] paths) {
+		CompactGraph g = context.getGraph();
+		NodeQueue toExplore = context.getQueue();
+		double[] row = new double[columns];
+		Arrays.fill(row, Double.POSITIVE_INFINITY);
+
+		context.setDistance(start, 0.0, -1);
+		toExplore.insertOrDecrease(start, 0.0);
+
+		while (!toExplore.isEmpty() && remaining > 0) {
+			int curr = toExplore.poll();
+			context.settle(curr);
+			if (firstColumn[curr] >= 0) {
+				//Reached a target
+				int[] path = paths == null ? null : pathIds(context, start, curr);
+				for (int col = firstColumn[curr]; col >= 0; col = nextColumn[col]) {
+					row[col] = context.getDistance(curr);
+					if (paths != null) {
+						paths[col] = path;
+					}
+				}
+				remaining--;
+			}
+			for (int e = g.firstOut[curr]; e < g.firstOut[curr + 1]; e++) {
+				int neighbor = g.head[e];
+				if (!context.isSettled(neighbor)) {
+					double priority = context.getDistance(curr) + cost[e];
+					if (priority < context.getDistance(neighbor)) {
+						context.setDistance(neighbor, priority, curr);
+						toExplore.insertOrDecrease(neighbor, priority);
+					}
+				}
+			}
+		}
+		return row;
+	}
+
+
+	//The node ids of the path from start to goal in the search tree of context
+	private static int[] pathIds(SearchContext context, int start, int goal)
+	{
+		int hops = 0;
+		for (int curr = goal; curr != start; curr = context.getParent(curr)) {
+			hops++;
+		}
+		int[] path = new int[hops + 1];
+		for (int curr = goal, i = hops; i >= 0; curr = context.getParent(curr), i--) {
+			path[i] = curr;
+		}
+		return path;
+	}
+
+	/** Find the intersections reachable from a start within a travel time
+	 *
+	 * @param start The starting location
+	 * @param budget The travel time budget, in the units of
+	 *   MapEdge.getRoadDuration (hours)
+	 * @return The reached intersections with their arrival times, or null
+	 *   if start is not in the graph
+	 */
+	public Isochrone isochrone(GeographicPoint start, double budget)
+	{
+		List<Isochrone> found = isochrones(start, budget);
+		return found == null ? null : found.get(0);
+	}
+
+	/** Find the intersections reachable from a start within each of several
+	 * travel times, with one Dijkstra search bounded by the largest of them.
+	 *
+	 * @param start The starting location
+	 * @param budgets The travel time budgets, in the units of
+	 *   MapEdge.getRoadDuration (hours)
+	 * @return One Isochrone per budget, in the order the budgets were
+	 *   given, or null if start is not in the graph
+	 */
+	public List<Isochrone> isochrones(GeographicPoint start, double... budgets)
+	{
+		int startId = start == null ? -1 : getId(start);
+		if (startId < 0) {
+			System.out.println("Start node is not in the graph");
+			return null;
+		}
+		double limit = 0;
+		for (double budget : budgets) {
+			limit = Math.max(limit, budget);
+		}
+
+		SearchContext context = getSearchContext();
+		CompactGraph g = context.getGraph();
+		NodeQueue toExplore = context.getQueue();
+		List<LinkedHashMap<GeographicPoint,Double>> arrivals =
+				new ArrayList<LinkedHashMap<GeographicPoint,Double>>();
+		for (int i = 0; i < budgets.length; i++) {
+			arrivals.add(new LinkedHashMap<GeographicPoint,Double>());
+		}
+
+		context.setDistance(startId, 0.0, -1);
+		toExplore.insertOrDecrease(startId, 0.0);
+		while (!toExplore.isEmpty()) {
+			int curr = toExplore.poll();
+			double time = context.getDistance(curr);
+			context.settle(curr);
+			for (int i = 0; i < budgets.length; i++) {
+				if (time <= budgets[i]) {
+					arrivals.get(i).put(g.getLocation(curr), time);
+				}
+			}
+			for (int e = g.firstOut[curr]; e < g.firstOut[curr + 1]; e++) {
+				int neighbor = g.head[e];
+				if (!context.isSettled(neighbor)) {
+					double priority = time + g.duration[e];
+					//Nodes beyond the largest budget are never queued
+					if (priority <= limit && priority < context.getDistance(neighbor)) {
+						context.setDistance(neighbor, priority, curr);
+						toExplore.insertOrDecrease(neighbor, priority);
+					}
+				}
+			}
+		}
+
+		List<Isochrone> isochrones = new ArrayList<Isochrone>(budgets.length);
+		for (int i = 0; i < budgets.length; i++) {
+			isochrones.add(new Isochrone(start, budgets[i], arrivals.get(i)));
+		}
+		return isochrones;
+	}
+
+
 	public static void main(String[] args)
 	{
 		System.out.print("Making a new map...");
@@ -1,6 +1,6 @@
 package roadgraph;
 
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -8,18 +8,39 @@ import geography.GeographicPoint;
 
 public class MapNode {
 	private GeographicPoint location;//Location of the vertex
-	private HashSet<MapEdge> edges;//List of edges connected to the vertices
-
-	//Priority Distance of node for Dijsktra 
-	private double priorityDistance;
-	
-	//Priority Distance of node for A star
-	private double priorityFuncDistance;
+	private LinkedHashSet<MapEdge> edges;//List of edges connected to the vertices
+	private LinkedHashSet<MapEdge> inEdges;//List of edges that end at the vertex
+	private int id;//Dense id of the vertex, used to index CompactGraph arrays
 	
 	//Constructor creates a vertex and initializes list of edges
 	public MapNode(GeographicPoint loc){
+		this(loc, -1);
+	}
+	
+	//Constructor creates a vertex with a dense id
+	MapNode(GeographicPoint loc, int id){
 		this.location = loc;
-		edges = new HashSet<MapEdge>();
+		this.id = id;
+		edges = new LinkedHashSet<MapEdge>();
+		inEdges = new LinkedHashSet<MapEdge>();
+	}
+	
+	/**
+	 * Get the dense id of this node
+	 * @return the id of this node in its MapGraph
+	 */
+	int getId()
+	{
+		return id;
+	}
+
+	/**
+	 * Give this node a new dense id, after nodes before it were removed
+	 * @param id the new id
+	 */
+	void setId(int id)
+	{
+		this.id = id;
 	}
 	
 	//Calls MapEdge class function to add edge to the vertex
@@ -27,6 +48,34 @@ public class MapNode {
 		edges.add(edge);
 	}
 	
+	//Records an edge that ends at this vertex
+	public void addIncomingEdge(MapEdge edge){
+		inEdges.add(edge);
+	}
+
+	//Removes an edge from this vertex
+	void removeMapEdge(MapEdge edge){
+		edges.remove(edge);
+	}
+
+	//Forgets an edge that ended at this vertex
+	void removeIncomingEdge(MapEdge edge){
+		inEdges.remove(edge);
+	}
+	
+	//Lets go of the edges, once the compiled graph holds them; until
+	//clearEdges is called only the location and id may be used
+	void releaseEdges(){
+		edges = null;
+		inEdges = null;
+	}
+	
+	//Starts the vertex over with no edges
+	void clearEdges(){
+		edges = new LinkedHashSet<MapEdge>();
+		inEdges = new LinkedHashSet<MapEdge>();
+	}
+	
 	//Returns number of edges for a vertex
 	public int getNumEdges(){
 		return edges.size();
@@ -34,7 +83,7 @@ public class MapNode {
 	
 	//Returns neighboring vertices of the specified vertex
 	public Set<MapNode> getNeighbors(){
-		Set<MapNode> neighbors = new HashSet<MapNode>();
+		Set<MapNode> neighbors = new LinkedHashSet<MapNode>();
 		for (MapEdge edge : edges) {
 			neighbors.add(edge.getOtherNode(this));
 		}
@@ -59,6 +108,15 @@ public class MapNode {
 		return edges;
 	}
 	
+	/**
+	 * return the edges into this node
+	 * @return a set containing all the edges that end at this node.
+	 */
+	Set<MapEdge> getIncomingEdges()
+	{
+		return inEdges;
+	}
+	
 	/** Returns whether two nodes are equal.
 	 * Nodes are considered equal if their locations are the same, 
 	 * even if their street list is different.
@@ -112,24 +170,4 @@ public class MapNode {
 		return toReturn;
 	}
 
-	// get node priority for Dijsktra or A star
-	public double getPriorityDistance() {
-		return this.priorityDistance;
-	}
-	
-	// set node priority for Dijsktra or A star
-	public void setPriorityDistance(double priorityDistance) {
-	    this.priorityDistance = priorityDistance;
-	}
-
-	// get node priority for A star
-	public double getPriorityFuncDistance() {
-		return this.priorityFuncDistance;
-	}
-	
-	// set node priority for A star
-	public void setPriorityFuncDistance(double priorityFuncDistance) {
-	    this.priorityFuncDistance = priorityFuncDistance;
-	}
-
 }
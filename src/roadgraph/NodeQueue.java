@@ -0,0 +1,46 @@
+package roadgraph;
+
+/**
+ * A min-priority queue of node ids for the searches over a CompactGraph.
+ * Each node is in the queue at most once; queueing a node that is already
+ * there lowers its key if the new key is smaller.
+ */
+public interface NodeQueue {
+
+	/**
+	 * Whether the queue is empty
+	 * @return true if there are no nodes in the queue
+	 */
+	boolean isEmpty();
+
+	/**
+	 * Get the number of nodes in the queue
+	 * @return the number of nodes
+	 */
+	int size();
+
+	/**
+	 * Add a node to the queue, or lower its key if it is already queued
+	 * and key is smaller than its current key.
+	 * @param node The node id
+	 * @param key The priority of the node
+	 */
+	void insertOrDecrease(int node, double key);
+
+	/**
+	 * Get the smallest key in the queue without removing its node
+	 * @return the smallest key
+	 */
+	double peekKey();
+
+	/**
+	 * Remove the node with the smallest key
+	 * @return the id of the removed node
+	 */
+	int poll();
+
+	/**
+	 * Remove every node from the queue
+	 */
+	void clear();
+}
@@ -0,0 +1,480 @@
+package roadgraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import geography.GeographicPoint;
+import util.GraphLoader;
+
+/**
+ * Plans the order in which to visit a set of stops on a MapGraph, such as
+ * the deliveries of one run.
+ *
+ * The travel times between every pair of stops come from one
+ * MapGraph.travelMatrix.  A tour starts at the first stop and either ends
+ * at the last stop visited (open) or returns to the first (closed).  Each
+ * stop may have a time window: arriving before it opens means waiting,
+ * and arriving after it closes is allowed but costs LATE_PENALTY for every
+ * hour late, so a tour that keeps to every window always beats one that
+ * does not.  The window of the first stop bounds the departure and, for a
+ * closed tour, the return.
+ *
+ * optimize builds a tour by cheapest insertion, placing the stops with the
+ * earliest closing windows first, then improves it with 2-opt and Or-opt
+ * moves until neither helps.  bruteForce finds the best tour by branch and
+ * bound, for measuring how close optimize comes on small instances; main
+ * reports both.
+ */
+public class RouteOptimizer {
+	/** The most stops bruteForce will take */
+	public static final int BRUTE_FORCE_STOPS = 10;
+
+	// Cost of each hour late, in hours of travel
+	private static final double LATE_PENALTY = 1000;
+	// Longest run of stops Or-opt moves at once
+	private static final int OR_OPT_STOPS = 3;
+	// Smallest improvement a local search move must make
+	private static final double EPSILON = 1e-12;
+
+	private final MapGraph map;
+
+	/**
+	 * Create an optimizer
+	 * @param map The graph the stops are on
+	 */
+	public RouteOptimizer(MapGraph map)
+	{
+		this.map = map;
+	}
+
+	/**
+	 * Plan a tour with no time windows
+	 * @param stops The stops, starting with the one the tour leaves from
+	 * @param closed Whether the tour returns to the first stop
+	 * @return a short tour through every stop
+	 * @throws IllegalArgumentException if there are no stops, a stop is
+	 *   not a vertex, or some stop cannot be reached from another
+	 */
+	public Tour optimize(List<GeographicPoint> stops, boolean closed)
+	{
+		return optimize(stops, null, null, 0, closed);
+	}
+
+	/**
+	 * Plan a tour
+	 * @param stops The stops, starting with the one the tour leaves from
+	 * @param earliest The time each stop's window opens, in hours, or null
+	 *   for no windows
+	 * @param latest The time each stop's window closes, in hours, or null
+	 *   for no windows
+	 * @param departure The time of leaving the first stop, in hours
+	 * @param closed Whether the tour returns to the first stop
+	 * @return a short tour through every stop, keeping to their windows if
+	 *   it can
+	 * @throws IllegalArgumentException if there are no stops, a stop is
+	 *   not a vertex, a window array is the wrong length, or some stop
+	 *   cannot be reached from another
+	 */
+	public Tour optimize(List<GeographicPoint> stops, double[] earliest, double[] latest,
+			double departure, boolean closed)
+	{
+		Problem problem = new Problem(stops, earliest, latest, departure, closed);
+		return problem.toTour(problem.solve());
+	}
+
+	/**
+	 * Find the best tour by trying every order, pruning those that cost
+	 * more part way through than the best complete tour found
+	 * @param stops The stops, starting with the one the tour leaves from
+	 * @param earliest The time each stop's window opens, in hours, or null
+	 *   for no windows
+	 * @param latest The time each stop's window closes, in hours, or null
+	 *   for no windows
+	 * @param departure The time of leaving the first stop, in hours
+	 * @param closed Whether the tour returns to the first stop
+	 * @return the best tour
+	 * @throws IllegalArgumentException as for optimize, or if there are
+	 *   more than BRUTE_FORCE_STOPS stops
+	 */
+	public Tour bruteForce(List<GeographicPoint> stops, double[] earliest, double[] latest,
+			double departure, boolean closed)
+	{
+		Problem problem = new Problem(stops, earliest, latest, departure, closed);
+		return problem.toTour(problem.bruteForce());
+	}
+
+	// One set of stops to plan a tour through
+	private class Problem {
+		private final List<GeographicPoint> stops;
+		private final int n;
+		private final double[][] time;
+		// The node ids of the fastest path between each pair of stops, in
+		// the graph they were found in
+		private final int[][][] legs;
+		private final CompactGraph graph;
+		private final double[] earliest;
+		private final double[] latest;
+		private final double departure;
+		private final boolean closed;
+		// Time each stop of the current tour is visited, and the lateness
+		// up to it, so that moves need only be costed from where they start
+		private final double[] prefixTime;
+		private final double[] prefixLate;
+
+		Problem(List<GeographicPoint> stops, double[] earliest, double[] latest,
+				double departure, boolean closed)
+		{
+			n = stops.size();
+			if (n == 0) {
+				throw new IllegalArgumentException("No stops");
+			}
+			if ((earliest != null && earliest.length != n) || (latest != null && latest.length != n)) {
+				throw new IllegalArgumentException("Need one time window for each of " + n + " stops");
+			}
+			this.stops = new ArrayList<GeographicPoint>(stops);
+			this.earliest = earliest != null ? earliest.clone() : new double[n];
+			if (earliest == null) {
+				Arrays.fill(this.earliest, Double.NEGATIVE_INFINITY);
+			}
+			this.latest = latest != null ? latest.clone() : new double[n];
+			if (latest == null) {
+				Arrays.fill(this.latest, Double.POSITIVE_INFINITY);
+			}
+			this.departure = departure;
+			this.closed = closed;
+			graph = map.compile();
+			legs = new int[n][n][];
+			time = map.travelMatrix(this.stops, this.stops, WeightProfile.CAR, legs);
+			prefixTime = new double[n];
+			prefixLate = new double[n];
+		}
+
+		// The cost of visiting the first count stops of order: the time
+		// taken plus the penalty for lateness.  A complete closed tour
+		// includes the return.  Adding stops never lowers the cost, so the
+		// cost of part of a tour bounds that of the whole.
+		double cost(int[] order, int count, boolean complete)
+		{
+			return cost(order, count, complete, 1, Math.max(departure, earliest[order[0]]), 0,
+					Double.POSITIVE_INFINITY);
+		}
+
+		// The cost of a tour of count stops whose stops before from are
+		// those of the tour prefix() was last called on, or infinity if it
+		// is not below bound
+		double cost(int[] order, int count, int from, double bound)
+		{
+			return cost(order, count, true, from, prefixTime[from - 1], prefixLate[from - 1], bound);
+		}
+
+		// Carry on costing order from stop from, having reached the stop
+		// before it at time t with lateness late, giving up once the cost
+		// so far reaches bound
+		private double cost(int[] order, int count, boolean complete, int from, double t,
+				double late, double bound)
+		{
+			for (int i = from; i < count; i++) {
+				t = Math.max(t + time[order[i - 1]][order[i]], earliest[order[i]]);
+				late += Math.max(0, t - latest[order[i]]);
+				if (t - departure + LATE_PENALTY * late >= bound) {
+					return Double.POSITIVE_INFINITY;
+				}
+			}
+			if (closed && complete && count > 1) {
+				t += time[order[count - 1]][order[0]];
+				late += Math.max(0, t - latest[order[0]]);
+			}
+			double c = t - departure + LATE_PENALTY * late;
+			//Unreachable stops make the time infinite and the lateness NaN
+			return c < bound ? c : Double.POSITIVE_INFINITY;
+		}
+
+		// Record the visiting times of the first count stops of order
+		void prefix(int[] order, int count)
+		{
+			double t = Math.max(departure, earliest[order[0]]);
+			double late = 0;
+			prefixTime[0] = t;
+			prefixLate[0] = late;
+			for (int i = 1; i < count; i++) {
+				t = Math.max(t + time[order[i - 1]][order[i]], earliest[order[i]]);
+				late += Math.max(0, t - latest[order[i]]);
+				prefixTime[i] = t;
+				prefixLate[i] = late;
+			}
+		}
+
+		int[] solve()
+		{
+			int[] order = insertion();
+			boolean improved = true;
+			while (improved) {
+				improved = twoOpt(order) | orOpt(order);
+			}
+			return order;
+		}
+
+		// Insert the stops one at a time where they add least to the cost,
+		// those whose windows close first first
+		int[] insertion()
+		{
+			List<Integer> rest = new ArrayList<Integer>();
+			for (int s = 1; s < n; s++) {
+				rest.add(s);
+			}
+			Collections.sort(rest, (a, b) -> Double.compare(latest[a], latest[b]));
+
+			int[] order = new int[n];
+			int[] candidate = new int[n];
+			int count = 1;
+			for (int s : rest) {
+				prefix(order, count);
+				int bestAt = count;
+				double best = Double.POSITIVE_INFINITY;
+				for (int at = 1; at <= count; at++) {
+					System.arraycopy(order, 0, candidate, 0, at);
+					candidate[at] = s;
+					System.arraycopy(order, at, candidate, at + 1, count - at);
+					double c = cost(candidate, count + 1, at, best);
+					if (c < best) {
+						best = c;
+						bestAt = at;
+					}
+				}
+				System.arraycopy(order, bestAt, order, bestAt + 1, count - bestAt);
+				order[bestAt] = s;
+				count++;
+			}
+			return order;
+		}
+
+		// Reverse each run of stops after the first, keeping the reversals
+		// that lower the cost.  The travel times need not be symmetric, so
+		// every move is costed in full.
+		boolean twoOpt(int[] order)
+		{
+			boolean improved = false;
+			double best = cost(order, n, true);
+			prefix(order, n);
+			for (int i = 1; i < n - 1; i++) {
+				for (int j = i + 1; j < n; j++) {
+					reverse(order, i, j);
+					double c = cost(order, n, i, best - EPSILON);
+					if (c < best - EPSILON) {
+						best = c;
+						improved = true;
+						prefix(order, n);
+					}
+					else {
+						reverse(order, i, j);
+					}
+				}
+			}
+			return improved;
+		}
+
+		// Move each run of up to OR_OPT_STOPS stops to wherever else in
+		// the tour it lowers the cost most
+		boolean orOpt(int[] order)
+		{
+			boolean improved = false;
+			double best = cost(order, n, true);
+			prefix(order, n);
+			int[] rest = new int[n];
+			int[] candidate = new int[n];
+			for (int length = 1; length <= OR_OPT_STOPS; length++) {
+				for (int i = 1; i + length <= n; i++) {
+					//The tour without stops i..i+length-1
+					System.arraycopy(order, 0, rest, 0, i);
+					System.arraycopy(order, i + length, rest, i, n - i - length);
+					int bestAt = -1;
+					for (int at = 1; at <= n - length; at++) {
+						if (at == i) {
+							continue;
+						}
+						System.arraycopy(rest, 0, candidate, 0, at);
+						System.arraycopy(order, i, candidate, at, length);
+						System.arraycopy(rest, at, candidate, at + length, n - length - at);
+						double c = cost(candidate, n, Math.min(i, at), best - EPSILON);
+						if (c < best - EPSILON) {
+							best = c;
+							bestAt = at;
+						}
+					}
+					if (bestAt >= 0) {
+						System.arraycopy(rest, 0, candidate, 0, bestAt);
+						System.arraycopy(order, i, candidate, bestAt, length);
+						System.arraycopy(rest, bestAt, candidate, bestAt + length, n - length - bestAt);
+						System.arraycopy(candidate, 0, order, 0, n);
+						improved = true;
+						prefix(order, n);
+					}
+				}
+			}
+			return improved;
+		}
+
+		int[] bruteForce()
+		{
+			if (n > BRUTE_FORCE_STOPS) {
+				throw new IllegalArgumentException("Too many stops to try every order: " + n);
+			}
+			int[] order = new int[n];
+			for (int s = 0; s < n; s++) {
+				order[s] = s;
+			}
+			int[] best = order.clone();
+			double[] bestCost = {cost(order, n, true)};
+			permute(order, 1, best, bestCost);
+			return best;
+		}
+
+		// Try every order of the stops from position k on
+		private void permute(int[] order, int k, int[] best, double[] bestCost)
+		{
+			if (k == n) {
+				double c = cost(order, n, true);
+				if (c < bestCost[0]) {
+					bestCost[0] = c;
+					System.arraycopy(order, 0, best, 0, n);
+				}
+				return;
+			}
+			for (int i = k; i < n; i++) {
+				swap(order, k, i);
+				if (cost(order, k + 1, false) < bestCost[0]) {
+					permute(order, k + 1, best, bestCost);
+				}
+				swap(order, k, i);
+			}
+		}
+
+		Tour toTour(int[] order)
+		{
+			double[] arrivals = new double[closed && n > 1 ? n + 1 : n];
+			double t = Math.max(departure, earliest[order[0]]);
+			double late = 0;
+			arrivals[0] = t;
+			List<GeographicPoint> visited = new ArrayList<GeographicPoint>();
+			List<GeographicPoint> path = new ArrayList<GeographicPoint>();
+			visited.add(stops.get(order[0]));
+			path.add(stops.get(order[0]));
+			for (int i = 1; i < arrivals.length; i++) {
+				int from = order[i - 1];
+				int to = order[i % n];
+				int[] leg = legs[from][to];
+				if (leg == null) {
+					throw new IllegalArgumentException("No path from " + stops.get(from)
+							+ " to " + stops.get(to));
+				}
+				for (int j = 1; j < leg.length; j++) {
+					path.add(graph.getLocation(leg[j]));
+				}
+				t += time[from][to];
+				if (i < n) {
+					t = Math.max(t, earliest[to]);
+					visited.add(stops.get(to));
+				}
+				late += Math.max(0, t - latest[to]);
+				arrivals[i] = t;
+			}
+			return new Tour(order.clone(), visited, arrivals, t - departure, late, path,
+					map.expandPath(path));
+		}
+	}
+
+	private static void reverse(int[] order, int i, int j)
+	{
+		for (; i < j; i++, j--) {
+			swap(order, i, j);
+		}
+	}
+
+	private static void swap(int[] order, int i, int j)
+	{
+		int s = order[i];
+		order[i] = order[j];
+		order[j] = s;
+	}
+
+	public static void main(String[] args)
+	{
+		MapGraph theMap = new MapGraph();
+		System.out.print("DONE. \nLoading the map...");
+		GraphLoader.loadRoadMap("data/maps/san_diego.map", theMap);
+		System.out.println("DONE.");
+		RouteOptimizer optimizer = new RouteOptimizer(theMap);
+		List<GeographicPoint> vertices = new ArrayList<GeographicPoint>(theMap.getVertices());
+		Random random = new Random(42);
+		int trials = 20;
+
+		//Against the best tours, on instances small enough to try every order
+		for (int n = 5; n <= BRUTE_FORCE_STOPS; n++) {
+			for (boolean windows : new boolean[] {false, true}) {
+				double gap = 0;
+				int optimal = 0;
+				long heuristicNanos = 0;
+				long bruteNanos = 0;
+				for (int trial = 0; trial < trials; trial++) {
+					Problem problem = optimizer.randomProblem(vertices, random, n, windows);
+					long start = System.nanoTime();
+					int[] order = problem.solve();
+					heuristicNanos += System.nanoTime() - start;
+					start = System.nanoTime();
+					int[] best = problem.bruteForce();
+					bruteNanos += System.nanoTime() - start;
+					double found = problem.cost(order, n, true);
+					double least = problem.cost(best, n, true);
+					gap += (found - least) / least / trials;
+					optimal += found <= least + EPSILON ? 1 : 0;
+				}
+				System.out.printf("%2d stops%s: optimize %.2f ms, brute force %.2f ms, "
+						+ "%.2f%% over the best on average, best in %d of %d%n",
+						n, windows ? " with windows" : "", heuristicNanos / 1e6 / trials,
+						bruteNanos / 1e6 / trials, 100 * gap, optimal, trials);
+			}
+		}
+
+		//Running time on delivery-sized runs
+		for (int n : new int[] {25, 50}) {
+			long nanos = 0;
+			for (int trial = 0; trial < trials; trial++) {
+				Problem problem = optimizer.randomProblem(vertices, random, n, true);
+				long start = System.nanoTime();
+				problem.solve();
+				nanos += System.nanoTime() - start;
+			}
+			System.out.printf("%2d stops with windows: optimize %.2f ms%n", n, nanos / 1e6 / trials);
+		}
+	}
+
+	// Random stops among vertices that can all reach each other, with
+	// windows an hour wide opening in the first two hours if asked for
+	private Problem randomProblem(List<GeographicPoint> vertices, Random random, int n,
+			boolean windows)
+	{
+		while (true) {
+			List<GeographicPoint> stops = new ArrayList<GeographicPoint>();
+			double[] earliest = new double[n];
+			double[] latest = new double[n];
+			for (int s = 0; s < n; s++) {
+				stops.add(vertices.get(random.nextInt(vertices.size())));
+				earliest[s] = s == 0 || !windows ? Double.NEGATIVE_INFINITY : 2 * random.nextDouble();
+				latest[s] = s == 0 || !windows ? Double.POSITIVE_INFINITY : earliest[s] + 1;
+			}
+			Problem problem = new Problem(stops, earliest, latest, 0, true);
+			boolean connected = true;
+			for (double[] row : problem.time) {
+				for (double t : row) {
+					connected &= t < Double.POSITIVE_INFINITY;
+				}
+			}
+			if (connected) {
+				return problem;
+			}
+		}
+	}
+}
@@ -0,0 +1,235 @@
+package roadgraph;
+
+import java.util.Arrays;
+
+/**
+ * The mutable state of one search over a CompactGraph: the tentative
+ * distance and parent of every reached node and which nodes are settled.
+ *
+ * The arrays are indexed by dense node id and allocated once per graph.
+ * Instead of clearing them before every query, each entry is stamped with
+ * the epoch in which it was written and reset() just bumps the epoch, so a
+ * query only ever touches the nodes it reaches.
+ *
+ * A SearchContext is not thread safe.  MapGraph keeps one per thread so
+ * that any number of threads can search the same immutable CompactGraph.
+ */
+public class SearchContext {
+	private final CompactGraph graph;
+
+	private final double[] distance;
+	private final int[] parent;
+	// Epoch in which distance/parent of a node were last written
+	private final int[] reachedEpoch;
+	// Epoch in which a node was last settled
+	private final int[] settledEpoch;
+	private int epoch;
+
+	// Priority queue for Dijkstra and A*
+	private final NodeQueue queue;
+	// Scratch FIFO queue for bfs
+	final int[] fifo;
+
+	// Number of nodes settled by the current search
+	private int settledCount;
+
+	// State of the backward half of a bidirectional search, made on demand
+	private SearchContext reverse;
+	// State of a turn-aware search, indexed by edge id, made on demand
+	private SearchContext edgeContext;
+
+	/**
+	 * Create a new SearchContext for a graph, using an IndexedMinHeap
+	 * @param graph The graph that will be searched
+	 */
+	SearchContext(CompactGraph graph)
+	{
+		this(graph, 0);
+	}
+
+	/**
+	 * Create a new SearchContext for a graph
+	 * @param graph The graph that will be searched
+	 * @param resolution If positive, use a BucketQueue with this key
+	 *   resolution; otherwise use an IndexedMinHeap
+	 */
+	SearchContext(CompactGraph graph, double resolution)
+	{
+		this(graph, graph.getNumNodes(), resolution);
+	}
+
+	// A context whose entries are indexed by something other than node id
+	private SearchContext(CompactGraph graph, int n, double resolution)
+	{
+		this.graph = graph;
+		distance = new double[n];
+		parent = new int[n];
+		reachedEpoch = new int[n];
+		settledEpoch = new int[n];
+		fifo = new int[n];
+		queue = resolution > 0 ? new BucketQueue(n, resolution) : new IndexedMinHeap(n);
+		epoch = 0;
+		settledCount = 0;
+	}
+
+	/**
+	 * Get the graph this context searches
+	 * @return the graph
+	 */
+	CompactGraph getGraph()
+	{
+		return graph;
+	}
+
+	/**
+	 * Get the priority queue of this context, emptied by reset()
+	 * @return the queue
+	 */
+	NodeQueue getQueue()
+	{
+		return queue;
+	}
+
+	/**
+	 * Get the key resolution of the queue of this context
+	 * @return the BucketQueue resolution, or 0 for an IndexedMinHeap
+	 */
+	double getQueueResolution()
+	{
+		return queue instanceof BucketQueue ? ((BucketQueue) queue).getResolution() : 0;
+	}
+
+	/**
+	 * Get the search state for the backward half of a bidirectional search.
+	 * It searches the same graph with the same kind of queue, and is reset
+	 * along with this context.
+	 * @return the backward search context
+	 */
+	SearchContext getReverse()
+	{
+		if (reverse == null) {
+			reverse = new SearchContext(graph, getQueueResolution());
+			reverse.reset();
+		}
+		return reverse;
+	}
+
+	/**
+	 * Get the search state for a turn-aware search, whose entries are
+	 * indexed by edge id rather than node id: the distance of an edge is
+	 * that of arriving at its head along it, and the parent of an edge is
+	 * the edge before it.  It is reset along with this context.
+	 * @return the edge search context
+	 */
+	SearchContext getEdgeContext()
+	{
+		if (edgeContext == null) {
+			edgeContext = new SearchContext(graph, graph.getNumEdges(), getQueueResolution());
+			edgeContext.reset();
+		}
+		return edgeContext;
+	}
+
+	/**
+	 * Forget the previous search.  This is O(1) except once every
+	 * 2^31 searches, when the epoch counter wraps.
+	 */
+	void reset()
+	{
+		if (epoch == Integer.MAX_VALUE) {
+			Arrays.fill(reachedEpoch, 0);
+			Arrays.fill(settledEpoch, 0);
+			epoch = 0;
+		}
+		epoch++;
+		settledCount = 0;
+		queue.clear();
+		if (reverse != null) {
+			reverse.reset();
+		}
+		if (edgeContext != null) {
+			edgeContext.reset();
+		}
+	}
+
+	/**
+	 * Whether a node has been reached by the current search
+	 * @param v The node id
+	 * @return true if the node has a tentative distance
+	 */
+	boolean isReached(int v)
+	{
+		return reachedEpoch[v] == epoch;
+	}
+
+	/**
+	 * Get the tentative distance of a node
+	 * @param v The node id
+	 * @return the distance, or infinity if the node has not been reached
+	 */
+	double getDistance(int v)
+	{
+		return reachedEpoch[v] == epoch ? distance[v] : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Get the parent of a reached node
+	 * @param v The node id
+	 * @return the id of the node before v on the current best path
+	 */
+	int getParent(int v)
+	{
+		return parent[v];
+	}
+
+	/**
+	 * Record a new tentative distance for a node
+	 * @param v The node id
+	 * @param dist The distance from the source
+	 * @param from The node before v on the path, or -1 for the source
+	 */
+	void setDistance(int v, double dist, int from)
+	{
+		reachedEpoch[v] = epoch;
+		distance[v] = dist;
+		parent[v] = from;
+	}
+
+	/**
+	 * Whether a node has been settled by the current search
+	 * @param v The node id
+	 * @return true if the node is settled
+	 */
+	boolean isSettled(int v)
+	{
+		return settledEpoch[v] == epoch;
+	}
+
+	/**
+	 * Mark a node as settled
+	 * @param v The node id
+	 */
+	void settle(int v)
+	{
+		settledEpoch[v] = epoch;
+		settledCount++;
+	}
+
+	/**
+	 * Get the number of nodes settled by the current (or last) search,
+	 * in both directions if it was bidirectional, or of edges if it was
+	 * turn-aware
+	 * @return the number of settled nodes or edges
+	 */
+	public int getSettledCount()
+	{
+		int count = settledCount;
+		if (reverse != null) {
+			count += reverse.getSettledCount();
+		}
+		if (edgeContext != null) {
+			count += edgeContext.getSettledCount();
+		}
+		return count;
+	}
+}
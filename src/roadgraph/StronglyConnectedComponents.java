@@ -0,0 +1,164 @@
+package roadgraph;
+
+import java.util.Arrays;
+
+/**
+ * The strongly connected components of a CompactGraph: the largest sets of
+ * nodes that can all reach each other.
+ *
+ * They are found with Tarjan's algorithm, run with an explicit stack so
+ * that long roads cannot overflow the call stack.  Components are numbered
+ * in the order Tarjan's algorithm finishes them, which is a reverse
+ * topological order: an edge between two components always goes from the
+ * higher numbered one to the lower, so a node can only reach nodes in
+ * components numbered no higher than its own.  CompactGraph labels its
+ * nodes with them when it is built.
+ */
+public class StronglyConnectedComponents {
+	// Component of each node
+	private final int[] component;
+	// Number of nodes in each component
+	private final int[] size;
+	private final int largest;
+
+	/**
+	 * Summarize the components of a graph
+	 * @param component The component of each node, as from label
+	 */
+	StronglyConnectedComponents(int[] component)
+	{
+		this.component = component;
+		int count = 0;
+		for (int c : component) {
+			count = Math.max(count, c + 1);
+		}
+		size = new int[count];
+		for (int c : component) {
+			size[c]++;
+		}
+		int biggest = -1;
+		for (int c = 0; c < count; c++) {
+			if (biggest < 0 || size[c] > size[biggest]) {
+				biggest = c;
+			}
+		}
+		largest = biggest;
+	}
+
+	/**
+	 * Find the strongly connected component of every node of a graph given
+	 * in compressed-sparse-row form, as in CompactGraph
+	 * @param firstOut Offsets into head, one more than there are nodes
+	 * @param head The target node of each edge
+	 * @return the component of each node, numbered in reverse topological
+	 *   order
+	 */
+	public static int[] label(int[] firstOut, int[] head)
+	{
+		int n = firstOut.length - 1;
+		int[] component = new int[n];
+		int[] index = new int[n];
+		int[] low = new int[n];
+		Arrays.fill(index, -1);
+		//Nodes visited but not yet assigned a component
+		int[] stack = new int[n];
+		boolean[] onStack = new boolean[n];
+		int top = 0;
+		//The depth-first path, with the next edge to follow from each node
+		int[] pathNode = new int[n];
+		int[] pathEdge = new int[n];
+		int depth = 0;
+		int nextIndex = 0;
+		int count = 0;
+
+		for (int root = 0; root < n; root++) {
+			if (index[root] >= 0) {
+				continue;
+			}
+			index[root] = low[root] = nextIndex++;
+			stack[top++] = root;
+			onStack[root] = true;
+			pathNode[0] = root;
+			pathEdge[0] = firstOut[root];
+			depth = 1;
+			while (depth > 0) {
+				int v = pathNode[depth - 1];
+				int e = pathEdge[depth - 1];
+				if (e < firstOut[v + 1]) {
+					pathEdge[depth - 1]++;
+					int w = head[e];
+					if (index[w] < 0) {
+						//Descend to w
+						index[w] = low[w] = nextIndex++;
+						stack[top++] = w;
+						onStack[w] = true;
+						pathNode[depth] = w;
+						pathEdge[depth] = firstOut[w];
+						depth++;
+					}
+					else if (onStack[w]) {
+						low[v] = Math.min(low[v], index[w]);
+					}
+					continue;
+				}
+
+				//Every edge of v is done, so return from it
+				depth--;
+				if (low[v] == index[v]) {
+					int w;
+					do {
+						w = stack[--top];
+						onStack[w] = false;
+						component[w] = count;
+					} while (w != v);
+					count++;
+				}
+				if (depth > 0) {
+					int parent = pathNode[depth - 1];
+					low[parent] = Math.min(low[parent], low[v]);
+				}
+			}
+		}
+
+		return component;
+	}
+
+	/**
+	 * Get the number of components
+	 * @return the number of components
+	 */
+	public int getNumComponents()
+	{
+		return size.length;
+	}
+
+	/**
+	 * Get the component of a node
+	 * @param v The node id
+	 * @return the component number
+	 */
+	int getComponent(int v)
+	{
+		return component[v];
+	}
+
+	/**
+	 * Get the number of nodes in a component
+	 * @param c The component number
+	 * @return the size of the component
+	 */
+	public int getSize(int c)
+	{
+		return size[c];
+	}
+
+	/**
+	 * Get the component with the most nodes
+	 * @return the number of the largest component, or -1 if the graph has
+	 *   no nodes
+	 */
+	public int getLargest()
+	{
+		return largest;
+	}
+}
@@ -0,0 +1,127 @@
+package roadgraph;
+
+import java.util.Collections;
+import java.util.List;
+
+import geography.GeographicPoint;
+
+/**
+ * An order in which to visit a set of stops, as planned by RouteOptimizer,
+ * with the times each stop is reached and the full route between them.
+ */
+public class Tour {
+	private final int[] order;
+	private final List<GeographicPoint> stops;
+	private final double[] arrivals;
+	private final double duration;
+	private final double lateness;
+	private final List<GeographicPoint> path;
+	private final double[] polyline;
+
+	/**
+	 * Create a tour
+	 * @param order The index in the planned stops of each stop, in visiting order
+	 * @param stops The stops, in visiting order
+	 * @param arrivals The time each stop is visited, and the time back at
+	 *   the first stop if the tour is closed
+	 * @param duration The time from departure to the end of the tour
+	 * @param lateness The total time by which stops are visited after
+	 *   their windows close
+	 * @param path The intersections along the whole tour
+	 * @param polyline The full geometry of the tour, as from MapGraph.expandPath
+	 */
+	Tour(int[] order, List<GeographicPoint> stops, double[] arrivals, double duration,
+			double lateness, List<GeographicPoint> path, double[] polyline)
+	{
+		this.order = order;
+		this.stops = Collections.unmodifiableList(stops);
+		this.arrivals = arrivals;
+		this.duration = duration;
+		this.lateness = lateness;
+		this.path = Collections.unmodifiableList(path);
+		this.polyline = polyline;
+	}
+
+	/**
+	 * Get the visiting order
+	 * @return the index in the planned stops of each stop, in visiting order
+	 */
+	public int[] getOrder()
+	{
+		return order.clone();
+	}
+
+	/**
+	 * Get the stops in visiting order
+	 * @return the stops, starting with the first planned stop
+	 */
+	public List<GeographicPoint> getStops()
+	{
+		return stops;
+	}
+
+	/**
+	 * Get the time each stop is visited, after any wait for its window
+	 * to open
+	 * @return the times in hours, in visiting order, with one more at the
+	 *   end for the return to the first stop if the tour is closed
+	 */
+	public double[] getArrivals()
+	{
+		return arrivals.clone();
+	}
+
+	/**
+	 * Get the time the tour takes, including waiting
+	 * @return the time from departure to the last arrival, in hours
+	 */
+	public double getDuration()
+	{
+		return duration;
+	}
+
+	/**
+	 * Get how late the tour runs
+	 * @return the total time in hours by which stops are visited after
+	 *   their windows close
+	 */
+	public double getLateness()
+	{
+		return lateness;
+	}
+
+	/**
+	 * Whether every stop is visited within its time window
+	 * @return true if the tour is never late
+	 */
+	public boolean isOnTime()
+	{
+		return lateness == 0;
+	}
+
+	/**
+	 * Get the intersections along the whole tour
+	 * @return the path from the first stop through every other in order
+	 */
+	public List<GeographicPoint> getPath()
+	{
+		return path;
+	}
+
+	/**
+	 * Get the full geometry of the tour
+	 * @return latitude and longitude, interleaved, of every point along
+	 *   the roads of the tour
+	 */
+	public double[] getPolyline()
+	{
+		return polyline.clone();
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("%d stops, %.1f min, %.1f min late", stops.size(),
+				duration * 60, lateness * 60);
+	}
+}
@@ -0,0 +1,290 @@
+package roadgraph;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import geography.GeographicPoint;
+
+/**
+ * Travel times that depend on the time of day, for the time-dependent
+ * searches in MapGraph.
+ *
+ * The travel time of an edge entered at time t is its free-flow duration
+ * (MapEdge.getRoadDuration) times a congestion factor that is a
+ * piecewise-linear function of t over a 24 hour day.  The functions are
+ * shared tables of breakpoints, and each edge refers to its table by
+ * index, so that a handful of tables cover a whole city.  An edge gets the
+ * table given for it by name, else the one for its road type, else none,
+ * which means free flow all day.
+ *
+ * Every edge must be first in, first out: entering later never means
+ * leaving earlier.  A table whose factor falls faster than that allows on
+ * any edge using it is rejected, which is what keeps a time-dependent
+ * Dijkstra correct.
+ *
+ * Tables are read from a .traffic file next to a .map file.  Each line is
+ * one of
+ * <pre>
+ *   table name hour factor hour factor ...
+ *   road roadType name
+ *   edge fromLat fromLon toLat toLon name
+ * </pre>
+ * where a table's hours increase from 0 to under 24, its factors are
+ * positive, and the day wraps around from its last breakpoint to its first.
+ * Lines starting with # are comments.
+ *
+ * Times are in hours, like MapEdge.getRoadDuration.  A TrafficProfiles is
+ * immutable once made, and only applies to the compiled graph it was made
+ * for.
+ */
+public class TrafficProfiles {
+	/** The length of the day the tables repeat over, in hours */
+	public static final double PERIOD = 24;
+
+	private final CompactGraph graph;
+	// Breakpoints of table t are at firstPoint[t]..firstPoint[t+1]-1
+	private final int[] firstPoint;
+	// Hour of day and congestion factor at each breakpoint
+	private final double[] hour;
+	private final double[] factor;
+	// Table of each edge, or -1 for free flow
+	private final int[] tableOf;
+	// The smallest factor in any table, and 1 for free flow
+	private final double minFactor;
+
+	/**
+	 * Free flow on every edge at every time of day
+	 * @param graph The compiled graph
+	 */
+	public TrafficProfiles(CompactGraph graph)
+	{
+		this(graph, new double[0][], new int[0]);
+	}
+
+	/**
+	 * Travel times from shared tables
+	 * @param graph The compiled graph
+	 * @param tables Each table as hour, factor, hour, factor, ... with the
+	 *   hours increasing from 0 to under PERIOD and the factors positive
+	 * @param tableOf The index in tables of the table of each edge, or -1
+	 *   for free flow.  Shorter than the number of edges to leave the rest
+	 *   free flowing.
+	 * @throws IllegalArgumentException if a table is malformed or would
+	 *   let an edge using it overtake itself
+	 */
+	TrafficProfiles(CompactGraph graph, double[][] tables, int[] tableOf)
+	{
+		this.graph = graph;
+		int m = graph.getNumEdges();
+		this.tableOf = Arrays.copyOf(tableOf, m);
+		Arrays.fill(this.tableOf, tableOf.length, m, -1);
+
+		firstPoint = new int[tables.length + 1];
+		for (int t = 0; t < tables.length; t++) {
+			if (tables[t].length < 2 || tables[t].length % 2 != 0) {
+				throw new IllegalArgumentException("Traffic table " + t + " needs hour, factor pairs");
+			}
+			firstPoint[t + 1] = firstPoint[t] + tables[t].length / 2;
+		}
+		hour = new double[firstPoint[tables.length]];
+		factor = new double[hour.length];
+		double min = 1;
+		for (int t = 0; t < tables.length; t++) {
+			for (int i = firstPoint[t]; i < firstPoint[t + 1]; i++) {
+				hour[i] = tables[t][2 * (i - firstPoint[t])];
+				factor[i] = tables[t][2 * (i - firstPoint[t]) + 1];
+				if (hour[i] < 0 || hour[i] >= PERIOD || (i > firstPoint[t] && hour[i] <= hour[i - 1])
+						|| !(factor[i] > 0)) {
+					throw new IllegalArgumentException("Traffic table " + t
+							+ " has a bad breakpoint at " + hour[i] + "h");
+				}
+				min = Math.min(min, factor[i]);
+			}
+		}
+		minFactor = min;
+
+		//FIFO holds on an edge if its travel time never falls faster than
+		//time passes, so the steepest fall of each table bounds its edges
+		double[] steepestFall = new double[tables.length];
+		for (int t = 0; t < tables.length; t++) {
+			int first = firstPoint[t];
+			int last = firstPoint[t + 1] - 1;
+			for (int i = first; i <= last; i++) {
+				int next = i < last ? i + 1 : first;
+				double span = i < last ? hour[next] - hour[i] : hour[next] + PERIOD - hour[i];
+				if (first < last) {
+					steepestFall[t] = Math.max(steepestFall[t], (factor[i] - factor[next]) / span);
+				}
+			}
+		}
+		for (int e = 0; e < m; e++) {
+			int t = this.tableOf[e];
+			if (t >= tables.length) {
+				throw new IllegalArgumentException("No traffic table " + t);
+			}
+			if (t >= 0 && graph.duration[e] * steepestFall[t] > 1) {
+				throw new IllegalArgumentException("Traffic table " + t + " is not FIFO on the edge from "
+						+ graph.getLocation(graph.tail[e]) + " to " + graph.getLocation(graph.head[e]));
+			}
+		}
+	}
+
+	/**
+	 * Whether these profiles were made for a compiled graph
+	 * @param g The compiled graph
+	 * @return true if the edge ids of the profiles are those of g
+	 */
+	boolean isFor(CompactGraph g)
+	{
+		return graph == g;
+	}
+
+	/**
+	 * Get the number of shared tables
+	 * @return the number of tables
+	 */
+	public int getNumTables()
+	{
+		return firstPoint.length - 1;
+	}
+
+	/**
+	 * Get the memory used by the tables and the table index of each edge
+	 * @return the size of the arrays in bytes
+	 */
+	public long getArrayBytes()
+	{
+		return 4L * firstPoint.length + 16L * hour.length + 4L * tableOf.length;
+	}
+
+	/**
+	 * The smallest congestion factor of any edge at any time, so that a
+	 * free-flow lower bound times it is a time-dependent lower bound
+	 * @return the smallest factor, at most 1
+	 */
+	double getMinFactor()
+	{
+		return minFactor;
+	}
+
+	/**
+	 * The time to drive along an edge
+	 * @param e The edge
+	 * @param time The time of entering it, in hours since midnight.  Times
+	 *   past one day wrap around.
+	 * @return the travel time in hours
+	 */
+	double travelTime(int e, double time)
+	{
+		int t = tableOf[e];
+		if (t < 0) {
+			return graph.duration[e];
+		}
+		return graph.duration[e] * factor(t, time - PERIOD * Math.floor(time / PERIOD));
+	}
+
+	// Interpolate table t at an hour of the day
+	private double factor(int t, double h)
+	{
+		int first = firstPoint[t];
+		int last = firstPoint[t + 1] - 1;
+		if (first == last) {
+			return factor[first];
+		}
+		int i = Arrays.binarySearch(hour, first, last + 1, h);
+		if (i >= 0) {
+			return factor[i];
+		}
+		//The breakpoints either side of h, wrapping around midnight
+		int after = -i - 1;
+		int before = after - 1;
+		double beforeHour;
+		double afterHour;
+		if (after == first) {
+			before = last;
+			beforeHour = hour[last] - PERIOD;
+			afterHour = hour[first];
+		}
+		else if (after > last) {
+			after = first;
+			beforeHour = hour[last];
+			afterHour = hour[first] + PERIOD;
+		}
+		else {
+			beforeHour = hour[before];
+			afterHour = hour[after];
+		}
+		double s = (h - beforeHour) / (afterHour - beforeHour);
+		return factor[before] + s * (factor[after] - factor[before]);
+	}
+
+	/**
+	 * Read the traffic tables for a graph.  Lines naming a road or edge the
+	 * graph does not have are skipped.
+	 * @param filename The .traffic file
+	 * @param map The graph, loaded from the .map file the tables were
+	 *   written for
+	 * @return the profiles, or free flow everywhere if the file does not
+	 *   exist or cannot be used
+	 */
+	public static TrafficProfiles load(String filename, MapGraph map)
+	{
+		CompactGraph g = map.compile();
+		if (!new File(filename).exists()) {
+			return new TrafficProfiles(g);
+		}
+		Map<String,Integer> names = new HashMap<String,Integer>();
+		List<double[]> tables = new ArrayList<double[]>();
+		Map<String,String> byRoadType = new HashMap<String,String>();
+		Map<Long,String> byEdge = new HashMap<Long,String>();
+		try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.trim().split("\\s+");
+				if (fields[0].equals("table") && fields.length >= 4) {
+					double[] table = new double[fields.length - 2];
+					for (int i = 0; i < table.length; i++) {
+						table[i] = Double.parseDouble(fields[i + 2]);
+					}
+					names.put(fields[1], tables.size());
+					tables.add(table);
+				}
+				else if (fields[0].equals("road") && fields.length >= 3) {
+					byRoadType.put(fields[1], fields[2]);
+				}
+				else if (fields[0].equals("edge") && fields.length >= 6) {
+					int from = map.getId(new GeographicPoint(Double.parseDouble(fields[1]),
+							Double.parseDouble(fields[2])));
+					int to = map.getId(new GeographicPoint(Double.parseDouble(fields[3]),
+							Double.parseDouble(fields[4])));
+					if (from >= 0 && to >= 0) {
+						byEdge.put(((long) from << 32) | to, fields[5]);
+					}
+				}
+			}
+
+			int[] tableOf = new int[g.getNumEdges()];
+			for (int e = 0; e < tableOf.length; e++) {
+				String name = byEdge.get(((long) g.tail[e] << 32) | g.head[e]);
+				if (name == null) {
+					name = byRoadType.get(g.getRoadType(e));
+				}
+				Integer t = name == null ? null : names.get(name);
+				tableOf[e] = t == null ? -1 : t;
+			}
+			return new TrafficProfiles(g, tables.toArray(new double[tables.size()][]), tableOf);
+		}
+		catch (IOException | IllegalArgumentException e) {
+			System.err.println("Problem loading traffic profiles: " + filename);
+			e.printStackTrace();
+			return new TrafficProfiles(g);
+		}
+	}
+}
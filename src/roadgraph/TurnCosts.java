@@ -0,0 +1,263 @@
+package roadgraph;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+
+import geography.GeographicPoint;
+
+/**
+ * The cost of turning from one edge of a CompactGraph onto the next, for
+ * the turn-aware searches in MapGraph.
+ *
+ * A turn is forbidden if a turn restriction bans it.  Otherwise its cost
+ * depends on the angle between the direction the first road arrives in and
+ * the direction the second leaves in, measured from the road shapes at the
+ * intersection: going straight on is free, right turns cost a little, left
+ * turns more, and U-turns most of all.  Traffic is assumed to drive on
+ * the right.
+ *
+ * Restrictions are read from the .restrictions file MapMaker writes next to
+ * a .map file.  Each line is
+ * <pre>
+ *   fromLat fromLon viaLat viaLon toLat toLon kind
+ * </pre>
+ * where via is the intersection, from is the point before it on the road
+ * turned from, to is the point after it on the road turned onto, and kind
+ * is the OSM restriction tag, such as no_left_turn or only_straight_on.
+ *
+ * Costs are in the same units as MapEdge.getRoadDuration.  A TurnCosts
+ * is immutable once made, and only applies to the compiled graph it was
+ * made for.
+ */
+public class TurnCosts {
+	/** Default cost of a right turn: 5 seconds */
+	public static final double RIGHT_TURN = 5.0 / 3600;
+	/** Default cost of a left turn: 15 seconds */
+	public static final double LEFT_TURN = 15.0 / 3600;
+	/** Default cost of a U-turn: one minute */
+	public static final double U_TURN = 60.0 / 3600;
+
+	// Turns sharper than this are turns rather than going straight on,
+	// and turns sharper than 180 degrees less this are U-turns
+	private static final double STRAIGHT_DEGREES = 30;
+
+	private final CompactGraph graph;
+	// Heading of each edge where it arrives at its head, and where it
+	// leaves its tail, in radians anticlockwise from east
+	private final double[] arriveHeading;
+	private final double[] leaveHeading;
+	// Forbidden turns as (from edge << 32 | to edge), sorted
+	private final long[] banned;
+	private final double rightTurn;
+	private final double leftTurn;
+	private final double uTurn;
+
+	/**
+	 * Turn costs with the default penalties and no restrictions
+	 * @param graph The compiled graph
+	 */
+	public TurnCosts(CompactGraph graph)
+	{
+		this(graph, new long[0], RIGHT_TURN, LEFT_TURN, U_TURN);
+	}
+
+	/**
+	 * Turn costs with given penalties and restrictions
+	 * @param graph The compiled graph
+	 * @param banned The forbidden turns, each as (from edge << 32 | to edge)
+	 * @param rightTurn The cost of a right turn
+	 * @param leftTurn The cost of a left turn
+	 * @param uTurn The cost of a U-turn, or Double.POSITIVE_INFINITY to
+	 *   forbid them
+	 */
+	TurnCosts(CompactGraph graph, long[] banned, double rightTurn, double leftTurn, double uTurn)
+	{
+		this.graph = graph;
+		this.banned = banned.clone();
+		Arrays.sort(this.banned);
+		this.rightTurn = rightTurn;
+		this.leftTurn = leftTurn;
+		this.uTurn = uTurn;
+
+		int m = graph.getNumEdges();
+		arriveHeading = new double[m];
+		leaveHeading = new double[m];
+		double cosLat = Math.cos(Math.toRadians(meanLatitude(graph)));
+		for (int e = 0; e < m; e++) {
+			int tail = graph.tail[e];
+			int head = graph.head[e];
+			int first = graph.firstShape[e];
+			int last = graph.firstShape[e + 1];
+			//The points next to each end along the road's shape
+			double nextLat = first < last ? graph.shape[2 * first] : graph.lat[head];
+			double nextLon = first < last ? graph.shape[2 * first + 1] : graph.lon[head];
+			double prevLat = first < last ? graph.shape[2 * last - 2] : graph.lat[tail];
+			double prevLon = first < last ? graph.shape[2 * last - 1] : graph.lon[tail];
+			leaveHeading[e] = Math.atan2(nextLat - graph.lat[tail],
+					(nextLon - graph.lon[tail]) * cosLat);
+			arriveHeading[e] = Math.atan2(graph.lat[head] - prevLat,
+					(graph.lon[head] - prevLon) * cosLat);
+		}
+	}
+
+	private static double meanLatitude(CompactGraph graph)
+	{
+		double sum = 0;
+		for (double lat : graph.lat) {
+			sum += lat;
+		}
+		return graph.lat.length == 0 ? 0 : sum / graph.lat.length;
+	}
+
+	/**
+	 * Whether these costs were made for a compiled graph
+	 * @param g The compiled graph
+	 * @return true if the edge ids of the costs are those of g
+	 */
+	boolean isFor(CompactGraph g)
+	{
+		return graph == g;
+	}
+
+	/**
+	 * Get the number of forbidden turns
+	 * @return the number of restrictions, with each "only" restriction
+	 *   counted once for every turn it forbids
+	 */
+	public int getNumRestrictions()
+	{
+		return banned.length;
+	}
+
+	/**
+	 * The cost of turning from one edge onto the next
+	 * @param from The edge arriving at the intersection
+	 * @param to The edge leaving it
+	 * @return the cost, or Double.POSITIVE_INFINITY if the turn is forbidden
+	 */
+	double cost(int from, int to)
+	{
+		if (banned.length > 0 && Arrays.binarySearch(banned, turn(from, to)) >= 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		//Angle turned through, positive to the left
+		double angle = Math.toDegrees(leaveHeading[to] - arriveHeading[from]);
+		angle = angle - 360 * Math.floor((angle + 180) / 360);
+		if (Math.abs(angle) <= STRAIGHT_DEGREES) {
+			return 0;
+		}
+		if (Math.abs(angle) >= 180 - STRAIGHT_DEGREES) {
+			return uTurn;
+		}
+		return angle > 0 ? leftTurn : rightTurn;
+	}
+
+	private static long turn(int from, int to)
+	{
+		return ((long) from << 32) | (to & 0xffffffffL);
+	}
+
+	/**
+	 * Read the restrictions for a graph, using the default penalties
+	 * @param filename The .restrictions file
+	 * @param map The graph, loaded from the .map file the restrictions
+	 *   were written with
+	 * @return the turn costs, with no restrictions if the file does not exist
+	 */
+	public static TurnCosts load(String filename, MapGraph map)
+	{
+		return load(filename, map, RIGHT_TURN, LEFT_TURN, U_TURN);
+	}
+
+	/**
+	 * Read the restrictions for a graph.  Restrictions that do not match
+	 * the roads of the graph are skipped.
+	 * @param filename The .restrictions file
+	 * @param map The graph, loaded from the .map file the restrictions
+	 *   were written with
+	 * @param rightTurn The cost of a right turn
+	 * @param leftTurn The cost of a left turn
+	 * @param uTurn The cost of a U-turn, or Double.POSITIVE_INFINITY to
+	 *   forbid them
+	 * @return the turn costs, with no restrictions if the file does not exist
+	 */
+	public static TurnCosts load(String filename, MapGraph map, double rightTurn,
+			double leftTurn, double uTurn)
+	{
+		CompactGraph g = map.compile();
+		long[] banned = new long[16];
+		int count = 0;
+		if (new File(filename).exists()) {
+			try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String[] fields = line.trim().split("\\s+");
+					if (fields.length < 7) {
+						continue;
+					}
+					int via = map.getId(new GeographicPoint(Double.parseDouble(fields[2]),
+							Double.parseDouble(fields[3])));
+					if (via < 0) {
+						continue;
+					}
+					double fromLat = Double.parseDouble(fields[0]);
+					double fromLon = Double.parseDouble(fields[1]);
+					double toLat = Double.parseDouble(fields[4]);
+					double toLon = Double.parseDouble(fields[5]);
+					boolean only = fields[6].startsWith("only_");
+					if (!only && !fields[6].startsWith("no_")) {
+						continue;
+					}
+					//Parallel edges with the same shape at via are all restricted
+					boolean matched = false;
+					for (int e = g.firstOut[via]; e < g.firstOut[via + 1]; e++) {
+						matched |= leavesThrough(g, e, toLat, toLon);
+					}
+					for (int i = g.firstIn[via]; i < g.firstIn[via + 1] && matched; i++) {
+						int from = g.inEdge[i];
+						if (!arrivesThrough(g, from, fromLat, fromLon)) {
+							continue;
+						}
+						for (int e = g.firstOut[via]; e < g.firstOut[via + 1]; e++) {
+							//"no" bans the turn, "only" bans all the others
+							if (leavesThrough(g, e, toLat, toLon) != only) {
+								if (count == banned.length) {
+									banned = Arrays.copyOf(banned, 2 * count);
+								}
+								banned[count++] = turn(from, e);
+							}
+						}
+					}
+				}
+			}
+			catch (IOException | NumberFormatException e) {
+				System.err.println("Problem loading turn restrictions: " + filename);
+				e.printStackTrace();
+			}
+		}
+		return new TurnCosts(g, Arrays.copyOf(banned, count), rightTurn, leftTurn, uTurn);
+	}
+
+	// Whether the shape of edge e passes through (lat, lon) just before its head
+	private static boolean arrivesThrough(CompactGraph g, int e, double lat, double lon)
+	{
+		int last = g.firstShape[e + 1];
+		boolean shaped = last > g.firstShape[e];
+		double prevLat = shaped ? g.shape[2 * last - 2] : g.lat[g.tail[e]];
+		double prevLon = shaped ? g.shape[2 * last - 1] : g.lon[g.tail[e]];
+		return prevLat == lat && prevLon == lon;
+	}
+
+	// Whether the shape of edge e passes through (lat, lon) just after its tail
+	private static boolean leavesThrough(CompactGraph g, int e, double lat, double lon)
+	{
+		int first = g.firstShape[e];
+		boolean shaped = g.firstShape[e + 1] > first;
+		double nextLat = shaped ? g.shape[2 * first] : g.lat[g.head[e]];
+		double nextLon = shaped ? g.shape[2 * first + 1] : g.lon[g.head[e]];
+		return nextLat == lat && nextLon == lon;
+	}
+}
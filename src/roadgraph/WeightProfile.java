@@ -0,0 +1,123 @@
+package roadgraph;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The cost of travelling along a road, by road type and length, for one
+ * kind of traveller.
+ *
+ * A profile assigns a speed to each road type, and the cost of a road is
+ * its length divided by that speed.  A speed of 0 means the traveller may
+ * not use roads of that type at all.  CAR gives the travel times of
+ * MapEdge.getRoadDuration and is the profile the searches use unless they
+ * are given another.
+ *
+ * A CompactGraph computes the cost of every edge under a profile the first
+ * time the profile is used on it, so searches read costs from an array.
+ * Profiles are told apart by identity, so a custom profile should be made
+ * once and reused.
+ */
+public class WeightProfile {
+	// Road types of the built-in profiles, in the order of their speeds
+	private static final String[] ROAD_TYPES = {
+		"motorway", "trunk", "primary", "secondary", "tertiary",
+		"unclassified", "trunk_link", "primary_link", "residential", "service",
+		"secondary_link", "motorway_link", "tertiary_link", "living_street",
+		"pedestrian", "track"
+	};
+
+	/** Driving at the speed limit assumed for each road type */
+	public static final WeightProfile CAR = new WeightProfile("car", 20,
+			70, 60, 55, 50, 45, 30, 30, 30, 25, 20, 20, 35, 15, 15, 15, 15);
+	/** Driving a truck, which is slower than a car on fast roads */
+	public static final WeightProfile TRUCK = new WeightProfile("truck", 20,
+			55, 50, 45, 45, 40, 30, 30, 30, 20, 15, 20, 30, 15, 10, 0, 10);
+	/** Cycling, kept off motorways and trunk roads */
+	public static final WeightProfile BICYCLE = new WeightProfile("bicycle", 12,
+			0, 0, 12, 12, 12, 12, 0, 12, 12, 12, 12, 0, 12, 10, 8, 8);
+	/** Walking, kept off motorways and trunk roads */
+	public static final WeightProfile PEDESTRIAN = new WeightProfile("pedestrian", 3,
+			0, 0, 3, 3, 3, 3, 0, 3, 3, 3, 3, 0, 3, 3, 3, 3);
+	/** Road length in km, for the shortest rather than fastest paths */
+	public static final WeightProfile LENGTH = new WeightProfile("length", 1,
+			1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1);
+
+	private final String name;
+	private final Map<String,Double> speeds;
+	private final double defaultSpeed;
+	private final double maxSpeed;
+
+	/**
+	 * Create a profile
+	 * @param name The name of the profile
+	 * @param speeds The speed on each road type, or 0 if roads of that
+	 *   type may not be used
+	 * @param defaultSpeed The speed on road types not in speeds
+	 */
+	public WeightProfile(String name, Map<String,Double> speeds, double defaultSpeed)
+	{
+		this.name = name;
+		this.speeds = new HashMap<String,Double>(speeds);
+		this.defaultSpeed = defaultSpeed;
+		double max = defaultSpeed;
+		for (double speed : speeds.values()) {
+			max = Math.max(max, speed);
+		}
+		maxSpeed = max;
+	}
+
+	// A built-in profile, with one speed for each of ROAD_TYPES
+	private WeightProfile(String name, double defaultSpeed, double... speeds)
+	{
+		this(name, table(speeds), defaultSpeed);
+	}
+
+	private static Map<String,Double> table(double[] speeds)
+	{
+		Map<String,Double> table = new HashMap<String,Double>();
+		for (int i = 0; i < ROAD_TYPES.length; i++) {
+			table.put(ROAD_TYPES[i], speeds[i]);
+		}
+		return table;
+	}
+
+	/**
+	 * Get the name of this profile
+	 * @return the name
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * Get the highest speed on any road type, which bounds how fast a
+	 * straight line can be covered for the A* heuristic
+	 * @return the highest speed
+	 */
+	public double getMaxSpeed()
+	{
+		return maxSpeed;
+	}
+
+	/**
+	 * Get the cost of travelling along a road
+	 * @param roadType The type of the road
+	 * @param length The length of the road in km
+	 * @return the cost, or Double.POSITIVE_INFINITY if the road may not
+	 *   be used
+	 */
+	public double getCost(String roadType, double length)
+	{
+		Double speed = speeds.get(roadType);
+		double s = speed == null ? defaultSpeed : speed;
+		return s > 0 ? length / s : Double.POSITIVE_INFINITY;
+	}
+
+	@Override
+	public String toString()
+	{
+		return name;
+	}
+}
@@ -0,0 +1,292 @@
+package util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import geography.GeographicPoint;
+import geography.RoadSegment;
+import roadgraph.CompactGraph;
+import roadgraph.MapGraph;
+import roadgraph.StronglyConnectedComponents;
+
+/**
+ * The binary form of a .map file, written once by GraphLoader.compileRoadMap
+ * so that later loads skip parsing the text and finding intersections.
+ *
+ * All values are big-endian.  The layout is
+ * <pre>
+ *   int    MAGIC
+ *   long   length of the .map file it was compiled from
+ *   int    n (intersections), m (edges), s (strings), p (geometry points)
+ *   n x    double lat, double lon            nodes, in MapGraph id order
+ *   n+1 x  int firstOut                      CSR offsets into the edges
+ *   m x    int head, double length, int name, int type
+ *   m+1 x  int firstPoint                    offsets into the geometry
+ *   p x    double lat, double lon            interior points of each edge
+ *   n x    int scc, int wcc                  component labels of each node
+ *   s x    int byteCount, UTF-8 bytes        road names and types
+ * </pre>
+ * The edges of each node are in the same order GraphLoader.loadRoadMap adds
+ * them, so both loaders give the graph the same node and edge ids.  The
+ * component labels are those CompactGraph would find for itself, saved so
+ * that loading does not have to search the whole graph for them.
+ */
+class CompiledRoadMap {
+	private static final int MAGIC = 0x4D415032;
+
+	// Every edge out of the intersections, in the order they were traced
+	private final List<GeographicPoint> nodes = new ArrayList<GeographicPoint>();
+	private final HashMap<GeographicPoint,Integer> ids = new HashMap<GeographicPoint,Integer>();
+	private final List<Integer> firstOut = new ArrayList<Integer>();
+	private final List<Integer> heads = new ArrayList<Integer>();
+	private final List<Double> lengths = new ArrayList<Double>();
+	private final List<Integer> names = new ArrayList<Integer>();
+	private final List<Integer> types = new ArrayList<Integer>();
+	private final List<Integer> firstPoint = new ArrayList<Integer>();
+	private final List<GeographicPoint> points = new ArrayList<GeographicPoint>();
+	private final List<String> strings = new ArrayList<String>();
+	private final HashMap<String,Integer> stringIds = new HashMap<String,Integer>();
+
+	/**
+	 * Start a compiled map with its intersections
+	 * @param intersections The nodes, in the order they will be given ids
+	 */
+	CompiledRoadMap(List<GeographicPoint> intersections)
+	{
+		for (GeographicPoint pt : intersections) {
+			ids.put(pt, nodes.size());
+			nodes.add(pt);
+		}
+		firstPoint.add(0);
+	}
+
+	/**
+	 * Add an edge.  Edges must be added grouped by start node, in the order
+	 * of the intersections.
+	 * @param from The start intersection
+	 * @param to The end intersection
+	 * @param geometry The points between them
+	 * @param roadName The name of the road
+	 * @param roadType The type of the road
+	 * @param length The length of the road in km
+	 */
+	void addEdge(GeographicPoint from, GeographicPoint to, List<GeographicPoint> geometry,
+			String roadName, String roadType, double length)
+	{
+		int node = ids.get(from);
+		while (firstOut.size() <= node) {
+			firstOut.add(heads.size());
+		}
+		heads.add(ids.get(to));
+		lengths.add(length);
+		names.add(intern(roadName));
+		types.add(intern(roadType));
+		points.addAll(geometry);
+		firstPoint.add(points.size());
+	}
+
+	private int intern(String s)
+	{
+		Integer id = stringIds.get(s);
+		if (id == null) {
+			id = strings.size();
+			strings.add(s);
+			stringIds.put(s, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Write this map
+	 * @param filename The file to write
+	 * @param sourceLength The length of the .map file it was compiled from
+	 * @throws IOException if the file cannot be written
+	 */
+	void save(String filename, long sourceLength) throws IOException
+	{
+		while (firstOut.size() <= nodes.size()) {
+			firstOut.add(heads.size());
+		}
+		int[] offsets = new int[firstOut.size()];
+		for (int i = 0; i < offsets.length; i++) {
+			offsets[i] = firstOut.get(i);
+		}
+		int[] targets = new int[heads.size()];
+		for (int e = 0; e < targets.length; e++) {
+			targets[e] = heads.get(e);
+		}
+		int[] scc = StronglyConnectedComponents.label(offsets, targets);
+		int[] wcc = CompactGraph.labelWeak(offsets, targets);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(filename)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeLong(sourceLength);
+			out.writeInt(nodes.size());
+			out.writeInt(heads.size());
+			out.writeInt(strings.size());
+			out.writeInt(points.size());
+			for (GeographicPoint pt : nodes) {
+				out.writeDouble(pt.getX());
+				out.writeDouble(pt.getY());
+			}
+			for (int f : firstOut) {
+				out.writeInt(f);
+			}
+			for (int e = 0; e < heads.size(); e++) {
+				out.writeInt(heads.get(e));
+				out.writeDouble(lengths.get(e));
+				out.writeInt(names.get(e));
+				out.writeInt(types.get(e));
+			}
+			for (int f : firstPoint) {
+				out.writeInt(f);
+			}
+			for (GeographicPoint pt : points) {
+				out.writeDouble(pt.getX());
+				out.writeDouble(pt.getY());
+			}
+			for (int i = 0; i < nodes.size(); i++) {
+				out.writeInt(scc[i]);
+				out.writeInt(wcc[i]);
+			}
+			for (String s : strings) {
+				byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Whether a compiled map file exists and was compiled from the current
+	 * version of a .map file
+	 * @param filename The compiled map file
+	 * @param mapFile The .map file
+	 * @return true if the compiled file can be loaded in place of the .map file
+	 */
+	static boolean isCurrent(String filename, String mapFile)
+	{
+		File compiled = new File(filename);
+		File source = new File(mapFile);
+		if (!compiled.exists() || compiled.lastModified() < source.lastModified()) {
+			return false;
+		}
+		try (RandomAccessFile file = new RandomAccessFile(compiled, "r")) {
+			return file.length() >= 12 && file.readInt() == MAGIC
+					&& file.readLong() == source.length();
+		}
+		catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Load a compiled map into a graph, in the same way as
+	 * GraphLoader.loadRoadMap loads a .map file
+	 * @param filename The compiled map file
+	 * @param map The graph to load the map into
+	 * @param segments If not null, receives the road segments at each intersection
+	 * @param intersectionsToLoad If not null, receives the intersections
+	 * @throws IOException if the file cannot be read or is not a compiled map
+	 */
+	static void load(String filename, MapGraph map,
+			HashMap<GeographicPoint,HashSet<RoadSegment>> segments,
+			Set<GeographicPoint> intersectionsToLoad) throws IOException
+	{
+		MappedByteBuffer buffer;
+		try (RandomAccessFile file = new RandomAccessFile(filename, "r");
+				FileChannel channel = file.getChannel()) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		if (buffer.getInt() != MAGIC) {
+			throw new IOException("Not a compiled map file: " + filename);
+		}
+		buffer.getLong();
+		int n = buffer.getInt();
+		int m = buffer.getInt();
+		int s = buffer.getInt();
+		int p = buffer.getInt();
+
+		// Find each section so that it can be read in whatever order is convenient
+		int nodesAt = buffer.position();
+		int firstOutAt = nodesAt + 16 * n;
+		int edgesAt = firstOutAt + 4 * (n + 1);
+		int firstPointAt = edgesAt + 20 * m;
+		int pointsAt = firstPointAt + 4 * (m + 1);
+		int labelsAt = pointsAt + 16 * p;
+		int stringsAt = labelsAt + 8 * n;
+
+		String[] strings = new String[s];
+		buffer.position(stringsAt);
+		for (int i = 0; i < s; i++) {
+			byte[] bytes = new byte[buffer.getInt()];
+			buffer.get(bytes);
+			strings[i] = new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		GeographicPoint[] nodes = new GeographicPoint[n];
+		for (int i = 0; i < n; i++) {
+			nodes[i] = readPoint(buffer, nodesAt + 16 * i);
+			map.addVertex(nodes[i]);
+			if (intersectionsToLoad != null) {
+				intersectionsToLoad.add(nodes[i]);
+			}
+		}
+
+		for (int i = 0; i < n; i++) {
+			int first = buffer.getInt(firstOutAt + 4 * i);
+			int last = buffer.getInt(firstOutAt + 4 * (i + 1));
+			for (int e = first; e < last; e++) {
+				int at = edgesAt + 20 * e;
+				GeographicPoint end = nodes[buffer.getInt(at)];
+				double length = buffer.getDouble(at + 4);
+				String roadName = strings[buffer.getInt(at + 12)];
+				String roadType = strings[buffer.getInt(at + 16)];
+				int from = buffer.getInt(firstPointAt + 4 * e);
+				int to = buffer.getInt(firstPointAt + 4 * (e + 1));
+				List<GeographicPoint> geometry = new ArrayList<GeographicPoint>(to - from);
+				for (int q = from; q < to; q++) {
+					geometry.add(readPoint(buffer, pointsAt + 16 * q));
+				}
+				map.addEdge(nodes[i], end, roadName, roadType, length, geometry);
+			}
+		}
+
+		// The labels are only good if the ids are the ones they were saved with
+		if (map.getNumVertices() == n) {
+			int[] scc = new int[n];
+			int[] wcc = new int[n];
+			for (int i = 0; i < n; i++) {
+				scc[i] = buffer.getInt(labelsAt + 8 * i);
+				wcc[i] = buffer.getInt(labelsAt + 8 * i + 4);
+			}
+			map.setComponentLabels(scc, wcc);
+		}
+		map.compile();
+		if (segments != null) {
+			map.addRoadSegments(segments);
+		}
+	}
+
+	private static GeographicPoint readPoint(ByteBuffer buffer, int at)
+	{
+		return new GeographicPoint(buffer.getDouble(at), buffer.getDouble(at + 8));
+	}
+}
@@ -7,6 +7,7 @@
 package util;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -16,9 +17,8 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import basicgraph.Graph;
 import geography.GeographicPoint;
@@ -150,6 +150,87 @@ public class GraphLoader
 		
 		
 		addEdgesAndSegments(nodes, pointMap, map, segments);
+		map.compile();
+	}
+
+	
+	/**
+	 * Compile a .map file into the binary form read by loadCompiledRoadMap.
+	 * This does all of the work of loadRoadMap (parsing the lines, finding
+	 * the intersections and tracing the road geometry between them) once,
+	 * and saves the resulting graph and road segments.
+	 * 
+	 * @param filename The file containing the road data
+	 * @param compiledFile The file to write the compiled map to
+	 * @throws IOException if the compiled file cannot be written
+	 */
+	public static void compileRoadMap(String filename, String compiledFile) throws IOException
+	{
+		Collection<GeographicPoint> nodes = new HashSet<GeographicPoint>();
+        HashMap<GeographicPoint,List<LinkedList<RoadLineInfo>>> pointMap = 
+        		buildPointMapOneWay(filename);
+		
+		List<GeographicPoint> intersections = findIntersections(pointMap);
+		nodes.addAll(intersections);
+		CompiledRoadMap compiled = new CompiledRoadMap(intersections);
+		
+		// Trace the edges in the order loadRoadMap adds them to each node
+		for (GeographicPoint pt : intersections) {
+			for (TracedEdge edge : traceEdges(pointMap, pt, nodes)) {
+				compiled.addEdge(pt, edge.end, edge.pointsOnEdge, edge.info.roadName,
+						edge.info.roadType, edge.length);
+			}
+		}
+		compiled.save(compiledFile, new File(filename).length());
+	}
+	
+	/**
+	 * Read in a file written by compileRoadMap.  The file is memory mapped
+	 * and the graph is built straight from it, with the same vertices,
+	 * edges and road segments that loadRoadMap gives for the .map file.
+	 * 
+	 * @param compiledFile The compiled map file
+	 * @param map The graph to load the map into
+	 * @param segments If not null, receives the road segments that define 
+	 *   the shape of the roads at each intersection
+	 * @param intersectionsToLoad If not null, receives the intersections
+	 * @throws IOException if the file cannot be read or is not a compiled map
+	 */
+	public static void loadCompiledRoadMap(String compiledFile, roadgraph.MapGraph map,
+			HashMap<GeographicPoint,HashSet<RoadSegment>> segments, 
+			Set<GeographicPoint> intersectionsToLoad) throws IOException
+	{
+		CompiledRoadMap.load(compiledFile, map, segments, intersectionsToLoad);
+	}
+	
+	/**
+	 * Read in a .map file through its compiled form, which is kept next to 
+	 * it with the extension .bin.  The compiled form is (re)written first 
+	 * if it is missing or older than the .map file.  If it cannot be used
+	 * the .map file is loaded directly.
+	 * 
+	 * @param filename The file containing the road data
+	 * @param map The graph to load the map into
+	 * @param segments If not null, receives the road segments that define 
+	 *   the shape of the roads at each intersection
+	 * @param intersectionsToLoad If not null, receives the intersections
+	 */
+	public static void loadRoadMapCompiled(String filename, roadgraph.MapGraph map,
+			HashMap<GeographicPoint,HashSet<RoadSegment>> segments, 
+			Set<GeographicPoint> intersectionsToLoad)
+	{
+		String compiledFile = filename + ".bin";
+		try {
+			if (!CompiledRoadMap.isCurrent(compiledFile, filename)) {
+				compileRoadMap(filename, compiledFile);
+			}
+			loadCompiledRoadMap(compiledFile, map, segments, intersectionsToLoad);
+		}
+		catch (IOException e) {
+			System.err.println("Problem using compiled map file: " + compiledFile);
+			e.printStackTrace();
+			loadRoadMap(filename, map, segments, intersectionsToLoad);
+		}
 	}
 
 	
@@ -323,7 +404,7 @@ public class GraphLoader
 	// add the edges and build the road segments if the segments
 	// map is not null.
 	private static void addEdgesAndSegments(Collection<GeographicPoint> nodes, 
-			HashMap<GeographicPoint,List<LinkedList<RoadLineInfo>>> pointMap,
+			Map<GeographicPoint,List<LinkedList<RoadLineInfo>>> pointMap,
 			MapGraph map, 
 			HashMap<GeographicPoint,HashSet<RoadSegment>> segments)
 	{
@@ -331,43 +412,35 @@ public class GraphLoader
 		// Now we need to add the edges
 		// This is the tricky part
 		for (GeographicPoint pt : nodes) {
-			// Trace the node to its next node, building up the points 
-			// on the edge as you go.
-			List<LinkedList<RoadLineInfo>> inAndOut = pointMap.get(pt);
-			LinkedList<RoadLineInfo> outgoing = inAndOut.get(0);
-			for (RoadLineInfo info : outgoing) {
-				HashSet<GeographicPoint> used = new HashSet<GeographicPoint>();
-				used.add(pt);
-				
-				List<GeographicPoint> pointsOnEdge = 
-						findPointsOnEdge(pointMap, info, nodes);
-				GeographicPoint end = pointsOnEdge.remove(pointsOnEdge.size()-1);
-				double length = getRoadLength(pt, end, pointsOnEdge);
-				map.addEdge(pt, end, info.roadName, info.roadType, length);
-
-				// If the segments variable is not null, then we 
-				// save the road geometry
-				if (segments != null) {
-					// Now create road Segments for each edge
-					HashSet<RoadSegment> segs = segments.get(pt);
-					if (segs == null) {
-						segs = new HashSet<RoadSegment>();
-						segments.put(pt,segs);
-					}
-					RoadSegment seg = new RoadSegment(pt, end, pointsOnEdge, 
-							info.roadName, info.roadType, length);
-					segs.add(seg);
-					segs = segments.get(end);
-					if (segs == null) {
-						segs = new HashSet<RoadSegment>();
-						segments.put(end,segs);
-					}
-					segs.add(seg);
-				}
+			for (TracedEdge edge : traceEdges(pointMap, pt, nodes)) {
+				map.addEdge(pt, edge.end, edge.info.roadName, edge.info.roadType,
+						edge.length, edge.pointsOnEdge);
 			}
 		}
+
+		// The segments share the road geometry kept by the graph
+		if (segments != null) {
+			map.addRoadSegments(segments);
+		}
+	}
+	
+	// Trace each road out of an intersection to the next intersection,
+	// in the order the roads were read from the file.
+	private static List<TracedEdge> traceEdges(
+			Map<GeographicPoint,List<LinkedList<RoadLineInfo>>> pointMap,
+			GeographicPoint pt, Collection<GeographicPoint> nodes)
+	{
+		List<TracedEdge> traced = new ArrayList<TracedEdge>();
+		LinkedList<RoadLineInfo> outgoing = pointMap.get(pt).get(0);
+		for (RoadLineInfo info : outgoing) {
+			List<GeographicPoint> pointsOnEdge = 
+					findPointsOnEdge(pointMap, info, nodes);
+			GeographicPoint end = pointsOnEdge.remove(pointsOnEdge.size()-1);
+			double length = getRoadLength(pt, end, pointsOnEdge);
+			traced.add(new TracedEdge(info, end, pointsOnEdge, length));
+		}
+		return traced;
 	}
-			
 	
 	// Calculate the length of this road segment taking into account all of the 
 	// intermediate geographic points.
@@ -385,7 +458,7 @@ public class GraphLoader
 	}
 	
 	private static List<GeographicPoint>
-	findPointsOnEdge(HashMap<GeographicPoint,List<LinkedList<RoadLineInfo>>> pointMap,
+	findPointsOnEdge(Map<GeographicPoint,List<LinkedList<RoadLineInfo>>> pointMap,
 		RoadLineInfo info, Collection<GeographicPoint> nodes) 
 	{
 		List<GeographicPoint> toReturn = new LinkedList<GeographicPoint>();
@@ -450,68 +523,73 @@ public class GraphLoader
 	// or intersections between two different roads, or where three
 	// or more segments of the same road meet.
 	private static List<GeographicPoint> 
-	findIntersections(HashMap<GeographicPoint,List<LinkedList<RoadLineInfo>>> pointMap) {
+	findIntersections(Map<GeographicPoint,List<LinkedList<RoadLineInfo>>> pointMap) {
 		// Now find the intersections.  These are roads that do not have
 		// Exactly 1 or 2 roads coming in and out, where the roads in
 		// match the roads out.
 		List<GeographicPoint> intersections = new LinkedList<GeographicPoint>();
 		for (GeographicPoint pt : pointMap.keySet()) {
-			List<LinkedList<RoadLineInfo>> roadsInAndOut = pointMap.get(pt);
-			LinkedList<RoadLineInfo> roadsOut = roadsInAndOut.get(0);
-			LinkedList<RoadLineInfo> roadsIn = roadsInAndOut.get(1);
-			
-			boolean isNode = true;
-			
-			if (roadsIn.size() == 1 && roadsOut.size() == 1) {
-				// If these are the reverse of each other, then this is
-				// and intersection (dead end)
-				if (!(roadsIn.get(0).point1.equals(roadsOut.get(0).point2) &&
-						roadsIn.get(0).point2.equals(roadsOut.get(0).point1))
-						&& roadsIn.get(0).roadName.equals(roadsOut.get(0).roadName)) {
-					isNode = false;
-				}
+			if (isIntersection(pointMap.get(pt))) {
+				intersections.add(pt);
 			}
-			if (roadsIn.size() == 2 && roadsOut.size() == 2) {
-				// If all the road segments have the same name, 
-				// And there are two pairs of reversed nodes, then 
-				// this is not an intersection because the roads pass
-				// through.
-			
-				String name = roadsIn.get(0).roadName;
-				boolean sameName = true;
-				for (RoadLineInfo info : roadsIn) {
-					if (!info.roadName.equals(name)) {
-						sameName = false;
-					}
+		}
+		return intersections;
+	}
+	
+	// Whether the point with these roads in and out is an intersection
+	private static boolean isIntersection(List<LinkedList<RoadLineInfo>> roadsInAndOut)
+	{
+		LinkedList<RoadLineInfo> roadsOut = roadsInAndOut.get(0);
+		LinkedList<RoadLineInfo> roadsIn = roadsInAndOut.get(1);
+		
+		boolean isNode = true;
+		
+		if (roadsIn.size() == 1 && roadsOut.size() == 1) {
+			// If these are the reverse of each other, then this is
+			// and intersection (dead end)
+			if (!(roadsIn.get(0).point1.equals(roadsOut.get(0).point2) &&
+					roadsIn.get(0).point2.equals(roadsOut.get(0).point1))
+					&& roadsIn.get(0).roadName.equals(roadsOut.get(0).roadName)) {
+				isNode = false;
+			}
+		}
+		if (roadsIn.size() == 2 && roadsOut.size() == 2) {
+			// If all the road segments have the same name, 
+			// And there are two pairs of reversed nodes, then 
+			// this is not an intersection because the roads pass
+			// through.
+		
+			String name = roadsIn.get(0).roadName;
+			boolean sameName = true;
+			for (RoadLineInfo info : roadsIn) {
+				if (!info.roadName.equals(name)) {
+					sameName = false;
 				}
-				for (RoadLineInfo info : roadsOut) {
-					if (!info.roadName.equals(name)) {
-						sameName = false;
-					}
+			}
+			for (RoadLineInfo info : roadsOut) {
+				if (!info.roadName.equals(name)) {
+					sameName = false;
 				}
+			}
+			
+			RoadLineInfo in1 = roadsIn.get(0);
+			RoadLineInfo in2 = roadsIn.get(1);
+			RoadLineInfo out1 = roadsOut.get(0);
+			RoadLineInfo out2 = roadsOut.get(1);
+	
+			boolean passThrough = false;
+			if ((in1.isReverse(out1) && in2.isReverse(out2)) ||
+					(in1.isReverse(out2) && in2.isReverse(out1))) {
 				
-				RoadLineInfo in1 = roadsIn.get(0);
-				RoadLineInfo in2 = roadsIn.get(1);
-				RoadLineInfo out1 = roadsOut.get(0);
-				RoadLineInfo out2 = roadsOut.get(1);
-		
-				boolean passThrough = false;
-				if ((in1.isReverse(out1) && in2.isReverse(out2)) ||
-						(in1.isReverse(out2) && in2.isReverse(out1))) {
-					
-					passThrough = true;
-				} 
-				
-				if (sameName && passThrough) {
-					isNode = false;
-				} 
-
+				passThrough = true;
 			} 
-			if (isNode) {
-				intersections.add(pt);
-			}
-		}
-		return intersections;
+			
+			if (sameName && passThrough) {
+				isNode = false;
+			} 
+
+		} 
+		return isNode;
 	}
 		
 	// Build the map from points to lists of lists of lines.
@@ -522,18 +600,15 @@ public class GraphLoader
 	private static HashMap<GeographicPoint, List<LinkedList<RoadLineInfo>>>
 	buildPointMapOneWay(String filename)
 	{
-		BufferedReader reader = null;
         HashMap<GeographicPoint,List<LinkedList<RoadLineInfo>>> pointMap = 
         		new HashMap<GeographicPoint,List<LinkedList<RoadLineInfo>>>();
 		try {
-            String nextLine;
-            reader = new BufferedReader(new FileReader(filename));
+            MapFileScanner scanner = new MapFileScanner(filename);
+            RoadLineInfo line;
             // Read the lines out of the file and put them in a HashMap by points
-            while ((nextLine = reader.readLine()) != null) {
-            	RoadLineInfo line = splitInputString(nextLine);
+            while ((line = scanner.nextLine()) != null) {
             	addToPointsMapOneWay(line, pointMap);
             }
-            reader.close();
         } catch (IOException e) {
             System.err.println("Problem loading dictionary file: " + filename);
             e.printStackTrace();
@@ -570,34 +645,6 @@ public class GraphLoader
 		
 	}
 	
-	// Split the input string into the line information
-	private static RoadLineInfo splitInputString(String input)
-	{	
-		
-		ArrayList<String> tokens = new ArrayList<String>();
-		Pattern tokSplitter = Pattern.compile("[^\\s\"']+|\"([^\"]*)\"");
-		Matcher m = tokSplitter.matcher(input);
-		
-		while (m.find()) {
-			if (m.group(1) != null) {
-				tokens.add(m.group(1));	
-			}
-			else {
-				tokens.add(m.group());
-			}
-		}
-
-    	double lat1 = Double.parseDouble(tokens.get(0));
-        double lon1 = Double.parseDouble(tokens.get(1));
-        double lat2 = Double.parseDouble(tokens.get(2));
-        double lon2 = Double.parseDouble(tokens.get(3));
-        GeographicPoint p1 = new GeographicPoint(lat1, lon1);
-        GeographicPoint p2 = new GeographicPoint(lat2, lon2);
-
-        return new RoadLineInfo(p1, p2, tokens.get(4), tokens.get(5));
-		
-	}
-	
 	public static void main(String[] args)
 	{
 		GraphLoader.createIntersectionsFile("data/maps/hollywood_small.map", "data/intersections/hollywood_small.intersections");
@@ -616,101 +663,20 @@ public class GraphLoader
 }	
 	
 
-// A class to store information about the lines in the road files.
-class RoadLineInfo
+// A road traced from an intersection to the next intersection.
+class TracedEdge
 {
-	GeographicPoint point1;
-	GeographicPoint point2;
+	RoadLineInfo info;//The first line of the road out of the intersection
+	GeographicPoint end;
+	List<GeographicPoint> pointsOnEdge;//The points between the two intersections
+	double length;
 	
-	String roadName;
-	String roadType;
-	
-	/** Create a new RoadLineInfo object to store information about the line 
-	 * read from the file
-	 * @param p1 One of the points
-	 * @param p2 The other point
-	 * @param roadName The name of the road
-	 * @param roadType The type of the road
-	 */
-	RoadLineInfo(GeographicPoint p1, GeographicPoint p2, String roadName, String roadType) 
+	TracedEdge(RoadLineInfo info, GeographicPoint end, List<GeographicPoint> pointsOnEdge,
+			double length)
 	{
-		point1 = p1;
-		point2 = p2;
-		this.roadName = roadName;
-		this.roadType = roadType;
+		this.info = info;
+		this.end = end;
+		this.pointsOnEdge = pointsOnEdge;
+		this.length = length;
 	}
-	
-	
-	/** Get the other point from this roadLineInfo */
-	public GeographicPoint getOtherPoint(GeographicPoint pt)
-	{
-		if (pt == null) throw new IllegalArgumentException();
-		if (pt.equals(point1)) {
-			return point2;
-		}
-		else if (pt.equals(point2)) {
-			return point1;
-		}
-		else throw new IllegalArgumentException();
-	}
-	
-	/** Two RoadLineInfo objects are considered equal if they have the same
-	 * two points and the same roadName and roadType.
-	 */
-	public boolean equals(Object o)
-	{
-		if (o == null || !(o instanceof RoadLineInfo))
-		{
-			return false;
-		}
-		RoadLineInfo info = (RoadLineInfo)o;
-		return info.point1.equals(this.point1) && info.point2.equals(this.point2)  &&
-				info.roadType.equals(this.roadType) && info.roadName.equals(this.roadName);
-				
-	}
-	
-	/** Calculate the hashCode based on the hashCodes of the two points
-	 * @return The hashcode for this object.
-	 */
-	public int hashCode()
-	{
-		return point1.hashCode() + point2.hashCode();
-		
-	}
-	
-	/** Returns whether these segments are part of the same road in terms of
-	 * road name and road type.
-	 * @param info The RoadLineInfo to compare against.
-	 * @return true if these represent the same road, false otherwise.
-	 */
-	public boolean sameRoad(RoadLineInfo info)
-	{
-		return info.roadName.equals(this.roadName) && info.roadType.equals(this.roadType);
-	}
-	
-	/** Return a copy of this LineInfo in the other direction */
-	public RoadLineInfo getReverseCopy()
-	{
-		return new RoadLineInfo(this.point2, this.point1, this.roadName, this.roadType);
-	}
-	
-	/** Return true if this road is the same segment as other, but in reverse
-	 *   Otherwise return false.
-	 */
-	public boolean isReverse(RoadLineInfo other)
-	{
-		return this.point1.equals(other.point2) && this.point2.equals(other.point1) &&
-				this.roadName.equals(other.roadName) && this.roadType.equals(other.roadType);
-	}
-	
-	/** Return the string representation of this LineInfo. */
-	public String toString()
-	{
-		return this.point1 + " " + this.point2 + " " + this.roadName + " " + this.roadType;
-		
-	}
-	
-	
-	
-	
 }
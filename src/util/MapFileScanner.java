@@ -0,0 +1,305 @@
+package util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import geography.GeographicPoint;
+
+/**
+ * A tokenizer for the lines of a .map file
+ *   lat1 lon1 lat2 lon2 "road name" roadType
+ * that works directly on the bytes of the file.
+ *
+ * Tokens follow the same grammar GraphLoader used to match with the regex
+ * [^\s"']+|"([^"]*)": a run of characters other than white space and
+ * quotes, or the text between a pair of double quotes.  The coordinates are
+ * parsed in place without building a String.  Road names and types are
+ * interned through a table keyed on their bytes, so each distinct name is
+ * decoded once however many lines it appears on.
+ */
+public class MapFileScanner {
+	// Powers of ten that are exactly representable as doubles
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+	private static final int MAX_FAST_DIGITS = 15;
+
+	private final byte[] data;
+	private int pos;
+
+	// The current line, and the bounds of the token found by nextToken
+	private int lineEnd;
+	private int tokenStart;
+	private int tokenEnd;
+
+	// Open addressing table of interned strings, keyed on their bytes
+	private String[] internStrings = new String[64];
+	private byte[][] internBytes = new byte[64][];
+	private int[] internHashes = new int[64];
+	private int internCount = 0;
+
+	/**
+	 * Create a scanner over the contents of a file
+	 * @param data The bytes of the file
+	 */
+	MapFileScanner(byte[] data)
+	{
+		this.data = data;
+		this.pos = 0;
+	}
+
+	/**
+	 * Create a scanner over a file
+	 * @param filename The file to read
+	 * @throws IOException if the file cannot be read
+	 */
+	MapFileScanner(String filename) throws IOException
+	{
+		this(Files.readAllBytes(Paths.get(filename)));
+	}
+
+	/**
+	 * Read the next line of the file that holds any tokens
+	 * @return the line, or null at the end of the file
+	 * @throws NumberFormatException if a coordinate is not a number
+	 * @throws IndexOutOfBoundsException if the line has too few tokens
+	 */
+	RoadLineInfo nextLine()
+	{
+		while (pos < data.length) {
+			lineEnd = pos;
+			while (lineEnd < data.length && data[lineEnd] != '\n' && data[lineEnd] != '\r') {
+				lineEnd++;
+			}
+			int next = lineEnd;
+			if (next < data.length && data[next] == '\r') {
+				next++;
+			}
+			if (next < data.length && data[next] == '\n') {
+				next++;
+			}
+			RoadLineInfo info = parseLine();
+			pos = next;
+			if (info != null) {
+				return info;
+			}
+		}
+		return null;
+	}
+
+	// Parse the line from pos to lineEnd, or return null if it is blank
+	private RoadLineInfo parseLine()
+	{
+		if (!nextToken()) {
+			return null;
+		}
+		double lat1 = parseToken();
+		double lon1 = parseRequired();
+		double lat2 = parseRequired();
+		double lon2 = parseRequired();
+		requireToken();
+		String roadName = intern(tokenStart, tokenEnd);
+		requireToken();
+		String roadType = intern(tokenStart, tokenEnd);
+		return new RoadLineInfo(new GeographicPoint(lat1, lon1),
+				new GeographicPoint(lat2, lon2), roadName, roadType);
+	}
+
+	private double parseRequired()
+	{
+		requireToken();
+		return parseToken();
+	}
+
+	private void requireToken()
+	{
+		if (!nextToken()) {
+			throw new IndexOutOfBoundsException("Too few fields in map file line");
+		}
+	}
+
+	// Find the next token on the current line and advance past it
+	private boolean nextToken()
+	{
+		while (pos < lineEnd) {
+			byte c = data[pos];
+			if (isSpace(c) || c == '\'') {
+				pos++;
+			}
+			else if (c == '"') {
+				int close = pos + 1;
+				while (close < lineEnd && data[close] != '"') {
+					close++;
+				}
+				if (close < lineEnd) {
+					tokenStart = pos + 1;
+					tokenEnd = close;
+					pos = close + 1;
+					return true;
+				}
+				// An unmatched quote is skipped
+				pos++;
+			}
+			else {
+				tokenStart = pos;
+				while (pos < lineEnd && !isSpace(data[pos]) && data[pos] != '"'
+						&& data[pos] != '\'') {
+					pos++;
+				}
+				tokenEnd = pos;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isSpace(byte c)
+	{
+		return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+	}
+
+	// Parse the current token as a double.  Plain decimals with at most
+	// 15 significant digits are exact as a long, and scaling one by a
+	// power of ten up to 1e22 is a single correctly rounded operation, so
+	// the result is the same as Double.parseDouble.  Anything else is
+	// handed to Double.parseDouble.
+	private double parseToken()
+	{
+		int i = tokenStart;
+		int end = tokenEnd;
+		boolean negative = false;
+		if (i < end && (data[i] == '-' || data[i] == '+')) {
+			negative = data[i] == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int scale = 0;
+		boolean seenDigit = false;
+		boolean seenPoint = false;
+		for (; i < end; i++) {
+			byte c = data[i];
+			if (c >= '0' && c <= '9') {
+				seenDigit = true;
+				if (mantissa == 0 && c == '0') {
+					// Leading zeros are not significant
+				}
+				else if (++digits > MAX_FAST_DIGITS) {
+					return slowParse();
+				}
+				mantissa = mantissa * 10 + (c - '0');
+				if (seenPoint) {
+					scale--;
+				}
+			}
+			else if (c == '.' && !seenPoint) {
+				seenPoint = true;
+			}
+			else {
+				break;
+			}
+		}
+		if (!seenDigit) {
+			return slowParse();
+		}
+		if (i < end) {
+			if (data[i] != 'e' && data[i] != 'E') {
+				return slowParse();
+			}
+			i++;
+			boolean negativeExponent = false;
+			if (i < end && (data[i] == '-' || data[i] == '+')) {
+				negativeExponent = data[i] == '-';
+				i++;
+			}
+			if (i == end || end - i > 3) {
+				return slowParse();
+			}
+			int exponent = 0;
+			for (; i < end; i++) {
+				if (data[i] < '0' || data[i] > '9') {
+					return slowParse();
+				}
+				exponent = exponent * 10 + (data[i] - '0');
+			}
+			scale += negativeExponent ? -exponent : exponent;
+		}
+		if (scale < -22 || scale > 22) {
+			return slowParse();
+		}
+		double value = mantissa;
+		value = scale < 0 ? value / POWERS_OF_TEN[-scale] : value * POWERS_OF_TEN[scale];
+		return negative ? -value : value;
+	}
+
+	private double slowParse()
+	{
+		return Double.parseDouble(new String(data, tokenStart, tokenEnd - tokenStart,
+				StandardCharsets.UTF_8));
+	}
+
+	// Get the one String for the bytes from start to end
+	private String intern(int start, int end)
+	{
+		int hash = 1;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + data[i];
+		}
+		int mask = internStrings.length - 1;
+		int slot = hash & mask;
+		while (internStrings[slot] != null) {
+			if (internHashes[slot] == hash && sameBytes(internBytes[slot], start, end)) {
+				return internStrings[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		byte[] bytes = new byte[end - start];
+		System.arraycopy(data, start, bytes, 0, bytes.length);
+		String s = new String(bytes, StandardCharsets.UTF_8);
+		internStrings[slot] = s;
+		internBytes[slot] = bytes;
+		internHashes[slot] = hash;
+		if (++internCount * 2 > internStrings.length) {
+			growInternTable();
+		}
+		return s;
+	}
+
+	private boolean sameBytes(byte[] bytes, int start, int end)
+	{
+		if (bytes.length != end - start) {
+			return false;
+		}
+		for (int i = 0; i < bytes.length; i++) {
+			if (bytes[i] != data[start + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void growInternTable()
+	{
+		String[] oldStrings = internStrings;
+		byte[][] oldBytes = internBytes;
+		int[] oldHashes = internHashes;
+		internStrings = new String[oldStrings.length * 2];
+		internBytes = new byte[oldStrings.length * 2][];
+		internHashes = new int[oldStrings.length * 2];
+		int mask = internStrings.length - 1;
+		for (int i = 0; i < oldStrings.length; i++) {
+			if (oldStrings[i] != null) {
+				int slot = oldHashes[i] & mask;
+				while (internStrings[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				internStrings[slot] = oldStrings[i];
+				internBytes[slot] = oldBytes[i];
+				internHashes[slot] = oldHashes[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package util;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import geography.GeographicPoint;
+
+/**
+ * A check of MapFileScanner against the regex tokenizer it replaced, and a
+ * timing of both, over every map in data/maps/mapfiles.list.  Run from the
+ * project directory as
+ *   java util.MapFileScannerCheck
+ */
+class MapFileScannerCheck {
+	// The regex tokenizer GraphLoader used before MapFileScanner
+	private static RoadLineInfo regexSplit(String input)
+	{
+		ArrayList<String> tokens = new ArrayList<String>();
+		Pattern tokSplitter = Pattern.compile("[^\\s\"']+|\"([^\"]*)\"");
+		Matcher m = tokSplitter.matcher(input);
+		while (m.find()) {
+			if (m.group(1) != null) {
+				tokens.add(m.group(1));
+			}
+			else {
+				tokens.add(m.group());
+			}
+		}
+		GeographicPoint p1 = new GeographicPoint(Double.parseDouble(tokens.get(0)),
+				Double.parseDouble(tokens.get(1)));
+		GeographicPoint p2 = new GeographicPoint(Double.parseDouble(tokens.get(2)),
+				Double.parseDouble(tokens.get(3)));
+		return new RoadLineInfo(p1, p2, tokens.get(4), tokens.get(5));
+	}
+
+	/**
+	 * Time reading every map in data/maps/mapfiles.list with the regex
+	 * tokenizer and with MapFileScanner, check that they agree, and time the
+	 * whole of GraphLoader.loadRoadMap.  Each time is the best of 20 runs.
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		int runs = 20;
+		BufferedReader list = new BufferedReader(new FileReader("data/maps/mapfiles.list"));
+		String file;
+		System.out.println("map, lines, regex ms, scanner ms, loadRoadMap ms");
+		while ((file = list.readLine()) != null) {
+			if (file.trim().isEmpty()) {
+				continue;
+			}
+			String path = "data/maps/" + file.trim();
+			ArrayList<RoadLineInfo> expected = new ArrayList<RoadLineInfo>();
+			long regexTime = Long.MAX_VALUE;
+			for (int run = 0; run < runs; run++) {
+				expected.clear();
+				long start = System.nanoTime();
+				BufferedReader reader = new BufferedReader(new FileReader(path));
+				String line;
+				while ((line = reader.readLine()) != null) {
+					expected.add(regexSplit(line));
+				}
+				reader.close();
+				regexTime = Math.min(regexTime, System.nanoTime() - start);
+			}
+
+			ArrayList<RoadLineInfo> scanned = new ArrayList<RoadLineInfo>();
+			long scanTime = Long.MAX_VALUE;
+			for (int run = 0; run < runs; run++) {
+				scanned.clear();
+				long start = System.nanoTime();
+				MapFileScanner scanner = new MapFileScanner(path);
+				RoadLineInfo info;
+				while ((info = scanner.nextLine()) != null) {
+					scanned.add(info);
+				}
+				scanTime = Math.min(scanTime, System.nanoTime() - start);
+			}
+			if (!scanned.equals(expected)) {
+				System.out.println("Scanner and regex disagree on " + path);
+			}
+
+			long loadTime = Long.MAX_VALUE;
+			for (int run = 0; run < runs; run++) {
+				long start = System.nanoTime();
+				GraphLoader.loadRoadMap(path, new roadgraph.MapGraph());
+				loadTime = Math.min(loadTime, System.nanoTime() - start);
+			}
+			System.out.printf("%s, %d, %.2f, %.2f, %.2f%n", file.trim(), expected.size(),
+					regexTime / 1e6, scanTime / 1e6, loadTime / 1e6);
+		}
+		list.close();
+	}
+}